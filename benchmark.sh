@@ -0,0 +1,24 @@
+#!/bin/bash
+
+# This script runs the JMH benchmarks and writes their results as JSON
+#
+# Arguments are passed to JMH, e.g. to select benchmarks and override parameters:
+#   ./benchmark.sh DistanceVector -p routes=1000,100000 -f 2
+# Run "./benchmark.sh -h" for all JMH options, and "./benchmark.sh -lp" for the benchmark
+# parameters. Results go to target/jmh-result.json unless RESULT_FILE is set.
+
+JAR_FILE="target/benchmarks.jar"
+RESULT_FILE=${RESULT_FILE:-target/jmh-result.json}
+
+# Check if the benchmark JAR exists
+if [ ! -f "$JAR_FILE" ]; then
+    echo "Benchmark JAR not found. Building the project..."
+    mvn clean package -Pbenchmarks
+
+    if [ $? -ne 0 ]; then
+        echo "Build failed. Please fix any errors and try again."
+        exit 1
+    fi
+fi
+
+java $JAVA_OPTS -jar "$JAR_FILE" -rf json -rff "$RESULT_FILE" "$@"
@@ -1,9 +1,10 @@
 #!/bin/bash
 
-# This script launches a router instance
+# This script launches a router instance, or every router in a hosts file with --hosts
 
 if [ "$#" -lt 2 ] || [ "$#" -gt 3 ]; then
     echo "Usage: $0 <address> <period> [startup]"
+    echo "       $0 --hosts <hosts> <period>"
     exit 1
 fi
 
@@ -24,9 +25,10 @@ if [ ! -f "$JAR_FILE" ]; then
     fi
 fi
 
-# Launch the router
+# Launch the router (extra JVM options, e.g. -Dudprip.receivers=4, go in JAVA_OPTS; see udprip.jfc
+# for recording routing events with the flight recorder)
 if [ -z "$STARTUP" ]; then
-    java -jar "$JAR_FILE" "$ADDRESS" "$PERIOD"
+    java $JAVA_OPTS -jar "$JAR_FILE" "$ADDRESS" "$PERIOD"
 else
-    java -jar "$JAR_FILE" "$ADDRESS" "$PERIOD" "$STARTUP"
+    java $JAVA_OPTS -jar "$JAR_FILE" "$ADDRESS" "$PERIOD" "$STARTUP"
 fi
@@ -0,0 +1,27 @@
+#!/bin/bash
+
+# This script runs routers in a simulated network and reports how fast they converge
+#
+# Arguments are passed to the simulator, e.g.:
+#   ./simulate.sh example-topology.sim
+#   ./simulate.sh --fail=30:random --json random:200:4
+# Router settings are system properties in JAVA_OPTS, e.g. JAVA_OPTS=-Dudprip.binary=true
+#
+# Memory grows with the square of the network size. A few hundred routers run faster than real
+# time; a thousand (grid:32x32) need about 1 GB of heap, so give them JAVA_OPTS=-Xmx3g, and take
+# about twice their simulated time even then
+
+# Check if the JAR file exists
+JAR_FILE="target/udprip-1.0-SNAPSHOT-jar-with-dependencies.jar"
+
+if [ ! -f "$JAR_FILE" ]; then
+    echo "JAR file not found. Building the project..."
+    mvn clean package
+
+    if [ $? -ne 0 ]; then
+        echo "Build failed. Please fix any errors and try again."
+        exit 1
+    fi
+fi
+
+java $JAVA_OPTS -cp "$JAR_FILE" com.redes.udprip.sim.Simulator "$@"
@@ -0,0 +1,63 @@
+package com.redes.udprip.benchmark;
+
+import com.redes.udprip.codec.MessageCodec;
+import com.redes.udprip.codec.MessageHeader;
+import com.redes.udprip.model.Message;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Encoding, decoding and header peeking of each message type in each wire encoding. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+  @Param({"data", "update", "trace", "hello"})
+  public String type;
+
+  @Param({"json", "binary"})
+  public String encoding;
+
+  /** Number of routes in an update message. */
+  @Param({"25"})
+  public int updateRoutes;
+
+  private MessageCodec codec;
+  private Message message;
+  private byte[] encoded;
+
+  @Setup
+  public void setUp() throws IOException {
+    codec = Fixtures.codec(encoding);
+    message = Fixtures.message(type, updateRoutes);
+    encoded = codec.encode(message);
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    return codec.encode(message);
+  }
+
+  @Benchmark
+  public Message decode() throws IOException {
+    return codec.decode(encoded, 0, encoded.length);
+  }
+
+  @Benchmark
+  public MessageHeader peek() throws IOException {
+    return codec.peek(encoded, 0, encoded.length);
+  }
+}
@@ -0,0 +1,62 @@
+package com.redes.udprip.benchmark;
+
+import com.redes.udprip.app.DistanceVector;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of applying a neighbor's update and of building the distance vector sent to another
+ * neighbor, by routing table size.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceVectorBenchmark {
+  @Param({"100", "1000", "10000", "100000"})
+  public int routes;
+
+  private DistanceVector distanceVector;
+  private Map<String, Integer> update;
+  private Map<String, Integer> changedUpdate;
+  private boolean changed;
+
+  @Setup
+  public void setUp() {
+    distanceVector = new DistanceVector(Fixtures.LOCAL);
+    update = Fixtures.distances(routes, 1);
+    changedUpdate = Fixtures.distances(routes, 2);
+    distanceVector.applyUpdate(Fixtures.NEIGHBOR, update, 1);
+  }
+
+  /** A periodic refresh that changes no route. */
+  @Benchmark
+  public boolean applyUnchangedUpdate() {
+    return distanceVector.applyUpdate(Fixtures.NEIGHBOR, update, 1);
+  }
+
+  /** An update that changes the distance of every route. */
+  @Benchmark
+  public boolean applyChangedUpdate() {
+    changed = !changed;
+    return distanceVector.applyUpdate(Fixtures.NEIGHBOR, changed ? changedUpdate : update, 1);
+  }
+
+  @Benchmark
+  public Map<String, Integer> getDistancesForNeighbor() {
+    return distanceVector.getDistancesForNeighbor(Fixtures.OTHER_NEIGHBOR);
+  }
+}
@@ -0,0 +1,150 @@
+package com.redes.udprip.benchmark;
+
+import com.redes.udprip.app.Router;
+import com.redes.udprip.app.RouterOptions;
+import com.redes.udprip.codec.BinaryMessageCodec;
+import com.redes.udprip.codec.JsonMessageCodec;
+import com.redes.udprip.codec.MessageCodec;
+import com.redes.udprip.infra.UdpClient;
+import com.redes.udprip.model.DataMessage;
+import com.redes.udprip.model.HelloMessage;
+import com.redes.udprip.model.Ipv4;
+import com.redes.udprip.model.Message;
+import com.redes.udprip.model.TraceMessage;
+import com.redes.udprip.model.UpdateMessage;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Routes, messages and routers shared by the benchmarks. */
+final class Fixtures {
+  static final String LOCAL = "127.0.0.1";
+  static final String NEIGHBOR = "127.0.0.2";
+  static final int NEIGHBOR_ADDRESS = Ipv4.parse(NEIGHBOR);
+  static final String OTHER_NEIGHBOR = "127.0.0.3";
+  static final String REMOTE_SOURCE = "127.0.0.4";
+
+  /** Port the benchmark routers send to. Nothing listens on it, so sent datagrams are discarded. */
+  static final int PORT = 55152;
+
+  /** Update period of the benchmark routers, long enough that no neighbor state expires. */
+  private static final int UPDATE_PERIOD = 3600;
+
+  private static final int FIRST_DESTINATION = Ipv4.parse("10.0.0.1");
+  private static final int TTL = 64;
+  private static final String PAYLOAD = "x".repeat(64);
+
+  private static final JsonMessageCodec jsonCodec = new JsonMessageCodec();
+  private static final BinaryMessageCodec binaryCodec = new BinaryMessageCodec();
+
+  private Fixtures() {}
+
+  /**
+   * Get the address of a benchmark destination.
+   *
+   * @param index The index of the destination, from 0
+   * @return The destination address
+   */
+  static String destination(int index) {
+    return Ipv4.format(FIRST_DESTINATION + index);
+  }
+
+  /**
+   * Create a distance vector to consecutive destinations.
+   *
+   * @param count The number of destinations
+   * @param distance The distance to every destination
+   * @return The distances by destination
+   */
+  static Map<String, Integer> distances(int count, int distance) {
+    Map<String, Integer> distances = new LinkedHashMap<>();
+    for (int i = 0; i < count; i++) {
+      distances.put(destination(i), distance);
+    }
+    return distances;
+  }
+
+  /**
+   * Get the codec for an encoding name.
+   *
+   * @param encoding {@code json} or {@code binary}
+   * @return The codec
+   */
+  static MessageCodec codec(String encoding) {
+    switch (encoding) {
+      case HelloMessage.ENCODING_JSON:
+        return jsonCodec;
+      case HelloMessage.ENCODING_BINARY:
+        return binaryCodec;
+      default:
+        throw new IllegalArgumentException("unknown encoding " + encoding);
+    }
+  }
+
+  /**
+   * Create a message as the benchmark router would receive it. Data and trace messages pass through
+   * the router on their way to the first destination; updates and hellos come from its neighbor.
+   *
+   * @param type The message type
+   * @param updateRoutes The number of routes in an update
+   * @return The message
+   */
+  static Message message(String type, int updateRoutes) {
+    switch (type) {
+      case "data":
+        {
+          DataMessage message = new DataMessage(REMOTE_SOURCE, destination(0), PAYLOAD);
+          message.setTtl(TTL);
+          return message;
+        }
+      case "trace":
+        {
+          TraceMessage message = new TraceMessage(REMOTE_SOURCE, destination(0));
+          message.addRouter(REMOTE_SOURCE);
+          message.addRouter(OTHER_NEIGHBOR);
+          message.setTtl(TTL);
+          return message;
+        }
+      case "update":
+        return new UpdateMessage(NEIGHBOR, LOCAL, distances(updateRoutes, 1));
+      case "hello":
+        return hello(true);
+      default:
+        throw new IllegalArgumentException("unknown message type " + type);
+    }
+  }
+
+  private static HelloMessage hello(boolean binary) {
+    return new HelloMessage(
+        NEIGHBOR,
+        LOCAL,
+        binary
+            ? List.of(HelloMessage.ENCODING_JSON, HelloMessage.ENCODING_BINARY)
+            : List.of(HelloMessage.ENCODING_JSON),
+        List.of(HelloMessage.FEATURE_TTL));
+  }
+
+  /**
+   * Create a router with one neighbor that supports hop limits and advertises a route to every
+   * benchmark destination. The router is not started, so it sends no periodic updates.
+   *
+   * @param udpClient The client the router sends with
+   * @param binary Whether the router and its neighbor agree on the binary encoding
+   * @param routes The number of routes learned from the neighbor
+   * @return The router
+   * @throws IOException If the neighbor's messages cannot be encoded
+   */
+  static Router router(UdpClient udpClient, boolean binary, int routes) throws IOException {
+    RouterOptions options = new RouterOptions();
+    options.setBinaryEncoding(binary);
+    Router router = new Router(LOCAL, UPDATE_PERIOD, udpClient, options);
+    router.addNeighbor(NEIGHBOR, 1);
+
+    byte[] hello = jsonCodec.encode(hello(binary));
+    router.handleMessage(hello, 0, hello.length, NEIGHBOR_ADDRESS);
+    byte[] update = jsonCodec.encode(new UpdateMessage(NEIGHBOR, LOCAL, distances(routes, 1)));
+    router.handleMessage(update, 0, update.length, NEIGHBOR_ADDRESS);
+    return router;
+  }
+}
@@ -0,0 +1,74 @@
+package com.redes.udprip.benchmark;
+
+import com.redes.udprip.app.Router;
+import com.redes.udprip.infra.UdpClient;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Serializing and forwarding messages to the next hop. Transit messages are relayed as they are
+ * when both links use the same encoding and decoded and encoded again when they do not; traces
+ * originated by the router are always serialized.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForwardBenchmark {
+  @Param({"data", "trace"})
+  public String type;
+
+  /** Encoding of the link the message arrives on. */
+  @Param({"json", "binary"})
+  public String inbound;
+
+  /** Encoding of the link to the next hop. */
+  @Param({"json", "binary"})
+  public String outbound;
+
+  /** Number of routes in the routing table. */
+  @Param({"1000"})
+  public int routes;
+
+  private UdpClient udpClient;
+  private Router router;
+  private byte[] datagram;
+  private String destination;
+
+  @Setup
+  public void setUp() throws IOException {
+    udpClient = new UdpClient(Fixtures.PORT);
+    router = Fixtures.router(udpClient, outbound.equals("binary"), routes);
+    datagram = Fixtures.codec(inbound).encode(Fixtures.message(type, 0));
+    destination = Fixtures.destination(routes - 1);
+  }
+
+  @TearDown
+  public void tearDown() {
+    udpClient.close();
+  }
+
+  @Benchmark
+  public void relay() {
+    router.handleMessage(datagram, 0, datagram.length, Fixtures.NEIGHBOR_ADDRESS);
+  }
+
+  @Benchmark
+  public void originateTrace() {
+    router.sendTrace(destination);
+  }
+}
@@ -0,0 +1,62 @@
+package com.redes.udprip.benchmark;
+
+import com.redes.udprip.app.Router;
+import com.redes.udprip.infra.UdpClient;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Handling of a received datagram by the router, from peeking at its header to acting on it, for
+ * each message type. Data and trace messages are in transit and relayed to the neighbor in the
+ * encoding they arrived in; updates repeat the routes the router already has.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandleMessageBenchmark {
+  @Param({"data", "update", "trace", "hello"})
+  public String type;
+
+  @Param({"json", "binary"})
+  public String encoding;
+
+  /** Number of routes in the routing table and in an update message. */
+  @Param({"25"})
+  public int routes;
+
+  private UdpClient udpClient;
+  private Router router;
+  private byte[] datagram;
+
+  @Setup
+  public void setUp() throws IOException {
+    udpClient = new UdpClient(Fixtures.PORT);
+    router = Fixtures.router(udpClient, encoding.equals("binary"), routes);
+    datagram = Fixtures.codec(encoding).encode(Fixtures.message(type, routes));
+  }
+
+  @TearDown
+  public void tearDown() {
+    udpClient.close();
+  }
+
+  @Benchmark
+  public void handleMessage() {
+    router.handleMessage(datagram, 0, datagram.length, Fixtures.NEIGHBOR_ADDRESS);
+  }
+}
@@ -0,0 +1,95 @@
+package com.redes.udprip.benchmark;
+
+import com.redes.udprip.app.DistanceVector;
+import com.redes.udprip.model.Ipv4;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Next hop lookups on their own and while another thread keeps changing routes, as happens when
+ * data is forwarded during an update storm. The thread counts of the contended group can be changed
+ * with JMH's {@code -tg} option.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NextHopBenchmark {
+  private static final int LOOKUP_KEYS = 4096;
+
+  @Param({"1000", "100000"})
+  public int routes;
+
+  /** Number of routes changed by each update of the mutating thread. */
+  @Param({"16"})
+  public int churn;
+
+  private DistanceVector distanceVector;
+  private int[] destinations;
+  private Map<String, Integer> churnUpdate;
+  private Map<String, Integer> changedChurnUpdate;
+  private boolean changed;
+
+  /** Position of a lookup thread in the destination keys. */
+  @State(Scope.Thread)
+  public static class Cursor {
+    int next;
+  }
+
+  @Setup
+  public void setUp() {
+    distanceVector = new DistanceVector(Fixtures.LOCAL);
+    distanceVector.applyUpdate(Fixtures.NEIGHBOR, Fixtures.distances(routes, 1), 1);
+    churnUpdate = Fixtures.distances(Math.min(churn, routes), 1);
+    changedChurnUpdate = Fixtures.distances(Math.min(churn, routes), 2);
+
+    Random random = new Random(42);
+    destinations = new int[LOOKUP_KEYS];
+    for (int i = 0; i < LOOKUP_KEYS; i++) {
+      destinations[i] = Ipv4.parse(Fixtures.destination(random.nextInt(routes)));
+    }
+  }
+
+  @Benchmark
+  @Group("uncontended")
+  public int uncontendedLookup(Cursor cursor) {
+    return lookup(cursor);
+  }
+
+  @Benchmark
+  @Group("contended")
+  @GroupThreads(3)
+  public int contendedLookup(Cursor cursor) {
+    return lookup(cursor);
+  }
+
+  @Benchmark
+  @Group("contended")
+  @GroupThreads(1)
+  public boolean contendedUpdate() {
+    changed = !changed;
+    return distanceVector.applyUpdate(
+        Fixtures.NEIGHBOR, changed ? changedChurnUpdate : churnUpdate, 1);
+  }
+
+  private int lookup(Cursor cursor) {
+    int destination = destinations[cursor.next++ & (LOOKUP_KEYS - 1)];
+    return distanceVector.getNextHop(destination, cursor.next);
+  }
+}
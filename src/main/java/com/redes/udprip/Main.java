@@ -1,26 +1,44 @@
 package com.redes.udprip;
 
+import com.redes.udprip.app.Clock;
 import com.redes.udprip.app.Router;
+import com.redes.udprip.app.RouterOptions;
+import com.redes.udprip.app.TimerWheel;
 import com.redes.udprip.infra.CliHandler;
+import com.redes.udprip.infra.InboundScheduler;
 import com.redes.udprip.infra.UdpClient;
+import com.redes.udprip.infra.UdpHost;
 import com.redes.udprip.infra.UdpServer;
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.IOException;
 import java.net.InetAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class Main {
   private static final Logger logger = LoggerFactory.getLogger(Main.class);
   private static final int UDP_PORT = 55151;
+  private static final int RECEIVER_COUNT = Integer.getInteger("udprip.receivers", 1);
 
   public static void main(String[] args) {
     try {
+      if (args.length == 3 && args[0].equals("--hosts")) {
+        runHosted(args[1], Integer.parseInt(args[2]));
+        return;
+      }
       if (args.length < 2 || args.length > 3) {
-        System.out.println("Usage: java -jar udprip.jar <address> <period> [startup]");
+        System.out.println(
+            "Usage: java -jar udprip.jar <address> <period> [startup]\n"
+                + "       java -jar udprip.jar --hosts <hosts> <period>");
         System.exit(1);
       }
 
@@ -29,19 +47,20 @@ public class Main {
       String startupFile = args.length == 3 ? args[2] : null;
 
       InetAddress localAddress = InetAddress.getByName(address);
-      UdpClient udpClient = new UdpClient(UDP_PORT);
-      Router router = new Router(localAddress.getHostAddress(), period, udpClient);
-      UdpServer udpServer = new UdpServer(localAddress, UDP_PORT, router);
+      UdpClient udpClient = new UdpClient(UDP_PORT, localAddress);
+      RouterOptions options = RouterOptions.fromSystemProperties();
+      warnIfNotPoisoning(options);
+      Router router = new Router(localAddress.getHostAddress(), period, udpClient, options);
+      UdpServer udpServer = new UdpServer(localAddress, UDP_PORT, RECEIVER_COUNT, router);
       CliHandler cliHandler = new CliHandler(router);
 
-      Thread serverThread = new Thread(udpServer);
-      serverThread.setDaemon(true);
-      serverThread.start();
+      udpServer.start();
       logger.info("UDP server started on {}:{}", address, UDP_PORT);
 
       ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-      scheduler.scheduleAtFixedRate(router::sendPeriodicUpdates, period, period, TimeUnit.SECONDS);
+      router.start(scheduler);
       logger.info("Periodic updates scheduled every {} seconds", period);
+      registerMetrics(Map.of(localAddress.getHostAddress(), router));
 
       if (startupFile != null) {
         processStartupFile(startupFile, router);
@@ -50,14 +69,123 @@ public class Main {
       cliHandler.start();
 
       scheduler.shutdown();
-      serverThread.interrupt();
       udpServer.stop();
+      udpClient.close();
     } catch (Exception e) {
       logger.error("Error starting the router", e);
       System.exit(1);
     }
   }
 
+  /**
+   * Run every router listed in a hosts file in this process. Each line holds a router address and
+   * optionally its startup file. The routers share one thread receiving on all of their sockets,
+   * one pool of {@code udprip.handlers} threads handling what it receives, one thread sending and
+   * one thread running their timers, and CLI commands are prefixed with the address of the router
+   * they are for.
+   *
+   * @param hostsFile The hosts file
+   * @param period The update period of every router, in seconds
+   * @throws IOException If the hosts file cannot be read or a socket cannot be bound
+   */
+  private static void runHosted(String hostsFile, int period) throws IOException {
+    RouterOptions options = RouterOptions.fromSystemProperties();
+    warnIfNotPoisoning(options);
+    ExecutorService sender =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "udp-sender");
+              thread.setDaemon(true);
+              return thread;
+            });
+    UdpHost host = new UdpHost(UDP_PORT);
+    InboundScheduler ingress = new InboundScheduler(options);
+    Map<String, Router> routers = new LinkedHashMap<>();
+    Map<String, String> startupFiles = new LinkedHashMap<>();
+
+    try (BufferedReader reader = new BufferedReader(new FileReader(hostsFile))) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+
+        String[] parts = line.split("\\s+");
+        String address = InetAddress.getByName(parts[0]).getHostAddress();
+        if (routers.containsKey(address)) {
+          logger.warn("Router {} is listed more than once in {}", address, hostsFile);
+          continue;
+        }
+        UdpHost.Endpoint endpoint = host.bind(InetAddress.getByName(address));
+        Router router =
+            new Router(address, period, endpoint, options, Clock.SYSTEM, sender, new Random());
+        endpoint.setHandler(ingress.attach(router));
+        routers.put(address, router);
+        if (parts.length > 1) {
+          startupFiles.put(address, parts[1]);
+        }
+      }
+    }
+
+    ingress.start();
+    host.start();
+    ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    routers.values().forEach(Router::start);
+    scheduler.scheduleAtFixedRate(
+        () -> routers.values().forEach(Router::advanceTimers),
+        TimerWheel.DEFAULT_TICK_MILLIS,
+        TimerWheel.DEFAULT_TICK_MILLIS,
+        TimeUnit.MILLISECONDS);
+    logger.info("Hosting {} routers with updates every {} seconds", routers.size(), period);
+    registerMetrics(routers);
+
+    startupFiles.forEach((address, file) -> processStartupFile(file, routers.get(address)));
+
+    new CliHandler(routers).start();
+
+    scheduler.shutdown();
+    host.close();
+    ingress.stop();
+    sender.shutdown();
+  }
+
+  private static void warnIfNotPoisoning(RouterOptions options) {
+    if (!options.getPoisonMode().poisonsRoutes()) {
+      logger.warn(
+          "Route poisoning is off (udprip.poisoning=none): a lost route can count to infinity in a"
+              + " loop of three or more routers; use routes or reverse to withdraw it within a few"
+              + " update periods");
+    }
+  }
+
+  /**
+   * Make the routers' metrics readable over JMX. Starting the platform MBean server takes a good
+   * part of a second, so it is done on its own thread instead of holding up routing. A router whose
+   * metrics cannot be registered still runs.
+   *
+   * @param routers The routers, by address
+   */
+  private static void registerMetrics(Map<String, Router> routers) {
+    Thread thread =
+        new Thread(
+            () ->
+                routers.forEach(
+                    (address, router) -> {
+                      try {
+                        router.getMetrics().register(address);
+                      } catch (JMException e) {
+                        logger.warn(
+                            "Unable to register metrics of {} with JMX: {}",
+                            address,
+                            e.getMessage());
+                      }
+                    }),
+            "jmx-register");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
   private static void processStartupFile(String filename, Router router) {
     try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
       String line;
@@ -71,12 +199,19 @@ public class Main {
         if (parts.length > 0) {
           switch (parts[0]) {
             case "add":
-              if (parts.length == 3) {
+              if (parts.length == 3 && parts[1].contains("/")) {
+                router.addPrefix(parts[1], Integer.parseInt(parts[2]));
+              } else if (parts.length == 3) {
                 router.addNeighbor(parts[1], Integer.parseInt(parts[2]));
+              } else if (parts.length == 4) {
+                router.addNeighbor(
+                    parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
               }
               break;
             case "del":
-              if (parts.length == 2) {
+              if (parts.length == 2 && parts[1].contains("/")) {
+                router.removePrefix(parts[1]);
+              } else if (parts.length == 2) {
                 router.removeNeighbor(parts[1]);
               }
               break;
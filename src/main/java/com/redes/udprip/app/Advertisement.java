@@ -0,0 +1,24 @@
+package com.redes.udprip.app;
+
+import java.util.Map;
+
+/** The routes a router advertises to one neighbor, as of a routing table version. */
+public class Advertisement {
+  private final Map<String, Integer> distances;
+  private final long version;
+
+  public Advertisement(Map<String, Integer> distances, long version) {
+    this.distances = distances;
+    this.version = version;
+  }
+
+  /** Get the advertised distances keyed by destination prefix. */
+  public Map<String, Integer> getDistances() {
+    return distances;
+  }
+
+  /** Get the routing table version the advertisement is current as of. */
+  public long getVersion() {
+    return version;
+  }
+}
@@ -0,0 +1,229 @@
+package com.redes.udprip.app;
+
+import com.redes.udprip.model.Ipv4;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps each neighbor's split-horizon advertisement up to date as routes change, so advertising an
+ * unchanged table costs nothing, and logs recent route changes so deltas do not need a table scan.
+ *
+ * <p>With route poisoning, routes marked {@link DistanceVector#UNREACHABLE} are advertised like any
+ * other, and a delta withdraws a route from the neighbor it is now learned from by advertising it
+ * as unreachable, since the neighbor would otherwise keep the distance it last heard. With poison
+ * reverse, full advertisements do the same instead of leaving those routes out.
+ *
+ * <p>This class is not thread-safe; {@link DistanceVector} keeps one per stripe of destinations and
+ * only calls it while holding that stripe's lock.
+ */
+public class AdvertisementCache {
+  private static final int MIN_LOG_CAPACITY = 64;
+
+  private final PoisonMode poisonMode;
+  private final Map<Integer, NeighborAdvertisement> neighbors = new HashMap<>();
+  private long[] logPrefixes = new long[MIN_LOG_CAPACITY];
+  private long[] logVersions = new long[MIN_LOG_CAPACITY];
+  private int logSize;
+  private long logFloor;
+
+  /** A neighbor's advertised routes and the immutable snapshot last handed out for them. */
+  private static final class NeighborAdvertisement {
+    private final Map<String, Integer> distances;
+    private Advertisement snapshot;
+
+    private NeighborAdvertisement(Map<String, Integer> distances) {
+      this.distances = distances;
+    }
+  }
+
+  /**
+   * Create a cache.
+   *
+   * @param poisonMode How lost routes and routes learned from a neighbor are advertised
+   */
+  public AdvertisementCache(PoisonMode poisonMode) {
+    this.poisonMode = poisonMode;
+  }
+
+  /**
+   * Record that a route was added or changed.
+   *
+   * @param prefix The destination prefix
+   * @param distance The new distance
+   * @param learnedFrom The neighbor the route is now learned from
+   * @param version The version the change was stamped with
+   * @param tableSize The current number of routes, used to size the change log
+   */
+  public void routeChanged(
+      long prefix, int distance, int learnedFrom, long version, int tableSize) {
+    appendLog(prefix, version, tableSize);
+    if (neighbors.isEmpty()) {
+      return;
+    }
+
+    String destination = Ipv4.formatPrefix(prefix);
+    boolean advertised = poisonMode.poisonsRoutes() || distance < DistanceVector.UNREACHABLE;
+    for (Map.Entry<Integer, NeighborAdvertisement> entry : neighbors.entrySet()) {
+      NeighborAdvertisement advertisement = entry.getValue();
+      int advertisedDistance = advertisedDistance(entry.getKey(), distance, learnedFrom, false);
+      if (!advertised || advertisedDistance < 0) {
+        if (advertisement.distances.remove(destination) != null) {
+          advertisement.snapshot = null;
+        }
+      } else {
+        Integer previous = advertisement.distances.put(destination, advertisedDistance);
+        if (previous == null || previous != advertisedDistance) {
+          advertisement.snapshot = null;
+        }
+      }
+    }
+  }
+
+  /**
+   * Record that a route was removed.
+   *
+   * @param prefix The destination prefix
+   */
+  public void routeRemoved(long prefix) {
+    if (neighbors.isEmpty()) {
+      return;
+    }
+
+    String destination = Ipv4.formatPrefix(prefix);
+    for (NeighborAdvertisement advertisement : neighbors.values()) {
+      if (advertisement.distances.remove(destination) != null) {
+        advertisement.snapshot = null;
+      }
+    }
+  }
+
+  /**
+   * Drop the cached advertisement of a neighbor that is gone.
+   *
+   * @param neighbor The neighbor address
+   */
+  public void forget(int neighbor) {
+    neighbors.remove(neighbor);
+  }
+
+  /**
+   * Get the full advertisement for a neighbor. The same instance is returned for as long as none of
+   * the routes advertised to the neighbor change, so callers can cache derived data such as its
+   * encoding against it.
+   *
+   * @param neighbor The neighbor address
+   * @param table The routing table, scanned only the first time a neighbor is seen
+   * @param version The current table version
+   * @return The advertisement
+   */
+  public Advertisement full(int neighbor, RouteTable table, long version) {
+    NeighborAdvertisement advertisement = neighbors.get(neighbor);
+    if (advertisement == null) {
+      advertisement = new NeighborAdvertisement(scan(neighbor, table, 0));
+      neighbors.put(neighbor, advertisement);
+    }
+
+    if (advertisement.snapshot == null) {
+      advertisement.snapshot =
+          new Advertisement(
+              Collections.unmodifiableMap(new HashMap<>(advertisement.distances)), version);
+    }
+    return advertisement.snapshot;
+  }
+
+  /**
+   * Get the routes changed since a version for a neighbor.
+   *
+   * @param neighbor The neighbor address
+   * @param sinceVersion The version the neighbor is current with
+   * @param table The routing table
+   * @param version The current table version
+   * @return The advertisement
+   */
+  public Advertisement changesSince(
+      int neighbor, long sinceVersion, RouteTable table, long version) {
+    if (sinceVersion < logFloor) {
+      // The log no longer reaches back that far
+      return new Advertisement(scan(neighbor, table, sinceVersion), version);
+    }
+
+    int start = Arrays.binarySearch(logVersions, 0, logSize, sinceVersion);
+    start = start >= 0 ? start + 1 : -start - 1;
+
+    Map<String, Integer> distances = new HashMap<>();
+    for (int i = start; i < logSize; i++) {
+      int slot = table.find(logPrefixes[i]);
+      int distance = slot >= 0 ? advertisedDistance(neighbor, table, slot, true) : -1;
+      if (distance >= 0) {
+        distances.put(Ipv4.formatPrefix(logPrefixes[i]), distance);
+      }
+    }
+    return new Advertisement(distances, version);
+  }
+
+  private Map<String, Integer> scan(int neighbor, RouteTable table, long sinceVersion) {
+    Map<String, Integer> distances =
+        new HashMap<>((sinceVersion == 0 ? table.size() : 16) * 4 / 3 + 1);
+
+    for (int slot = 0; slot < table.capacity(); slot++) {
+      if (!table.isUsed(slot) || table.getVersion(slot) <= sinceVersion) {
+        continue;
+      }
+
+      int distance = advertisedDistance(neighbor, table, slot, sinceVersion > 0);
+      if (distance >= 0) {
+        distances.put(Ipv4.formatPrefix(table.getPrefix(slot)), distance);
+      }
+    }
+
+    return distances;
+  }
+
+  private int advertisedDistance(int neighbor, RouteTable table, int slot, boolean delta) {
+    int distance = table.getDistance(slot);
+    if (distance >= DistanceVector.UNREACHABLE && !poisonMode.poisonsRoutes()) {
+      return -1;
+    }
+    return advertisedDistance(neighbor, distance, table.getLearnedFrom(slot), delta);
+  }
+
+  /**
+   * Get the distance advertised to a neighbor for a route, applying split horizon or poison
+   * reverse.
+   *
+   * @param neighbor The neighbor address
+   * @param distance The route's distance
+   * @param learnedFrom The neighbor the route was learned from
+   * @param delta Whether the route goes into a delta rather than a full advertisement
+   * @return The distance to advertise, or -1 if the route is left out
+   */
+  private int advertisedDistance(int neighbor, int distance, int learnedFrom, boolean delta) {
+    if (neighbor != learnedFrom) {
+      return distance;
+    }
+    boolean poisoned = delta ? poisonMode.poisonsRoutes() : poisonMode.poisonsReverse();
+    return poisoned ? DistanceVector.UNREACHABLE : -1;
+  }
+
+  private void appendLog(long prefix, long version, int tableSize) {
+    if (logSize == logPrefixes.length) {
+      if (logPrefixes.length < tableSize * 4) {
+        logPrefixes = Arrays.copyOf(logPrefixes, logPrefixes.length * 2);
+        logVersions = Arrays.copyOf(logVersions, logVersions.length * 2);
+      } else {
+        // Drop the older half; deltas from before it fall back to a table scan
+        int dropped = logSize / 2;
+        logFloor = logVersions[dropped - 1];
+        System.arraycopy(logPrefixes, dropped, logPrefixes, 0, logSize - dropped);
+        System.arraycopy(logVersions, dropped, logVersions, 0, logSize - dropped);
+        logSize -= dropped;
+      }
+    }
+
+    logPrefixes[logSize] = prefix;
+    logVersions[logSize] = version;
+    logSize++;
+  }
+}
@@ -0,0 +1,17 @@
+package com.redes.udprip.app;
+
+/**
+ * Source of monotonic time for timers and timestamps. Unlike wall-clock time it never jumps, so
+ * expiry is not affected by clock adjustments.
+ */
+public interface Clock {
+  /** The system's monotonic clock. */
+  Clock SYSTEM = () -> System.nanoTime() / 1_000_000;
+
+  /**
+   * Get the current time. Only differences between values are meaningful.
+   *
+   * @return The current time in milliseconds
+   */
+  long millis();
+}
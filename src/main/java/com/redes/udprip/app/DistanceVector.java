@@ -1,24 +1,170 @@
 package com.redes.udprip.app;
 
+import com.redes.udprip.metrics.RouteChangeEvent;
+import com.redes.udprip.model.Ipv4;
 import com.redes.udprip.model.RoutingEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Implements the distance vector routing algorithm. */
+/**
+ * Implements the distance vector routing algorithm. Routes are kept in a {@link RouteTable} keyed
+ * by destination prefix; the String-based methods convert at the boundary. Besides its own address
+ * a router can originate prefixes for networks attached to it.
+ *
+ * <p>Every route heard from every neighbor is kept in a {@link Rib}, and the routing table holds
+ * the best of them for each destination. When a neighbor is lost or its link weight changes, the
+ * best remaining routes are selected locally right away. When several neighbors offer the best
+ * distance, all of them are installed as equal-cost next hops; the first of them is the one the
+ * route is considered learned from.
+ *
+ * <p>Every change to a route stamps it with the next value of a table-wide sequence number, so the
+ * routes changed since a given version can be advertised on their own. An {@link
+ * AdvertisementCache} follows every change so that full and delta advertisements are served without
+ * scanning the table.
+ *
+ * <p>Routes heard from a neighbor time out when it stops advertising them. A destination left
+ * without any route is kept as unreachable for a garbage-collection interval before it is deleted,
+ * like in RIP; unreachable routes are not forwarded on, and are only advertised with route
+ * poisoning, see {@link PoisonMode}. Both timers run on a {@link TimerWheel}, and refreshing a
+ * route only records when it was heard.
+ *
+ * <p>Alternate routes in the RIB may be stale: in a mesh, a neighbor's route can lead back through
+ * this router, and failing over to it starts a count to infinity. So when a route gets worse or is
+ * lost and no neighbor offers one at least as good, the destination is held down: it is treated as
+ * lost, and for a hold-down interval no route longer than the one it had is accepted. Meanwhile the
+ * loss spreads and the neighbors' stale routes are withdrawn, and once the interval is over the
+ * best route left is installed.
+ *
+ * <p>Destinations are split by prefix hash into stripes, each with its own routing table, RIB,
+ * equal-cost next hops and advertisement cache, guarded by the stripe's own lock. A destination's
+ * routes only ever depend on what neighbors advertised for that destination, so updates from
+ * different neighbors run in parallel as long as they touch different stripes, and the
+ * split-horizon and replacement rules hold per destination as before. Versions come from one
+ * table-wide counter, taken while holding the lock of the stripe being changed.
+ *
+ * <p>Forwarding lookups read an immutable {@link Fib} published through a volatile field, so they
+ * never wait for an update to finish. Each change to a next hop is applied to a {@link Fib.Builder}
+ * while the stripe's lock is held, which rewrites only the trie nodes on the path to the prefix; a
+ * snapshot is published once the change, or the whole update, is done.
+ */
 public class DistanceVector {
   private static final Logger logger = LoggerFactory.getLogger(DistanceVector.class);
 
-  private final String localAddress;
-  private final Map<String, RoutingEntry> routingTable = new ConcurrentHashMap<>();
+  /** Returned by {@link #getNextHop(int)} when there is no route to the destination. */
+  public static final int NO_ROUTE = 0;
+
+  /** Distance of a route that has been lost and is waiting to be garbage collected. */
+  public static final int UNREACHABLE = 256;
+
+  private static final int STRIPE_BITS = 4;
+  private static final int STRIPES = 1 << STRIPE_BITS;
+
+  private final int localAddress;
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final Map<Integer, Integer> linkWeights = new ConcurrentHashMap<>();
+  private final Map<Integer, FullAdvertisement> fullAdvertisements = new ConcurrentHashMap<>();
+  private volatile Fib fib;
+  // Guards the FIB builder. Taken while holding a stripe's lock, never the other way round
+  private final Object fibLock = new Object();
+  private final Fib.Builder fibBuilder = new Fib.Builder();
+  private boolean fibDirty;
+  private final Clock clock;
+  private final TimerWheel timers;
+  private final long routeTimeoutMillis;
+  private final Map<Integer, Long> routeTimeouts = new ConcurrentHashMap<>();
+  private final long garbageCollectionMillis;
+  private final long holdDownMillis;
+  private final PoisonMode poisonMode;
+  private final AtomicLong version = new AtomicLong();
   private static final Integer MAX_ROUTE_LENGTH = 255;
 
+  /** The routes to one share of the destinations. Guarded by its own lock. */
+  private static final class Stripe {
+    private final RouteTable routingTable = new RouteTable();
+    private final Rib rib = new Rib();
+    private final Map<Long, int[]> equalCostNextHops = new HashMap<>();
+    private final Map<Long, HoldDown> holdDowns = new HashMap<>();
+    private final AdvertisementCache advertisements;
+    // Number of routes stamped, so callers can tell whether they changed any
+    private long changes;
+
+    private Stripe(PoisonMode poisonMode) {
+      this.advertisements = new AdvertisementCache(poisonMode);
+    }
+  }
+
+  /**
+   * A destination held down after its route got worse.
+   *
+   * @param distance The distance of the route before, the longest accepted until the end
+   * @param until When the hold-down ends, in milliseconds
+   */
+  private record HoldDown(int distance, long until) {}
+
+  /** A neighbor's full advertisement, merged from the stripe snapshots it was built from. */
+  private record FullAdvertisement(Advertisement[] parts, Advertisement advertisement) {}
+
+  /**
+   * Create a distance vector whose routes never time out and whose lost routes are deleted at once.
+   *
+   * @param localAddress The address of this router
+   */
   public DistanceVector(String localAddress) {
-    this.localAddress = localAddress;
-    routingTable.put(localAddress, new RoutingEntry(localAddress, 0, localAddress, localAddress));
+    this(localAddress, Clock.SYSTEM, new TimerWheel(Clock.SYSTEM), 0, 0, 0, PoisonMode.NONE);
+  }
+
+  /**
+   * Create a distance vector.
+   *
+   * @param localAddress The address of this router
+   * @param clock The clock route timestamps are taken from
+   * @param timers The timer wheel running route timeouts and garbage collection
+   * @param routeTimeoutMillis How long a route is kept without being advertised again, 0 to keep it
+   *     for as long as its neighbor is alive
+   * @param garbageCollectionMillis How long a lost route is kept as unreachable, 0 to delete it at
+   *     once
+   * @param holdDownMillis How long a destination whose route got worse accepts no longer route, 0
+   *     to fail over to the best alternate route at once
+   * @param poisonMode How lost routes and routes learned from a neighbor are advertised; route
+   *     poisoning needs a garbage-collection interval
+   */
+  public DistanceVector(
+      String localAddress,
+      Clock clock,
+      TimerWheel timers,
+      long routeTimeoutMillis,
+      long garbageCollectionMillis,
+      long holdDownMillis,
+      PoisonMode poisonMode) {
+    this.localAddress = Ipv4.parse(localAddress);
+    this.clock = clock;
+    this.timers = timers;
+    this.routeTimeoutMillis = routeTimeoutMillis;
+    this.garbageCollectionMillis = garbageCollectionMillis;
+    this.holdDownMillis = holdDownMillis;
+    this.poisonMode = poisonMode;
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new Stripe(poisonMode);
+    }
+
+    long localRoute = hostPrefix(this.localAddress);
+    Stripe stripe = stripeFor(localRoute);
+    synchronized (stripe) {
+      int slot =
+          stripe.routingTable.put(
+              localRoute, 0, this.localAddress, this.localAddress, clock.millis());
+      stamp(stripe, slot);
+      updateFib(stripe, localRoute);
+    }
+    publishFib();
   }
 
   /**
@@ -27,86 +173,632 @@ public class DistanceVector {
    * @param neighborIp The IP address of the neighbor
    * @param neighborDistances The distance vector received from the neighbor
    * @param linkWeight The weight of the link to the neighbor
+   * @return true if any advertised route changed
    */
-  public synchronized void applyUpdate(
+  public boolean applyUpdate(
       String neighborIp, Map<String, Integer> neighborDistances, int linkWeight) {
-    RoutingEntry neighborEntry = routingTable.get(neighborIp);
-    if (neighborEntry == null) {
-      routingTable.put(
-          neighborIp, new RoutingEntry(neighborIp, linkWeight, neighborIp, neighborIp));
-    }
+    int neighbor = Ipv4.parse(neighborIp);
+    long now = clock.millis();
 
+    // Parse the routes before taking any lock, and group them by stripe
+    long[] destinations = new long[neighborDistances.size()];
+    int[] distances = new int[neighborDistances.size()];
+    int count = 0;
     for (Map.Entry<String, Integer> entry : neighborDistances.entrySet()) {
-      String destination = entry.getKey();
-      int distanceThroughNeighbor = linkWeight + entry.getValue();
+      try {
+        destinations[count] = Ipv4.parsePrefix(entry.getKey());
+      } catch (IllegalArgumentException e) {
+        logger.warn("Ignoring route to invalid destination {} from {}", entry.getKey(), neighborIp);
+        continue;
+      }
+      if (entry.getValue() == null || entry.getValue() < 0) {
+        logger.warn(
+            "Ignoring route to {} with invalid distance from {}", entry.getKey(), neighborIp);
+        continue;
+      }
+      distances[count++] = entry.getValue();
+    }
+
+    int[] stripeStarts = new int[STRIPES + 1];
+    for (int i = 0; i < count; i++) {
+      stripeStarts[stripeIndex(destinations[i]) + 1]++;
+    }
+    for (int s = 0; s < STRIPES; s++) {
+      stripeStarts[s + 1] += stripeStarts[s];
+    }
+    int[] order = new int[count];
+    int[] stripeEnds = Arrays.copyOf(stripeStarts, STRIPES);
+    for (int i = 0; i < count; i++) {
+      order[stripeEnds[stripeIndex(destinations[i])]++] = i;
+    }
+
+    // A new neighbor or link weight affects the neighbor's routes in every stripe
+    Integer previousWeight = linkWeights.put(neighbor, linkWeight);
+    boolean weightChanged = previousWeight == null || previousWeight != linkWeight;
+    long neighborRoute = hostPrefix(neighbor);
+    int neighborStripe = stripeIndex(neighborRoute);
+    long routeTimeout = routeTimeoutFor(neighbor);
+    boolean changed = false;
+    boolean fibChanged = false;
 
-      if (distanceThroughNeighbor > MAX_ROUTE_LENGTH) {
+    for (int s = 0; s < STRIPES; s++) {
+      if (!weightChanged && s != neighborStripe && stripeStarts[s] == stripeStarts[s + 1]) {
         continue;
       }
 
-      RoutingEntry currentEntry = routingTable.get(destination);
-      if (currentEntry == null) {
-        routingTable.put(
-            destination,
-            new RoutingEntry(destination, distanceThroughNeighbor, neighborIp, neighborIp));
-        logger.debug(
-            "Added new route to {} via {} with distance {}",
-            destination,
-            neighborIp,
-            distanceThroughNeighbor);
-      } else if (currentEntry.getLearnedFrom().equals(neighborIp)
-          && distanceThroughNeighbor != currentEntry.getDistance()) {
-        currentEntry.setDistance(distanceThroughNeighbor);
-        currentEntry.updateTimestamp();
-        logger.debug(
-            "Updated route to {} via {} with new distance {}",
-            destination,
-            neighborIp,
-            distanceThroughNeighbor);
-      } else if (distanceThroughNeighbor < currentEntry.getDistance()) {
-        currentEntry.setDistance(distanceThroughNeighbor);
-        currentEntry.setNextHop(neighborIp);
-        currentEntry.setLearnedFrom(neighborIp);
-        currentEntry.updateTimestamp();
-        logger.debug(
-            "Found better route to {} via {} with distance {}",
-            destination,
-            neighborIp,
-            distanceThroughNeighbor);
+      Stripe stripe = stripes[s];
+      synchronized (stripe) {
+        long previousChanges = stripe.changes;
+        Rib rib = stripe.rib;
+        if (rib.setLinkWeight(neighbor, linkWeight)) {
+          fibChanged |= selectRoutesFrom(stripe, rib.routesFrom(neighbor), now);
+        }
+
+        // A neighbor is always reachable over the link to it
+        if (s == neighborStripe && rib.setRoute(neighbor, neighborRoute, 0, now)) {
+          fibChanged |= selectRoute(stripe, neighborRoute, now);
+        }
+
+        for (int k = stripeStarts[s]; k < stripeStarts[s + 1]; k++) {
+          long destination = destinations[order[k]];
+          if (routeTimeout > 0 && !rib.hasRoute(neighbor, destination)) {
+            RouteTimer timer = new RouteTimer(neighbor, destination, rib.routesFrom(neighbor));
+            timers.schedule(routeTimeout, timer);
+          }
+          if (rib.setRoute(neighbor, destination, distances[order[k]], now)) {
+            fibChanged |= selectRoute(stripe, destination, now);
+          }
+        }
+        changed |= stripe.changes != previousChanges;
+      }
+    }
+
+    if (fibChanged) {
+      publishFib();
+    }
+    return changed;
+  }
+
+  /**
+   * Change the weight of the link to a neighbor and reselect the routes it advertised.
+   *
+   * @param neighborIp The IP address of the neighbor
+   * @param linkWeight The new link weight
+   * @return true if any advertised route changed
+   */
+  public boolean updateLinkWeight(String neighborIp, int linkWeight) {
+    int neighbor = Ipv4.parse(neighborIp);
+    if (linkWeights.replace(neighbor, linkWeight) == null) {
+      return false;
+    }
+
+    long now = clock.millis();
+    boolean changed = false;
+    boolean fibChanged = false;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        long previousChanges = stripe.changes;
+        if (stripe.rib.routesFrom(neighbor) != null
+            && stripe.rib.setLinkWeight(neighbor, linkWeight)) {
+          fibChanged |= selectRoutesFrom(stripe, stripe.rib.routesFrom(neighbor), now);
+        }
+        changed |= stripe.changes != previousChanges;
+      }
+    }
+
+    if (fibChanged) {
+      publishFib();
+    }
+    return changed;
+  }
+
+  /**
+   * Select the best route for every destination in a set of routes. Must hold the stripe's lock.
+   *
+   * @param stripe The stripe the routes belong to
+   * @param routes The routes whose destinations to reselect
+   * @param now The current time in milliseconds
+   * @return true if the next hop for any destination changed
+   */
+  private boolean selectRoutesFrom(Stripe stripe, RouteTable routes, long now) {
+    boolean fibChanged = false;
+    for (int slot = 0; slot < routes.capacity(); slot++) {
+      if (routes.isUsed(slot)) {
+        fibChanged |= selectRoute(stripe, routes.getPrefix(slot), now);
+      }
+    }
+    return fibChanged;
+  }
+
+  /**
+   * Install the best route the RIB has for a destination, or remove the route if there is none.
+   * Prefixes this router originates are never replaced. Must hold the stripe's lock.
+   *
+   * @param stripe The stripe owning the destination
+   * @param destination The destination prefix
+   * @param now The current time in milliseconds
+   * @return true if the next hop for the destination changed
+   */
+  private boolean selectRoute(Stripe stripe, long destination, long now) {
+    boolean nextHopChanged = installBestRoute(stripe, destination, now);
+    if (nextHopChanged) {
+      updateFib(stripe, destination);
+    }
+    return nextHopChanged;
+  }
+
+  /**
+   * Install the best route the RIB has for a destination in the routing table only. A route that
+   * gets worse without an alternative at least as good starts a hold-down instead.
+   *
+   * @param stripe The stripe owning the destination
+   * @param destination The destination prefix
+   * @param now The current time in milliseconds
+   * @return true if the next hop for the destination changed
+   */
+  private boolean installBestRoute(Stripe stripe, long destination, long now) {
+    RouteTable routingTable = stripe.routingTable;
+    int slot = routingTable.find(destination);
+    // A prefix originated here wins over any learned route, until it is withdrawn
+    if (slot >= 0
+        && routingTable.getLearnedFrom(slot) == localAddress
+        && routingTable.getDistance(slot) != UNREACHABLE) {
+      return false;
+    }
+
+    int currentNextHop = slot >= 0 ? routingTable.getNextHop(slot) : NO_ROUTE;
+    int currentDistance = slot >= 0 ? routingTable.getDistance(slot) : UNREACHABLE;
+    HoldDown holdDown = stripe.holdDowns.get(destination);
+    int maxDistance = holdDown != null ? holdDown.distance() : MAX_ROUTE_LENGTH;
+    long candidate = stripe.rib.best(destination, maxDistance, currentNextHop);
+    if (holdDownMillis > 0
+        && holdDown == null
+        && currentDistance < UNREACHABLE
+        && (candidate == Rib.NO_CANDIDATE || Rib.candidateDistance(candidate) > currentDistance)) {
+      candidate = stripe.rib.best(destination, currentDistance, currentNextHop);
+      if (candidate == Rib.NO_CANDIDATE) {
+        holdDown(stripe, destination, currentDistance, now);
+      }
+    }
+    if (candidate == Rib.NO_CANDIDATE) {
+      if (slot < 0 || routingTable.getDistance(slot) == UNREACHABLE) {
+        return false;
+      }
+      stripe.equalCostNextHops.remove(destination);
+      logger.debug("Lost route to {}", Ipv4.formatPrefix(destination));
+      RouteChangeEvent.emit(
+          localAddress,
+          RouteChangeEvent.REMOVE,
+          destination,
+          UNREACHABLE,
+          NO_ROUTE,
+          routingTable.getDistance(slot),
+          currentNextHop);
+
+      if (garbageCollectionMillis > 0) {
+        routingTable.setDistance(slot, UNREACHABLE);
+        routingTable.setLastUpdated(slot, now);
+        timers.schedule(garbageCollectionMillis, () -> collectGarbage(destination));
+        if (poisonMode.poisonsRoutes()) {
+          // Advertised as unreachable until it is collected, so neighbors drop it right away
+          stamp(stripe, slot);
+          return true;
+        }
+      } else {
+        routingTable.removeAt(slot);
+      }
+      stripe.advertisements.routeRemoved(destination);
+      return true;
+    }
+
+    int distance = Rib.candidateDistance(candidate);
+    int neighbor = Rib.candidateNeighbor(candidate);
+    boolean nextHopsChanged = selectEqualCostNextHops(stripe, destination, distance);
+    if (slot < 0) {
+      slot = routingTable.put(destination, distance, neighbor, neighbor, now);
+      stamp(stripe, slot);
+      logger.debug(
+          "Added new route to {} via {} with distance {}",
+          Ipv4.formatPrefix(destination),
+          Ipv4.format(neighbor),
+          distance);
+      RouteChangeEvent.emit(
+          localAddress, RouteChangeEvent.ADD, destination, distance, neighbor, 0, NO_ROUTE);
+      return true;
+    } else if (neighbor == currentNextHop && distance == routingTable.getDistance(slot)) {
+      return nextHopsChanged;
+    }
+
+    int previousDistance = routingTable.getDistance(slot);
+    RouteChangeEvent.emit(
+        localAddress,
+        previousDistance == UNREACHABLE ? RouteChangeEvent.ADD : RouteChangeEvent.UPDATE,
+        destination,
+        distance,
+        neighbor,
+        previousDistance,
+        currentNextHop);
+    routingTable.setDistance(slot, distance);
+    routingTable.setNextHop(slot, neighbor);
+    routingTable.setLearnedFrom(slot, neighbor);
+    routingTable.setLastUpdated(slot, now);
+    stamp(stripe, slot);
+    logger.debug(
+        "Selected route to {} via {} with distance {}",
+        Ipv4.formatPrefix(destination),
+        Ipv4.format(neighbor),
+        distance);
+    return neighbor != currentNextHop || nextHopsChanged;
+  }
+
+  /**
+   * Hold a destination down, so that only routes no longer than the lost one are accepted until the
+   * hold-down ends. Must hold the stripe's lock.
+   *
+   * @param stripe The stripe owning the destination
+   * @param destination The destination prefix
+   * @param distance The distance of the lost route
+   * @param now The current time in milliseconds
+   */
+  private void holdDown(Stripe stripe, long destination, int distance, long now) {
+    HoldDown holdDown = new HoldDown(distance, now + holdDownMillis);
+    stripe.holdDowns.put(destination, holdDown);
+    logger.debug("Holding down route to {}", Ipv4.formatPrefix(destination));
+    timers.schedule(holdDownMillis, () -> releaseHoldDown(destination, holdDown));
+  }
+
+  /**
+   * End a hold-down and install the best route left for the destination.
+   *
+   * @param destination The destination prefix
+   * @param holdDown The hold-down that ends
+   */
+  private void releaseHoldDown(long destination, HoldDown holdDown) {
+    Stripe stripe = stripeFor(destination);
+    boolean fibChanged;
+    synchronized (stripe) {
+      if (!stripe.holdDowns.remove(destination, holdDown)) {
+        return;
+      }
+      fibChanged = selectRoute(stripe, destination, clock.millis());
+    }
+
+    if (fibChanged) {
+      publishFib();
+    }
+  }
+
+  /**
+   * Expire a route a neighbor has stopped advertising, or wait until it could next expire if it was
+   * heard again in the meantime.
+   *
+   * @param timer The route's timer
+   */
+  private void expireRoute(RouteTimer timer) {
+    Stripe stripe = stripeFor(timer.destination);
+    boolean fibChanged;
+    synchronized (stripe) {
+      RouteTable routes = stripe.rib.routesFrom(timer.neighbor);
+      if (routes != timer.routes) {
+        // The neighbor was removed since the timer was scheduled
+        return;
+      }
+
+      int slot = routes.find(timer.destination);
+      if (slot < 0) {
+        return;
+      }
+      long now = clock.millis();
+      long remaining = routes.getLastUpdated(slot) + routeTimeoutFor(timer.neighbor) - now;
+      if (remaining > 0) {
+        timers.schedule(remaining, timer);
+        return;
+      }
+
+      stripe.rib.removeRoute(timer.neighbor, timer.destination);
+      logger.debug(
+          "Route to {} from {} timed out",
+          Ipv4.formatPrefix(timer.destination),
+          Ipv4.format(timer.neighbor));
+      fibChanged = selectRoute(stripe, timer.destination, now);
+    }
+
+    if (fibChanged) {
+      publishFib();
+    }
+  }
+
+  /**
+   * Set how long routes heard from a neighbor are kept without being advertised again, for
+   * neighbors that update at a different period than the rest.
+   *
+   * @param neighborIp The neighbor IP address
+   * @param routeTimeoutMillis The route timeout in milliseconds
+   */
+  public void setRouteTimeout(String neighborIp, long routeTimeoutMillis) {
+    routeTimeouts.put(Ipv4.parse(neighborIp), routeTimeoutMillis);
+  }
+
+  private long routeTimeoutFor(int neighbor) {
+    return routeTimeouts.getOrDefault(neighbor, routeTimeoutMillis);
+  }
+
+  /**
+   * Delete a lost route once its garbage-collection interval has passed, unless a new route to the
+   * destination was found or it was lost again since.
+   *
+   * @param destination The destination prefix
+   */
+  private void collectGarbage(long destination) {
+    Stripe stripe = stripeFor(destination);
+    synchronized (stripe) {
+      RouteTable routingTable = stripe.routingTable;
+      int slot = routingTable.find(destination);
+      if (slot >= 0
+          && routingTable.getDistance(slot) == UNREACHABLE
+          && clock.millis() - routingTable.getLastUpdated(slot) >= garbageCollectionMillis) {
+        routingTable.removeAt(slot);
+        stripe.advertisements.routeRemoved(destination);
+        logger.debug("Deleted route to {}", Ipv4.formatPrefix(destination));
       }
     }
   }
 
+  /** Timeout of a route heard from a neighbor. */
+  private final class RouteTimer implements Runnable {
+    private final int neighbor;
+    private final long destination;
+    private final RouteTable routes;
+
+    private RouteTimer(int neighbor, long destination, RouteTable routes) {
+      this.neighbor = neighbor;
+      this.destination = destination;
+      this.routes = routes;
+    }
+
+    @Override
+    public void run() {
+      expireRoute(this);
+    }
+  }
+
+  /**
+   * Record every neighbor offering the selected distance to a destination as an equal-cost next
+   * hop. Must hold the stripe's lock.
+   *
+   * @param stripe The stripe owning the destination
+   * @param destination The destination prefix
+   * @param distance The selected distance
+   * @return true if the set of next hops changed
+   */
+  private static boolean selectEqualCostNextHops(Stripe stripe, long destination, int distance) {
+    int[] nextHops = stripe.rib.neighborsAt(destination, distance);
+    if (nextHops.length > 1) {
+      return !Arrays.equals(stripe.equalCostNextHops.put(destination, nextHops), nextHops);
+    }
+    return stripe.equalCostNextHops.remove(destination) != null;
+  }
+
   /**
    * Get the distances to all known destinations for a specific neighbor, applying split-horizon
    * rule.
    *
    * @param neighborIp The neighbor IP address
-   * @return A map of destination IPs to distances
+   * @return A map of destination prefixes to distances, host routes keyed by plain address
+   */
+  public Map<String, Integer> getDistancesForNeighbor(String neighborIp) {
+    return getAdvertisement(neighborIp, 0).getDistances();
+  }
+
+  /**
+   * Get the routes changed since a version for a specific neighbor, applying split-horizon rule.
+   *
+   * @param neighborIp The neighbor IP address
+   * @param sinceVersion The version the neighbor is known to be current with, 0 for a full table
+   * @return The changed routes and the version they bring the neighbor up to
    */
-  public synchronized Map<String, Integer> getDistancesForNeighbor(String neighborIp) {
+  public Advertisement getAdvertisement(String neighborIp, long sinceVersion) {
+    int neighbor = Ipv4.parse(neighborIp);
+    // Any change stamped up to this version is complete once its stripe's lock is taken below
+    long current = version.get();
+
+    if (sinceVersion == 0) {
+      return fullAdvertisement(neighbor, current);
+    }
+
     Map<String, Integer> distances = new HashMap<>();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        distances.putAll(
+            stripe
+                .advertisements
+                .changesSince(neighbor, sinceVersion, stripe.routingTable, current)
+                .getDistances());
+      }
+    }
+    return new Advertisement(distances, current);
+  }
 
-    for (RoutingEntry entry : routingTable.values()) {
-      if (entry.getLearnedFrom().equals(neighborIp)) {
-        continue;
+  /**
+   * Get the full advertisement for a neighbor. Unchanged routes yield the same instance, letting
+   * callers reuse its encoding.
+   *
+   * @param neighbor The neighbor address
+   * @param current The current table version
+   * @return The advertisement
+   */
+  private Advertisement fullAdvertisement(int neighbor, long current) {
+    Advertisement[] parts = new Advertisement[STRIPES];
+    int size = 0;
+    for (int s = 0; s < STRIPES; s++) {
+      Stripe stripe = stripes[s];
+      synchronized (stripe) {
+        parts[s] = stripe.advertisements.full(neighbor, stripe.routingTable, current);
+      }
+      size += parts[s].getDistances().size();
+    }
+
+    FullAdvertisement cached = fullAdvertisements.get(neighbor);
+    if (cached != null && sameInstances(cached.parts(), parts)) {
+      return cached.advertisement();
+    }
+
+    Map<String, Integer> distances = new HashMap<>(size * 4 / 3 + 1);
+    for (Advertisement part : parts) {
+      distances.putAll(part.getDistances());
+    }
+    Advertisement advertisement =
+        new Advertisement(Collections.unmodifiableMap(distances), current);
+    fullAdvertisements.put(neighbor, new FullAdvertisement(parts, advertisement));
+    return advertisement;
+  }
+
+  private static boolean sameInstances(Object[] a, Object[] b) {
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] != b[i]) {
+        return false;
       }
+    }
+    return true;
+  }
 
-      String destination = entry.getDestination();
+  /**
+   * Removes routes learned from a specific neighbor, failing over to the best alternate route known
+   * for each destination.
+   *
+   * @param neighborIp The neighbor IP address
+   * @return true if any advertised route changed
+   */
+  public boolean removeRoutesVia(String neighborIp) {
+    int neighbor = Ipv4.parse(neighborIp);
+    linkWeights.remove(neighbor);
 
-      distances.put(destination, entry.getDistance());
+    long now = clock.millis();
+    boolean changed = false;
+    boolean fibChanged = false;
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        long previousChanges = stripe.changes;
+        RouteTable routes = stripe.rib.removeNeighbor(neighbor);
+        if (routes != null) {
+          fibChanged |= selectRoutesFrom(stripe, routes, now);
+        }
+        changed |= stripe.changes != previousChanges;
+      }
     }
 
-    return distances;
+    if (fibChanged) {
+      publishFib();
+    }
+    return changed;
   }
 
   /**
-   * Removes routes learned from a specific neighbor.
+   * Forget the cached advertisement of a neighbor that is no longer configured.
    *
    * @param neighborIp The neighbor IP address
    */
-  public synchronized void removeRoutesVia(String neighborIp) {
-    routingTable.entrySet().removeIf(entry -> entry.getValue().getNextHop().equals(neighborIp));
+  public void forgetNeighbor(String neighborIp) {
+    int neighbor = Ipv4.parse(neighborIp);
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        stripe.advertisements.forget(neighbor);
+      }
+    }
+    fullAdvertisements.remove(neighbor);
+    routeTimeouts.remove(neighbor);
+  }
+
+  /**
+   * Originate a prefix for a network attached to this router. Traffic matching it is delivered
+   * locally.
+   *
+   * @param prefix The prefix in CIDR notation
+   * @param distance The distance advertised for the prefix
+   * @return true if the prefix was added or its distance changed
+   */
+  public boolean addLocalPrefix(String prefix, int distance) {
+    long key = Ipv4.parsePrefix(prefix);
+    Stripe stripe = stripeFor(key);
+    synchronized (stripe) {
+      RouteTable routingTable = stripe.routingTable;
+      int slot = routingTable.find(key);
+      if (slot >= 0
+          && routingTable.getLearnedFrom(slot) == localAddress
+          && routingTable.getDistance(slot) == distance) {
+        return false;
+      }
+
+      int previousDistance = slot >= 0 ? routingTable.getDistance(slot) : 0;
+      int previousNextHop = slot >= 0 ? routingTable.getNextHop(slot) : NO_ROUTE;
+      slot = routingTable.put(key, distance, localAddress, localAddress, clock.millis());
+      stripe.equalCostNextHops.remove(key);
+      stamp(stripe, slot);
+      updateFib(stripe, key);
+      RouteChangeEvent.emit(
+          localAddress,
+          previousNextHop == NO_ROUTE ? RouteChangeEvent.ADD : RouteChangeEvent.UPDATE,
+          key,
+          distance,
+          localAddress,
+          previousDistance,
+          previousNextHop);
+    }
+    publishFib();
+    logger.info("Originating prefix {} with distance {}", Ipv4.formatPrefix(key), distance);
+    return true;
+  }
+
+  /**
+   * Stop originating a prefix.
+   *
+   * @param prefix The prefix in CIDR notation
+   * @return true if the prefix was removed
+   */
+  public boolean removeLocalPrefix(String prefix) {
+    long key = Ipv4.parsePrefix(prefix);
+    Stripe stripe = stripeFor(key);
+    synchronized (stripe) {
+      RouteTable routingTable = stripe.routingTable;
+      int slot = routingTable.find(key);
+      if (slot < 0
+          || routingTable.getLearnedFrom(slot) != localAddress
+          || routingTable.getDistance(slot) == UNREACHABLE
+          || key == hostPrefix(localAddress)) {
+        return false;
+      }
+
+      RouteChangeEvent.emit(
+          localAddress,
+          RouteChangeEvent.REMOVE,
+          key,
+          UNREACHABLE,
+          NO_ROUTE,
+          routingTable.getDistance(slot),
+          localAddress);
+      long now = clock.millis();
+      routingTable.setDistance(slot, UNREACHABLE);
+      routingTable.setLastUpdated(slot, now);
+      // Fall back to a route learned from a neighbor, if any, else withdraw it like a lost route
+      if (!installBestRoute(stripe, key, now)) {
+        stripe.equalCostNextHops.remove(key);
+        if (garbageCollectionMillis > 0) {
+          timers.schedule(garbageCollectionMillis, () -> collectGarbage(key));
+          if (poisonMode.poisonsRoutes()) {
+            stamp(stripe, slot);
+          } else {
+            stripe.advertisements.routeRemoved(key);
+          }
+        } else {
+          routingTable.removeAt(slot);
+          stripe.advertisements.routeRemoved(key);
+        }
+      }
+      updateFib(stripe, key);
+    }
+    publishFib();
+    logger.info("Stopped originating prefix {}", Ipv4.formatPrefix(key));
+    return true;
   }
 
   /**
@@ -114,7 +806,7 @@ public class DistanceVector {
    *
    * @param staleNeighbors List of neighbors considered stale
    */
-  public synchronized void removeRoutesForStaleNeighbors(List<String> staleNeighbors) {
+  public void removeRoutesForStaleNeighbors(List<String> staleNeighbors) {
     for (String neighborIp : staleNeighbors) {
       removeRoutesVia(neighborIp);
     }
@@ -126,22 +818,177 @@ public class DistanceVector {
    * @param destination The destination IP address
    * @return true if a route exists, false otherwise
    */
-  public synchronized boolean hasRoute(String destination) {
-    return destination.equals(localAddress) || routingTable.containsKey(destination);
+  public boolean hasRoute(String destination) {
+    return getNextHop(Ipv4.parse(destination)) != NO_ROUTE;
+  }
+
+  /**
+   * Checks if traffic to a destination is delivered locally, either because it is this router's
+   * address or because it matches a prefix this router originates.
+   *
+   * @param destination The destination IP address
+   * @return true if the destination is local
+   */
+  public boolean isLocal(String destination) {
+    return getNextHop(Ipv4.parse(destination)) == localAddress;
+  }
+
+  /**
+   * Get the next hop for a destination.
+   *
+   * @param destination The destination IP address
+   * @return The next hop IP address, this router's own address if the destination is local, or null
+   *     if no route, not even a default route, covers the destination
+   * @throws IllegalArgumentException If the destination is not a valid IPv4 address
+   */
+  public String getNextHop(String destination) {
+    int nextHop = getNextHop(Ipv4.parse(destination));
+    return nextHop != NO_ROUTE ? Ipv4.format(nextHop) : null;
   }
 
   /**
    * Get the next hop for a destination.
    *
+   * @param destination The destination address
+   * @return The next hop address or {@link #NO_ROUTE} if no route exists
+   */
+  public int getNextHop(int destination) {
+    return fib.lookup(destination);
+  }
+
+  /**
+   * Get the next hop for a flow. When the destination has several equal-cost next hops, the flow
+   * hash picks one, so every packet of a flow takes the same path.
+   *
    * @param destination The destination IP address
-   * @return The next hop IP address or null if no route exists
+   * @param flowHash A hash identifying the flow
+   * @return The next hop IP address, this router's own address if the destination is local, or null
+   *     if no route, not even a default route, covers the destination
+   * @throws IllegalArgumentException If the destination is not a valid IPv4 address
+   */
+  public String getNextHop(String destination, int flowHash) {
+    int nextHop = fib.lookup(Ipv4.parse(destination), flowHash);
+    return nextHop != NO_ROUTE ? Ipv4.format(nextHop) : null;
+  }
+
+  /**
+   * Get the next hop for a flow, without any address conversion.
+   *
+   * @param destination The destination address
+   * @param flowHash A hash identifying the flow
+   * @return The next hop address or {@link #NO_ROUTE} if no route exists
+   */
+  public int getNextHop(int destination, int flowHash) {
+    return fib.lookup(destination, flowHash);
+  }
+
+  /** Get the number of reachable routes. */
+  public int getRouteCount() {
+    return fib.size();
+  }
+
+  /** Get the version of the table, which grows whenever an advertised route changes. */
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Get a snapshot of the routing table. Each stripe is copied consistently, but the stripes are
+   * copied one after another.
+   *
+   * @return The current routes
+   */
+  public List<RoutingEntry> getRoutes() {
+    List<RoutingEntry> routes = new ArrayList<>();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        RouteTable routingTable = stripe.routingTable;
+        for (int slot = 0; slot < routingTable.capacity(); slot++) {
+          if (routingTable.isUsed(slot)) {
+            long prefix = routingTable.getPrefix(slot);
+            routes.add(
+                new RoutingEntry(
+                    Ipv4.prefixAddress(prefix),
+                    Ipv4.prefixLength(prefix),
+                    routingTable.getDistance(slot),
+                    routingTable.getNextHop(slot),
+                    routingTable.getLearnedFrom(slot),
+                    routingTable.getLastUpdated(slot)));
+          }
+        }
+      }
+    }
+    return routes;
+  }
+
+  /**
+   * Stamp a route with the next version and let the stripe's advertisement cache know it changed.
+   * Must hold the stripe's lock.
+   *
+   * @param stripe The stripe owning the route
+   * @param slot The slot of the changed route
+   */
+  private void stamp(Stripe stripe, int slot) {
+    RouteTable routingTable = stripe.routingTable;
+    long routeVersion = version.incrementAndGet();
+    routingTable.setVersion(slot, routeVersion);
+    stripe.changes++;
+    stripe.advertisements.routeChanged(
+        routingTable.getPrefix(slot),
+        routingTable.getDistance(slot),
+        routingTable.getLearnedFrom(slot),
+        routeVersion,
+        routingTable.size());
+  }
+
+  /**
+   * Bring the FIB builder's route to a destination in line with the routing table. Must hold the
+   * stripe's lock.
+   *
+   * @param stripe The stripe owning the destination
+   * @param destination The destination prefix
    */
-  public synchronized String getNextHop(String destination) {
-    if (destination.equals(localAddress)) {
-      return localAddress;
+  private void updateFib(Stripe stripe, long destination) {
+    RouteTable routingTable = stripe.routingTable;
+    int slot = routingTable.find(destination);
+    synchronized (fibLock) {
+      if (slot >= 0 && routingTable.getDistance(slot) < UNREACHABLE) {
+        int[] group = stripe.equalCostNextHops.get(destination);
+        if (group != null) {
+          fibBuilder.put(destination, group);
+        } else {
+          fibBuilder.put(destination, routingTable.getNextHop(slot));
+        }
+      } else {
+        fibBuilder.remove(destination);
+      }
+      fibDirty = true;
     }
+  }
+
+  /**
+   * Publish the changes made to the FIB builder, so lookups see them once this returns. Taking the
+   * snapshot costs the same however many routes changed, so an update publishes once at the end.
+   */
+  private void publishFib() {
+    synchronized (fibLock) {
+      if (fibDirty) {
+        fib = fibBuilder.build();
+        fibDirty = false;
+      }
+    }
+  }
+
+  private Stripe stripeFor(long prefix) {
+    return stripes[stripeIndex(prefix)];
+  }
+
+  private static int stripeIndex(long prefix) {
+    // Fibonacci hashing, so that neighboring prefixes land in different stripes
+    return (int) ((prefix * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - STRIPE_BITS));
+  }
 
-    RoutingEntry entry = routingTable.get(destination);
-    return entry != null ? entry.getNextHop() : null;
+  private static long hostPrefix(int address) {
+    return Ipv4.prefix(address, Ipv4.MAX_PREFIX_LENGTH);
   }
 }
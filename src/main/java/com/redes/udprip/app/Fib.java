@@ -0,0 +1,431 @@
+package com.redes.udprip.app;
+
+import com.redes.udprip.model.Ipv4;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable forwarding information base answering longest-prefix-match queries. {@link
+ * DistanceVector} keeps a {@link Builder} up to date as routes change and publishes a snapshot of
+ * it atomically, so lookups never take a lock and never observe a half-applied update.
+ *
+ * <p>The table is a poptrie-style compressed multibit trie with a stride of 6 bits. Each node holds
+ * two 64-bit vectors: one marking which of its 64 entries lead to a child node, and one marking
+ * where a new run of identical leaves starts. Children and leaves of a node are stored contiguously
+ * and found by counting set bits, so a lookup visits at most six nodes and touches only a few small
+ * arrays.
+ *
+ * <p>A prefix lives in the node at the level where it ends, expanded over the entries it covers
+ * there, and a lookup keeps the last leaf it passed on the way down. Leaves are not pushed into
+ * child nodes, so a route change only rewrites the nodes on the path to its prefix: the trie is
+ * persistent, and each change copies at most six nodes while snapshots share the rest.
+ *
+ * <p>Leaves refer to groups of equal-cost next hops. Most groups hold a single next hop; for the
+ * others a flow hash picks one, so all packets of a flow take the same path.
+ */
+public final class Fib {
+  private static final int STRIDE = 6;
+  private static final int FANOUT = 1 << STRIDE;
+  private static final Node[] NO_CHILDREN = new Node[0];
+  private static final Node EMPTY = new Node(0, NO_CHILDREN, 1L, new int[] {0});
+
+  private final Node root;
+  private final int defaultLeaf;
+  private final int[][] groups;
+  private final int size;
+
+  private Fib(Node root, int defaultLeaf, int[][] groups, int size) {
+    this.root = root;
+    this.defaultLeaf = defaultLeaf;
+    this.groups = groups;
+    this.size = size;
+  }
+
+  /** A trie node. Never modified once it can be reached from a published FIB. */
+  private static final class Node {
+    private final long childVector;
+    private final Node[] children;
+    private final long leafVector;
+    private final int[] leaves;
+
+    private Node(long childVector, Node[] children, long leafVector, int[] leaves) {
+      this.childVector = childVector;
+      this.children = children;
+      this.leafVector = leafVector;
+      this.leaves = leaves;
+    }
+
+    private int leafAt(int index) {
+      return leaves[Long.bitCount(leafVector & ((2L << index) - 1)) - 1];
+    }
+
+    private Node childAt(int index) {
+      long bit = 1L << index;
+      return (childVector & bit) != 0 ? children[Long.bitCount(childVector & (bit - 1))] : null;
+    }
+
+    private boolean isEmpty() {
+      return childVector == 0 && leaves.length == 1 && leaves[0] == 0;
+    }
+  }
+
+  private static int chunk(int address, int level) {
+    int offset = level * STRIDE;
+    return (address << offset) >>> (Integer.SIZE - STRIDE);
+  }
+
+  /**
+   * Look up the next hop for a destination, using the longest matching prefix. When there are
+   * several equal-cost next hops, the first one is returned.
+   *
+   * @param destination The destination address
+   * @return The next hop address or {@link DistanceVector#NO_ROUTE} if no route exists
+   */
+  public int lookup(int destination) {
+    int leaf = findLeaf(destination);
+    return leaf == 0 ? DistanceVector.NO_ROUTE : groups[leaf - 1][0];
+  }
+
+  /**
+   * Look up the next hop for a flow, using the longest matching prefix of its destination. When
+   * there are several equal-cost next hops, the flow hash selects one.
+   *
+   * @param destination The destination address
+   * @param flowHash A hash identifying the flow
+   * @return The next hop address or {@link DistanceVector#NO_ROUTE} if no route exists
+   */
+  public int lookup(int destination, int flowHash) {
+    int leaf = findLeaf(destination);
+    if (leaf == 0) {
+      return DistanceVector.NO_ROUTE;
+    }
+    int[] group = groups[leaf - 1];
+    return group[group.length == 1 ? 0 : Math.floorMod(flowHash, group.length)];
+  }
+
+  private int findLeaf(int destination) {
+    int best = defaultLeaf;
+    Node node = root;
+    for (int level = 0; ; level++) {
+      int index = chunk(destination, level);
+      int leaf = node.leafAt(index);
+      if (leaf != 0) {
+        best = leaf;
+      }
+      long bit = 1L << index;
+      if ((node.childVector & bit) == 0) {
+        return best;
+      }
+      node = node.children[Long.bitCount(node.childVector & (bit - 1))];
+    }
+  }
+
+  /** Get the number of prefixes in the FIB. */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * The changing set of routes a FIB is taken from. Each change rewrites the path to its prefix and
+   * {@link #build()} only wraps the current root, so publishing costs nothing however large the
+   * table is. Not thread-safe.
+   */
+  static final class Builder {
+    private Node root = EMPTY;
+    private final PrefixLeaves prefixes = new PrefixLeaves();
+    private final Map<Group, Integer> groupIndexes = new HashMap<>();
+    private int[][] groups = new int[4][];
+    private int[] groupReferences = new int[4];
+    private int[] freeGroups = new int[4];
+    private int freeGroupCount;
+    private int groupCount;
+    // Set once a FIB shares the groups array, which must then be copied before it is changed
+    private boolean groupsShared;
+
+    /**
+     * Route a prefix to one next hop.
+     *
+     * @param prefix The destination prefix
+     * @param nextHop The next hop address
+     */
+    void put(long prefix, int nextHop) {
+      put(prefix, new int[] {nextHop});
+    }
+
+    /**
+     * Route a prefix over a group of equal-cost next hops.
+     *
+     * @param prefix The destination prefix
+     * @param nextHops The next hop addresses; must not be modified afterwards
+     */
+    void put(long prefix, int[] nextHops) {
+      int leaf = acquireGroup(nextHops);
+      int previous = prefixes.put(prefix, leaf);
+      if (previous != 0) {
+        releaseGroup(previous);
+      }
+      if (previous != leaf) {
+        rewrite(prefix);
+      }
+    }
+
+    /**
+     * Remove the route to a prefix, if there is one.
+     *
+     * @param prefix The destination prefix
+     */
+    void remove(long prefix) {
+      int previous = prefixes.remove(prefix);
+      if (previous != 0) {
+        releaseGroup(previous);
+        rewrite(prefix);
+      }
+    }
+
+    /**
+     * Take a snapshot of the current routes.
+     *
+     * @return The FIB
+     */
+    Fib build() {
+      groupsShared = true;
+      return new Fib(root, prefixes.get(0L), groups, prefixes.size());
+    }
+
+    private int acquireGroup(int[] nextHops) {
+      Group group = new Group(nextHops);
+      Integer index = groupIndexes.get(group);
+      if (index == null) {
+        index = freeGroupCount > 0 ? freeGroups[--freeGroupCount] : groupCount++;
+        if (groupsShared || index >= groups.length) {
+          groups = Arrays.copyOf(groups, Math.max(groups.length, (index + 1) * 2));
+          groupReferences = Arrays.copyOf(groupReferences, groups.length);
+          groupsShared = false;
+        }
+        groups[index] = nextHops;
+        groupIndexes.put(group, index);
+      }
+      groupReferences[index]++;
+      return index + 1;
+    }
+
+    private void releaseGroup(int leaf) {
+      int index = leaf - 1;
+      if (--groupReferences[index] == 0) {
+        groupIndexes.remove(new Group(groups[index]));
+        if (freeGroupCount == freeGroups.length) {
+          freeGroups = Arrays.copyOf(freeGroups, freeGroups.length * 2);
+        }
+        freeGroups[freeGroupCount++] = index;
+      }
+    }
+
+    /** Rewrite the entries covered by a prefix after its route changed. */
+    private void rewrite(long prefix) {
+      int length = Ipv4.prefixLength(prefix);
+      if (length > 0) {
+        Node updated = rewrite(root, 0, (length - 1) / STRIDE, prefix);
+        root = updated != null ? updated : EMPTY;
+      }
+    }
+
+    /**
+     * Copy a node with the entries covered by a prefix rewritten, along with the path down to the
+     * node at the prefix's level.
+     *
+     * @param node The node, or null if there is none yet
+     * @param level The node's level
+     * @param prefixLevel The level at which the prefix ends
+     * @param prefix The prefix
+     * @return The new node, or null if it is left empty
+     */
+    private Node rewrite(Node node, int level, int prefixLevel, long prefix) {
+      if (node == null) {
+        node = EMPTY;
+      }
+      int address = Ipv4.prefixAddress(prefix);
+      int index = chunk(address, level);
+      Node updated;
+      if (level < prefixLevel) {
+        updated =
+            withChild(node, index, rewrite(node.childAt(index), level + 1, prefixLevel, prefix));
+      } else {
+        int span = 1 << ((level + 1) * STRIDE - Ipv4.prefixLength(prefix));
+        updated = withLeaves(node, level, address, index & ~(span - 1), span);
+      }
+      return updated.isEmpty() ? null : updated;
+    }
+
+    private Node withChild(Node node, int index, Node child) {
+      long bit = 1L << index;
+      int position = Long.bitCount(node.childVector & (bit - 1));
+      boolean present = (node.childVector & bit) != 0;
+      if (child == null && !present) {
+        return node;
+      }
+
+      Node[] children;
+      long childVector;
+      if (child == null) {
+        childVector = node.childVector & ~bit;
+        children = new Node[node.children.length - 1];
+        System.arraycopy(node.children, 0, children, 0, position);
+        System.arraycopy(
+            node.children, position + 1, children, position, children.length - position);
+      } else if (present) {
+        childVector = node.childVector;
+        children = node.children.clone();
+        children[position] = child;
+      } else {
+        childVector = node.childVector | bit;
+        children = new Node[node.children.length + 1];
+        System.arraycopy(node.children, 0, children, 0, position);
+        children[position] = child;
+        System.arraycopy(
+            node.children, position, children, position + 1, node.children.length - position);
+      }
+      return new Node(childVector, children, node.leafVector, node.leaves);
+    }
+
+    /**
+     * Copy a node with a range of its entries set to the longest prefix ending in the node that
+     * covers each of them.
+     */
+    private Node withLeaves(Node node, int level, int address, int start, int span) {
+      int[] entries = new int[FANOUT];
+      for (int i = 0, run = -1; i < FANOUT; i++) {
+        if ((node.leafVector & (1L << i)) != 0) {
+          run++;
+        }
+        entries[i] = node.leaves[run];
+      }
+
+      int shortest = level * STRIDE + 1;
+      int longest = Math.min((level + 1) * STRIDE, Ipv4.MAX_PREFIX_LENGTH);
+      int base = address & Ipv4.mask(level * STRIDE);
+      for (int i = start; i < start + span; i++) {
+        int entryAddress = base | ((i << (Integer.SIZE - STRIDE)) >>> (level * STRIDE));
+        int leaf = 0;
+        for (int length = longest; length >= shortest && leaf == 0; length--) {
+          leaf = prefixes.get(Ipv4.prefix(entryAddress, length));
+        }
+        entries[i] = leaf;
+      }
+
+      long leafVector = 0;
+      int runs = 0;
+      int[] leaves = new int[FANOUT];
+      for (int i = 0; i < FANOUT; i++) {
+        if (i == 0 || entries[i] != entries[i - 1]) {
+          leafVector |= 1L << i;
+          leaves[runs++] = entries[i];
+        }
+      }
+      return new Node(node.childVector, node.children, leafVector, Arrays.copyOf(leaves, runs));
+    }
+  }
+
+  /** A group of equal-cost next hops, compared by its members. */
+  private record Group(int[] nextHops) {
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Group group && Arrays.equals(nextHops, group.nextHops);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(nextHops);
+    }
+  }
+
+  /**
+   * Open-addressing map from packed prefixes to leaves, with linear probing and backward-shift
+   * deletion like {@link RouteTable}. A leaf of 0 marks a free slot.
+   */
+  private static final class PrefixLeaves {
+    private long[] keys = new long[16];
+    private int[] leaves = new int[16];
+    private int size;
+
+    int get(long prefix) {
+      int mask = keys.length - 1;
+      for (int slot = hash(prefix) & mask; leaves[slot] != 0; slot = (slot + 1) & mask) {
+        if (keys[slot] == prefix) {
+          return leaves[slot];
+        }
+      }
+      return 0;
+    }
+
+    /** Set the leaf of a prefix and return the previous one, or 0 if it had none. */
+    int put(long prefix, int leaf) {
+      if ((size + 1) * 2 > keys.length) {
+        resize(keys.length * 2);
+      }
+      int mask = keys.length - 1;
+      int slot = hash(prefix) & mask;
+      while (leaves[slot] != 0) {
+        if (keys[slot] == prefix) {
+          int previous = leaves[slot];
+          leaves[slot] = leaf;
+          return previous;
+        }
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = prefix;
+      leaves[slot] = leaf;
+      size++;
+      return 0;
+    }
+
+    /** Remove a prefix and return its leaf, or 0 if it had none. */
+    int remove(long prefix) {
+      int mask = keys.length - 1;
+      int slot = hash(prefix) & mask;
+      while (leaves[slot] != 0 && keys[slot] != prefix) {
+        slot = (slot + 1) & mask;
+      }
+      int previous = leaves[slot];
+      if (previous == 0) {
+        return 0;
+      }
+
+      // Shift later entries of the probe sequence back, so no tombstone is needed
+      int hole = slot;
+      for (int next = (hole + 1) & mask; leaves[next] != 0; next = (next + 1) & mask) {
+        int home = hash(keys[next]) & mask;
+        if (((next - home) & mask) >= ((next - hole) & mask)) {
+          keys[hole] = keys[next];
+          leaves[hole] = leaves[next];
+          hole = next;
+        }
+      }
+      leaves[hole] = 0;
+      size--;
+      return previous;
+    }
+
+    int size() {
+      return size;
+    }
+
+    private void resize(int capacity) {
+      long[] oldKeys = keys;
+      int[] oldLeaves = leaves;
+      keys = new long[capacity];
+      leaves = new int[capacity];
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldLeaves[i] != 0) {
+          put(oldKeys[i], oldLeaves[i]);
+        }
+      }
+    }
+
+    private static int hash(long prefix) {
+      long hash = prefix * 0x9E3779B97F4A7C15L;
+      return (int) (hash ^ (hash >>> 32));
+    }
+  }
+}
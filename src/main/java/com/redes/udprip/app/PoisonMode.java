@@ -0,0 +1,37 @@
+package com.redes.udprip.app;
+
+/** How lost routes and routes learned from a neighbor are advertised. */
+public enum PoisonMode {
+  /**
+   * Lost routes are silently dropped and routes are never advertised back where they came from.
+   * Split horizon alone does not prevent counting to infinity: in a loop of three or more routers
+   * the others keep learning a lost route from each other, and may never converge (see {@code
+   * count-to-infinity.sim}).
+   */
+  NONE,
+
+  /**
+   * Route poisoning: a lost route is advertised as {@link DistanceVector#UNREACHABLE} until it is
+   * garbage collected, so the loss spreads instead of being hidden by stale routes. Together with
+   * the hold-down in {@link DistanceVector}, this lets a lost route be withdrawn within a few
+   * update periods where it would count to infinity. A route that switches to being learned from a
+   * neighbor is withdrawn from that neighbor the same way.
+   */
+  ROUTES,
+
+  /**
+   * Route poisoning plus poison reverse: routes are also advertised as unreachable to the neighbor
+   * they were learned from, instead of being left out.
+   */
+  REVERSE;
+
+  /** Whether lost routes are advertised as unreachable. */
+  public boolean poisonsRoutes() {
+    return this != NONE;
+  }
+
+  /** Whether routes are advertised as unreachable to the neighbor they were learned from. */
+  public boolean poisonsReverse() {
+    return this == REVERSE;
+  }
+}
@@ -0,0 +1,190 @@
+package com.redes.udprip.app;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Routing information base holding the last distance each neighbor advertised for every
+ * destination, together with the weight of the link to it. {@link DistanceVector} selects its best
+ * routes from here, so when a neighbor is lost or a link weight changes an alternate path already
+ * heard from another neighbor can be installed at once instead of waiting for it to be advertised
+ * again.
+ *
+ * <p>Each neighbor's routes are kept in a {@link RouteTable} whose distance column holds the
+ * advertised distance, not including the link weight. This class is not thread-safe.
+ */
+public class Rib {
+  /** Returned by {@link #best} when no neighbor has a usable route. */
+  public static final long NO_CANDIDATE = -1;
+
+  private final Map<Integer, NeighborRoutes> neighbors = new HashMap<>();
+
+  /** The routes advertised by one neighbor. */
+  private static final class NeighborRoutes {
+    private final RouteTable routes = new RouteTable();
+    private int linkWeight;
+
+    private NeighborRoutes(int linkWeight) {
+      this.linkWeight = linkWeight;
+    }
+  }
+
+  /**
+   * Set the weight of the link to a neighbor, adding the neighbor if it is new.
+   *
+   * @param neighbor The neighbor address
+   * @param linkWeight The link weight
+   * @return true if the neighbor was added or its weight changed
+   */
+  public boolean setLinkWeight(int neighbor, int linkWeight) {
+    NeighborRoutes routes = neighbors.get(neighbor);
+    if (routes == null) {
+      neighbors.put(neighbor, new NeighborRoutes(linkWeight));
+      return true;
+    } else if (routes.linkWeight != linkWeight) {
+      routes.linkWeight = linkWeight;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Record the distance a neighbor advertised for a destination. The neighbor must have been added
+   * with {@link #setLinkWeight}.
+   *
+   * @param neighbor The neighbor address
+   * @param prefix The destination prefix
+   * @param distance The advertised distance
+   * @param now The current time in milliseconds
+   * @return true if the advertised distance is new or changed
+   */
+  public boolean setRoute(int neighbor, long prefix, int distance, long now) {
+    RouteTable routes = neighbors.get(neighbor).routes;
+    int slot = routes.find(prefix);
+    if (slot >= 0 && routes.getDistance(slot) == distance) {
+      routes.setLastUpdated(slot, now);
+      return false;
+    }
+    routes.put(prefix, distance, neighbor, neighbor, now);
+    return true;
+  }
+
+  /**
+   * Check whether a neighbor has advertised a destination.
+   *
+   * @param neighbor The neighbor address
+   * @param prefix The destination prefix
+   * @return true if the neighbor is known and has advertised the destination
+   */
+  public boolean hasRoute(int neighbor, long prefix) {
+    NeighborRoutes routes = neighbors.get(neighbor);
+    return routes != null && routes.routes.find(prefix) >= 0;
+  }
+
+  /**
+   * Forget the distance a neighbor advertised for a destination.
+   *
+   * @param neighbor The neighbor address
+   * @param prefix The destination prefix
+   */
+  public void removeRoute(int neighbor, long prefix) {
+    NeighborRoutes routes = neighbors.get(neighbor);
+    if (routes != null) {
+      int slot = routes.routes.find(prefix);
+      if (slot >= 0) {
+        routes.routes.removeAt(slot);
+      }
+    }
+  }
+
+  /**
+   * Forget a neighbor and everything it advertised.
+   *
+   * @param neighbor The neighbor address
+   * @return The routes the neighbor had advertised, or null if it was unknown
+   */
+  public RouteTable removeNeighbor(int neighbor) {
+    NeighborRoutes routes = neighbors.remove(neighbor);
+    return routes != null ? routes.routes : null;
+  }
+
+  /**
+   * Get the routes advertised by a neighbor.
+   *
+   * @param neighbor The neighbor address
+   * @return The routes, or null if the neighbor is unknown; must not be modified
+   */
+  public RouteTable routesFrom(int neighbor) {
+    NeighborRoutes routes = neighbors.get(neighbor);
+    return routes != null ? routes.routes : null;
+  }
+
+  /**
+   * Select the best route to a destination among all neighbors. Ties go to the preferred neighbor,
+   * so that an equally good route does not make the next hop flap.
+   *
+   * @param prefix The destination prefix
+   * @param maxDistance The largest usable distance
+   * @param preferredNeighbor The current next hop, or 0 if there is none
+   * @return The distance in the upper and the neighbor in the lower 32 bits, or {@link
+   *     #NO_CANDIDATE} if no neighbor has a usable route
+   */
+  public long best(long prefix, int maxDistance, int preferredNeighbor) {
+    long best = NO_CANDIDATE;
+    int bestDistance = Integer.MAX_VALUE;
+
+    for (Map.Entry<Integer, NeighborRoutes> entry : neighbors.entrySet()) {
+      NeighborRoutes routes = entry.getValue();
+      int slot = routes.routes.find(prefix);
+      if (slot < 0) {
+        continue;
+      }
+
+      int neighbor = entry.getKey();
+      long distance = (long) routes.linkWeight + routes.routes.getDistance(slot);
+      if (distance <= maxDistance
+          && (distance < bestDistance
+              || (distance == bestDistance && neighbor == preferredNeighbor))) {
+        bestDistance = (int) distance;
+        best = (distance << 32) | (neighbor & 0xFFFFFFFFL);
+      }
+    }
+
+    return best;
+  }
+
+  /**
+   * Find every neighbor offering a route to a destination at exactly the given distance.
+   *
+   * @param prefix The destination prefix
+   * @param distance The distance through the neighbor, including the link weight
+   * @return The neighbors in ascending order
+   */
+  public int[] neighborsAt(long prefix, int distance) {
+    int[] matches = new int[neighbors.size()];
+    int count = 0;
+
+    for (Map.Entry<Integer, NeighborRoutes> entry : neighbors.entrySet()) {
+      NeighborRoutes routes = entry.getValue();
+      int slot = routes.routes.find(prefix);
+      if (slot >= 0 && (long) routes.linkWeight + routes.routes.getDistance(slot) == distance) {
+        matches[count++] = entry.getKey();
+      }
+    }
+
+    matches = Arrays.copyOf(matches, count);
+    Arrays.sort(matches);
+    return matches;
+  }
+
+  /** Get the distance from a candidate returned by {@link #best}. */
+  public static int candidateDistance(long candidate) {
+    return (int) (candidate >>> 32);
+  }
+
+  /** Get the neighbor from a candidate returned by {@link #best}. */
+  public static int candidateNeighbor(long candidate) {
+    return (int) candidate;
+  }
+}
@@ -0,0 +1,219 @@
+package com.redes.udprip.app;
+
+import com.redes.udprip.model.Ipv4;
+
+/**
+ * Open-addressing routing table keyed by destination prefix, packed as described in {@link Ipv4}.
+ * Routes are stored column-wise in primitive arrays, so lookups and updates neither allocate nor
+ * hash strings. Collisions are resolved by linear probing and removals use backward-shift deletion,
+ * so no tombstones build up.
+ *
+ * <p>Routes are addressed by slot; a slot stays valid until the next insertion or removal. This
+ * class is not thread-safe.
+ */
+public class RouteTable {
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] prefixes;
+  private int[] distances;
+  private int[] nextHops;
+  private int[] learnedFrom;
+  private long[] lastUpdated;
+  private long[] versions;
+  private boolean[] used;
+  private int mask;
+  private int size;
+
+  public RouteTable() {
+    this(MIN_CAPACITY);
+  }
+
+  public RouteTable(int expectedRoutes) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < expectedRoutes * 2) {
+      capacity <<= 1;
+    }
+    allocate(capacity);
+  }
+
+  private void allocate(int capacity) {
+    prefixes = new long[capacity];
+    distances = new int[capacity];
+    nextHops = new int[capacity];
+    learnedFrom = new int[capacity];
+    lastUpdated = new long[capacity];
+    versions = new long[capacity];
+    used = new boolean[capacity];
+    mask = capacity - 1;
+  }
+
+  private static int hash(long key) {
+    // murmur3 finalizer, spreads sequential addresses across the table
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+
+  /**
+   * Find the slot of a destination prefix. This is an exact match; longest-prefix matching is done
+   * by {@link Fib}.
+   *
+   * @param prefix The destination prefix
+   * @return The slot, or -1 if there is no route to the prefix
+   */
+  public int find(long prefix) {
+    int slot = hash(prefix) & mask;
+    while (used[slot]) {
+      if (prefixes[slot] == prefix) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /**
+   * Insert a route, or overwrite the route already stored for its prefix.
+   *
+   * @return The slot holding the route
+   */
+  public int put(long prefix, int distance, int nextHop, int learnedFromAddress, long now) {
+    if ((size + 1) * 2 > prefixes.length) {
+      resize(prefixes.length * 2);
+    }
+
+    int slot = hash(prefix) & mask;
+    while (used[slot] && prefixes[slot] != prefix) {
+      slot = (slot + 1) & mask;
+    }
+    if (!used[slot]) {
+      used[slot] = true;
+      prefixes[slot] = prefix;
+      size++;
+    }
+    distances[slot] = distance;
+    nextHops[slot] = nextHop;
+    learnedFrom[slot] = learnedFromAddress;
+    lastUpdated[slot] = now;
+    return slot;
+  }
+
+  /**
+   * Remove the route stored in a slot. Routes further along the probe sequence may move into the
+   * freed slot, so a caller scanning the table must re-examine the same slot afterwards.
+   *
+   * @param slot The slot to clear
+   */
+  public void removeAt(int slot) {
+    int hole = slot;
+    int next = (hole + 1) & mask;
+    while (used[next]) {
+      int home = hash(prefixes[next]) & mask;
+      // Move the entry back if its home slot is not between the hole and its current position
+      if (((next - home) & mask) >= ((next - hole) & mask)) {
+        copySlot(next, hole);
+        hole = next;
+      }
+      next = (next + 1) & mask;
+    }
+    used[hole] = false;
+    size--;
+  }
+
+  private void copySlot(int from, int to) {
+    prefixes[to] = prefixes[from];
+    distances[to] = distances[from];
+    nextHops[to] = nextHops[from];
+    learnedFrom[to] = learnedFrom[from];
+    lastUpdated[to] = lastUpdated[from];
+    versions[to] = versions[from];
+    used[to] = true;
+  }
+
+  private void resize(int capacity) {
+    long[] oldPrefixes = prefixes;
+    int[] oldDistances = distances;
+    int[] oldNextHops = nextHops;
+    int[] oldLearnedFrom = learnedFrom;
+    long[] oldLastUpdated = lastUpdated;
+    long[] oldVersions = versions;
+    boolean[] oldUsed = used;
+
+    allocate(capacity);
+    size = 0;
+    for (int i = 0; i < oldUsed.length; i++) {
+      if (oldUsed[i]) {
+        int slot =
+            put(
+                oldPrefixes[i],
+                oldDistances[i],
+                oldNextHops[i],
+                oldLearnedFrom[i],
+                oldLastUpdated[i]);
+        versions[slot] = oldVersions[i];
+      }
+    }
+  }
+
+  /** Get the number of routes. */
+  public int size() {
+    return size;
+  }
+
+  /** Get the number of slots; valid slots are 0 to capacity - 1. */
+  public int capacity() {
+    return used.length;
+  }
+
+  public boolean isUsed(int slot) {
+    return used[slot];
+  }
+
+  public long getPrefix(int slot) {
+    return prefixes[slot];
+  }
+
+  public int getDistance(int slot) {
+    return distances[slot];
+  }
+
+  public void setDistance(int slot, int distance) {
+    distances[slot] = distance;
+  }
+
+  public int getNextHop(int slot) {
+    return nextHops[slot];
+  }
+
+  public void setNextHop(int slot, int nextHop) {
+    nextHops[slot] = nextHop;
+  }
+
+  public int getLearnedFrom(int slot) {
+    return learnedFrom[slot];
+  }
+
+  public void setLearnedFrom(int slot, int learnedFromAddress) {
+    learnedFrom[slot] = learnedFromAddress;
+  }
+
+  public long getLastUpdated(int slot) {
+    return lastUpdated[slot];
+  }
+
+  public void setLastUpdated(int slot, long timestamp) {
+    lastUpdated[slot] = timestamp;
+  }
+
+  /** Get the change sequence number of the route, see {@link DistanceVector}. */
+  public long getVersion(int slot) {
+    return versions[slot];
+  }
+
+  public void setVersion(int slot, long version) {
+    versions[slot] = version;
+  }
+}
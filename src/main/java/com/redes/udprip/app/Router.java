@@ -1,88 +1,434 @@
 package com.redes.udprip.app;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.redes.udprip.infra.UdpClient;
+import com.redes.udprip.codec.BinaryMessageCodec;
+import com.redes.udprip.codec.JsonMessageCodec;
+import com.redes.udprip.codec.MessageCodec;
+import com.redes.udprip.codec.MessageHeader;
+import com.redes.udprip.infra.OutboundQueues;
+import com.redes.udprip.infra.Transport;
+import com.redes.udprip.metrics.DropReason;
+import com.redes.udprip.metrics.ForwardEvent;
+import com.redes.udprip.metrics.RouterMetrics;
+import com.redes.udprip.metrics.UpdateReceivedEvent;
+import com.redes.udprip.metrics.UpdateSentEvent;
 import com.redes.udprip.model.DataMessage;
+import com.redes.udprip.model.HelloMessage;
+import com.redes.udprip.model.HopLimitedMessage;
+import com.redes.udprip.model.Ipv4;
 import com.redes.udprip.model.Message;
+import com.redes.udprip.model.RoutingEntry;
 import com.redes.udprip.model.TraceMessage;
 import com.redes.udprip.model.UpdateMessage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /** Central component that handles all the routing logic. */
 public class Router {
   private static final Logger logger = LoggerFactory.getLogger(Router.class);
-  private static final ObjectMapper objectMapper = new ObjectMapper();
+  private static final JsonMessageCodec jsonCodec = new JsonMessageCodec();
+  private static final BinaryMessageCodec binaryCodec = new BinaryMessageCodec();
+
+  /** Number of full-table refreshes a route may miss before it times out. */
+  private static final int ROUTE_TIMEOUT_REFRESHES = 3;
+
+  /** Number of update periods a lost route is kept as unreachable before it is deleted. */
+  private static final int GARBAGE_COLLECTION_PERIODS = 4;
+
+  /**
+   * Number of update periods a destination whose route got worse accepts no longer route. Only used
+   * with route poisoning: without it the loss is not advertised, and holding down only delays
+   * failover.
+   */
+  private static final int HOLD_DOWN_PERIODS = 2;
+
+  /** Interval at which the route change rate is sampled. */
+  private static final long METRICS_SAMPLE_MILLIS = 1000;
 
   private final String localAddress;
+  private final int ownAddress;
   private final DistanceVector distanceVector;
   private final TopologyManager topologyManager;
-  private final UdpClient udpClient;
+  private final OutboundQueues outboundQueues;
+  private final RouterMetrics metrics;
+  private final RouterOptions options;
+  private final int updatePeriod;
+  private final Clock clock;
+  private final TimerWheel timers;
+  private final Random random;
+  private final Map<String, Long> advertisedVersions = new ConcurrentHashMap<>();
+  private final Map<String, EncodedAdvertisement> encodedAdvertisements = new ConcurrentHashMap<>();
+  private final Map<String, NeighborUpdates> neighborUpdates = new ConcurrentHashMap<>();
+  private final AtomicBoolean triggeredUpdatePending = new AtomicBoolean();
+  private volatile long lastTriggeredUpdate;
+  private volatile boolean started;
+
+  public Router(String localAddress, int updatePeriod, Transport transport) {
+    this(localAddress, updatePeriod, transport, new RouterOptions());
+  }
 
-  public Router(String localAddress, int updatePeriod, UdpClient udpClient) {
+  public Router(String localAddress, int updatePeriod, Transport transport, RouterOptions options) {
+    this(
+        localAddress,
+        updatePeriod,
+        transport,
+        options,
+        Clock.SYSTEM,
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "udp-sender");
+              thread.setDaemon(true);
+              return thread;
+            }),
+        new Random());
+  }
+
+  /**
+   * Create a router whose time, send tasks and randomness are supplied by the caller, such as a
+   * simulation running many routers on a virtual clock.
+   *
+   * @param localAddress The address of this router
+   * @param updatePeriod The default update period in seconds
+   * @param transport Sends datagrams to neighbors
+   * @param options The router's settings
+   * @param clock The clock timers and route timestamps are taken from
+   * @param sendExecutor Runs the tasks that send queued datagrams
+   * @param random The source of the update jitter
+   */
+  public Router(
+      String localAddress,
+      int updatePeriod,
+      Transport transport,
+      RouterOptions options,
+      Clock clock,
+      Executor sendExecutor,
+      Random random) {
     this.localAddress = localAddress;
-    this.udpClient = udpClient;
+    this.ownAddress = Ipv4.parse(localAddress);
+    this.clock = clock;
+    this.timers = new TimerWheel(clock);
+    this.random = random;
+    this.options = options;
+    this.updatePeriod = updatePeriod;
 
-    this.distanceVector = new DistanceVector(localAddress);
-    this.topologyManager = new TopologyManager(updatePeriod);
+    this.distanceVector =
+        new DistanceVector(
+            localAddress,
+            clock,
+            timers,
+            routeTimeoutMillis(updatePeriod),
+            GARBAGE_COLLECTION_PERIODS * updatePeriod * 1000L,
+            options.getPoisonMode().poisonsRoutes() ? HOLD_DOWN_PERIODS * updatePeriod * 1000L : 0,
+            options.getPoisonMode());
+    this.metrics = new RouterMetrics(distanceVector::getRouteCount, distanceVector::getVersion);
+    this.outboundQueues =
+        new OutboundQueues(
+            transport, this::buildUpdate, options.getQueueCapacity(), sendExecutor, metrics);
+    this.topologyManager =
+        new TopologyManager(localAddress, updatePeriod, clock, timers, this::handleDeadNeighbor);
   }
 
   /**
    * Handle an incoming message.
    *
-   * @param messageJson The JSON string representing the message
+   * @param data The buffer holding the received datagram
+   * @param offset The offset of the datagram in the buffer
+   * @param length The length of the datagram
+   * @param sender The address the datagram was received from
    */
-  public void handleMessage(String messageJson) {
+  public void handleMessage(byte[] data, int offset, int length, int sender) {
+    MessageHeader header;
     try {
-      Map<String, Object> jsonMap = objectMapper.readValue(messageJson, Map.class);
-      String type = (String) jsonMap.get("type");
+      header = peekHeader(data, offset, length, sender);
+    } catch (IOException e) {
+      logger.error("Error handling message: {}", e.getMessage(), e);
+      return;
+    }
+    handleMessage(data, offset, length, header);
+  }
 
-      if (type == null) {
-        logger.warn("Received message with no type: {}", messageJson);
+  /**
+   * Handle an incoming message whose header has already been read.
+   *
+   * @param data The buffer holding the received datagram
+   * @param offset The offset of the datagram in the buffer
+   * @param length The length of the datagram
+   * @param header The header returned by {@link #peekHeader} for this datagram
+   */
+  public void handleMessage(byte[] data, int offset, int length, MessageHeader header) {
+    long start = System.nanoTime();
+    try {
+      MessageCodec codec = codecFor(data, offset, length);
+      if (isTransit(header)) {
+        relayMessage(data, offset, length, codec, header);
         return;
       }
 
-      switch (type) {
-        case "data":
-          handleDataMessage(objectMapper.readValue(messageJson, DataMessage.class));
-          break;
-        case "update":
-          handleUpdateMessage(objectMapper.readValue(messageJson, UpdateMessage.class));
-          break;
-        case "trace":
-          handleTraceMessage(objectMapper.readValue(messageJson, TraceMessage.class));
-          break;
-        default:
-          logger.warn("Unknown message type: {}", type);
+      Message message = codec.decode(data, offset, length);
+
+      if (message instanceof DataMessage dataMessage) {
+        handleDataMessage(dataMessage);
+      } else if (message instanceof UpdateMessage updateMessage) {
+        recordEncoding(updateMessage, codec);
+        handleUpdateMessage(updateMessage, length);
+      } else if (message instanceof TraceMessage traceMessage) {
+        handleTraceMessage(traceMessage);
+      } else if (message instanceof HelloMessage helloMessage) {
+        recordEncoding(helloMessage, codec);
+        handleHelloMessage(helloMessage);
+      } else {
+        logger.warn("Unknown message type: {}", message.getType());
       }
+    } catch (IOException e) {
+      recordMalformed(e);
+      logger.error("Error handling message: {}", e.getMessage(), e);
     } catch (Exception e) {
       logger.error("Error handling message: {}", e.getMessage(), e);
+    } finally {
+      metrics.recordHandle(System.nanoTime() - start);
     }
   }
 
   /**
-   * Handle a data message.
+   * Read the header of a received datagram without decoding the rest of it. Every received datagram
+   * goes through here once, so this is where it is counted.
    *
-   * @param message The data message
+   * @param data The buffer holding the received datagram
+   * @param offset The offset of the datagram in the buffer
+   * @param length The length of the datagram
+   * @param sender The address the datagram was received from, whose neighbor traffic it counts as
+   * @return The message header
+   * @throws IOException If the datagram is not a valid message
    */
-  private void handleDataMessage(DataMessage message) {
-    if (message.getDestination().equals(localAddress)) {
-      System.out.println(message.getPayload());
+  public MessageHeader peekHeader(byte[] data, int offset, int length, int sender)
+      throws IOException {
+    long start = System.nanoTime();
+    MessageHeader header;
+    try {
+      header = codecFor(data, offset, length).peek(data, offset, length);
+    } catch (IOException e) {
+      recordMalformed(e);
+      throw e;
+    }
+    metrics.recordParse(System.nanoTime() - start);
+    metrics.recordReceived(header.getType(), sender, length);
+    return header;
+  }
+
+  private void recordMalformed(IOException e) {
+    metrics.recordDrop(e instanceof EOFException ? DropReason.TRUNCATED : DropReason.PARSE_ERROR);
+  }
+
+  private static MessageCodec codecFor(byte[] data, int offset, int length) {
+    return BinaryMessageCodec.isBinary(data, offset, length) ? binaryCodec : jsonCodec;
+  }
+
+  /**
+   * Remember that a neighbor talks to us in binary. Only updates and hellos are sent by the
+   * neighbor itself; other messages may have been relayed from anywhere.
+   *
+   * @param message The update or hello message
+   * @param codec The codec the message arrived in
+   */
+  private void recordEncoding(Message message, MessageCodec codec) {
+    if (codec == binaryCodec && localAddress.equals(message.getDestination())) {
+      topologyManager.recordBinaryReceived(message.getSource());
+    }
+  }
+
+  /**
+   * Check whether a message is only passing through this router. Every data and trace message is
+   * either addressed to this router or relayed, so the hop limit is only taken off in {@link
+   * #relayMessage}.
+   *
+   * @param header The message header
+   * @return true for data and trace messages addressed to another router
+   * @throws IOException If a data or trace message has no destination
+   */
+  private boolean isTransit(MessageHeader header) throws IOException {
+    String type = header.getType();
+    if (!"data".equals(type) && !"trace".equals(type)) {
+      return false;
+    }
+    if (header.getDestination() == null) {
+      throw new IOException("Missing destination in " + type + " message");
+    }
+    return !distanceVector.isLocal(header.getDestination());
+  }
+
+  /**
+   * Relay a transit message to its next hop without decoding it. The hop limit is decremented in
+   * place, messages whose limit runs out are dropped, and trace messages get this router's address
+   * appended to their router list. Messages are only decoded when the next hop uses a different
+   * encoding than the one they arrived in, when the hop limit has to be added or removed for it, or
+   * for a JSON trace whose header has no router list to append to.
+   *
+   * @param data The buffer holding the received datagram
+   * @param offset The offset of the datagram in the buffer
+   * @param length The length of the datagram
+   * @param codec The codec the datagram arrived in
+   * @param header The message header
+   * @throws IOException If the message cannot be re-encoded
+   */
+  private void relayMessage(
+      byte[] data, int offset, int length, MessageCodec codec, MessageHeader header)
+      throws IOException {
+    ForwardEvent event = ForwardEvent.start();
+    String type = header.getType();
+    String source = header.getSource();
+    String destination = header.getDestination();
+    int destinationAddress = Ipv4.parse(destination);
+    int nextHop =
+        distanceVector.getNextHop(
+            destinationAddress, flowHash(addressOf(source), destinationAddress));
+
+    if (nextHop == DistanceVector.NO_ROUTE) {
+      metrics.recordDrop(DropReason.NO_ROUTE);
+      logger.warn("No route to destination: {}", destination);
+      event.finish(localAddress, type, source, destination, nextHop, ForwardEvent.NO_ROUTE);
       return;
     }
 
-    forwardMessage(message);
+    boolean hopLimited = header.getTtl() >= 0;
+    if (hopLimited && header.getTtl() <= 1) {
+      expire(type, source, destination);
+      event.finish(localAddress, type, source, destination, nextHop, ForwardEvent.EXPIRED);
+      return;
+    }
+
+    MessageCodec nextHopCodec = codecForNeighbor(nextHop);
+    boolean trace = "trace".equals(type);
+    boolean queued;
+    String decision = ForwardEvent.RELAYED;
+    if (nextHopCodec != codec
+        || hopLimited != topologyManager.supportsTtl(nextHop)
+        || (trace && header.getHopsEnd() < 0)) {
+      Message message = codec.decode(data, offset, length);
+      if (message instanceof TraceMessage traceMessage) {
+        traceMessage.addRouter(localAddress);
+      }
+      if (message instanceof HopLimitedMessage hopLimitedMessage && hopLimited) {
+        hopLimitedMessage.setTtl(header.getTtl() - 1);
+      }
+      queued = sendData(nextHop, type, nextHopCodec.encode(limitHops(message, nextHop)));
+      decision = ForwardEvent.REENCODED;
+    } else if (trace || hopLimited) {
+      queued =
+          sendData(
+              nextHop,
+              type,
+              codec.relay(
+                  data, offset, length, header, trace ? localAddress : null, header.getTtl() - 1));
+    } else {
+      // The receive buffer is reused, so the queued datagram needs its own copy
+      queued = sendData(nextHop, type, Arrays.copyOfRange(data, offset, offset + length));
+    }
+    event.finish(
+        localAddress,
+        type,
+        source,
+        destination,
+        nextHop,
+        queued ? decision : ForwardEvent.QUEUE_FULL);
+  }
+
+  /**
+   * Queue a message to a neighbor, counting it as sent unless the neighbor's queue is full.
+   *
+   * @param neighbor The neighbor's address
+   * @param type The message type
+   * @param datagram The encoded message
+   * @return false if the neighbor's queue was full and the message was dropped
+   */
+  private boolean sendData(int neighbor, String type, byte[] datagram) {
+    if (!outboundQueues.sendData(neighbor, datagram)) {
+      return false;
+    }
+    metrics.recordSent(type, neighbor, datagram.length);
+    return true;
+  }
+
+  private void expire(String type, String source, String destination) {
+    metrics.recordDrop(DropReason.EXPIRED);
+    logger.debug("Hop limit expired, dropped {} message from {} to {}", type, source, destination);
+  }
+
+  /**
+   * Fit the hop limit of a message to the next hop. Neighbors that do not understand hop limits get
+   * none, and messages from such neighbors get this router's limit when they reach one that does.
+   *
+   * @param message The message to send
+   * @param nextHop The next hop's address
+   * @return The same message
+   */
+  private Message limitHops(Message message, int nextHop) {
+    if (message instanceof HopLimitedMessage hopLimitedMessage) {
+      if (!topologyManager.supportsTtl(nextHop)) {
+        hopLimitedMessage.setTtl(null);
+      } else if (hopLimitedMessage.getTtl() == null) {
+        hopLimitedMessage.setTtl(options.getTtl());
+      }
+    }
+    return message;
+  }
+
+  /** Get the number of messages dropped because their hop limit ran out. */
+  public long getExpiredMessages() {
+    return metrics.getDropCount(DropReason.EXPIRED);
+  }
+
+  /**
+   * Check whether an address is one of this router's neighbors.
+   *
+   * @param address The address
+   * @return true if the address is a configured neighbor
+   */
+  public boolean isNeighbor(int address) {
+    return topologyManager.isNeighbor(address);
+  }
+
+  /** Get the router's counters and latency histograms. */
+  public RouterMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Handle a data message addressed to this router.
+   *
+   * @param message The data message
+   */
+  private void handleDataMessage(DataMessage message) {
+    ForwardEvent event = ForwardEvent.start();
+    System.out.println(message.getPayload());
+    event.finish(
+        localAddress,
+        message.getType(),
+        message.getSource(),
+        message.getDestination(),
+        DistanceVector.NO_ROUTE,
+        ForwardEvent.DELIVERED);
   }
 
   /**
    * Handle an update message.
    *
    * @param message The update message
+   * @param length The size of the datagram it arrived in
    */
-  private void handleUpdateMessage(UpdateMessage message) {
+  private void handleUpdateMessage(UpdateMessage message, int length) {
     if (!message.getDestination().equals(localAddress)) {
       return;
     }
@@ -91,26 +437,54 @@ public class Router {
     Integer linkWeight = topologyManager.getLinkWeight(neighborIp);
 
     if (linkWeight != null) {
+      UpdateReceivedEvent event = UpdateReceivedEvent.start();
       topologyManager.recordNeighborUpdate(neighborIp);
-      distanceVector.applyUpdate(neighborIp, message.getDistances(), linkWeight);
+      boolean changed = distanceVector.applyUpdate(neighborIp, message.getDistances(), linkWeight);
+      if (changed) {
+        scheduleTriggeredUpdate();
+      }
+      event.finish(localAddress, neighborIp, message.getDistances().size(), length, changed);
     } else {
       logger.debug("Ignoring update from unknown neighbor: {}", neighborIp);
     }
   }
 
   /**
-   * Handle a trace message.
+   * Handle a hello message.
+   *
+   * @param message The hello message
+   */
+  private void handleHelloMessage(HelloMessage message) {
+    if (!message.getDestination().equals(localAddress)) {
+      return;
+    }
+
+    String neighborIp = message.getSource();
+    if (message.acceptsEncoding(HelloMessage.ENCODING_BINARY)) {
+      topologyManager.recordBinaryAccepted(neighborIp);
+    }
+
+    boolean supportsTtl = message.supportsFeature(HelloMessage.FEATURE_TTL);
+    boolean knewTtl = topologyManager.supportsTtl(neighborIp);
+    topologyManager.recordTtlSupport(neighborIp, supportsTtl);
+    if (supportsTtl && !knewTtl && topologyManager.supportsTtl(neighborIp)) {
+      // Answer right away, so a restarted neighbor does not wait a full refresh to learn about us.
+      // Hellos are control traffic, so a backlog of data to the neighbor cannot crowd them out
+      byte[] hello = encodeHello(neighborIp);
+      if (outboundQueues.sendControl(Ipv4.parse(neighborIp), hello)) {
+        metrics.recordSent("hello", neighborIp, hello.length);
+      }
+    }
+  }
+
+  /**
+   * Handle a trace message addressed to this router.
    *
    * @param message The trace message
    */
   private void handleTraceMessage(TraceMessage message) {
     message.addRouter(localAddress);
-
-    if (message.getDestination().equals(localAddress)) {
-      sendTraceResponse(message);
-    } else {
-      forwardMessage(message);
-    }
+    sendTraceResponse(message);
   }
 
   /**
@@ -120,11 +494,13 @@ public class Router {
    */
   private void sendTraceResponse(TraceMessage traceMessage) {
     try {
-      String traceJson = objectMapper.writeValueAsString(traceMessage);
+      // The hop limit left is of no interest to the tracing router
+      traceMessage.setTtl(null);
+      String traceJson = jsonCodec.encodeAsString(traceMessage);
       DataMessage response = new DataMessage(localAddress, traceMessage.getSource(), traceJson);
 
       forwardMessage(response);
-    } catch (JsonProcessingException e) {
+    } catch (IOException e) {
       logger.error("Error creating trace response: {}", e.getMessage(), e);
     }
   }
@@ -135,47 +511,331 @@ public class Router {
    * @param message The message to forward
    */
   private void forwardMessage(Message message) {
+    ForwardEvent event = ForwardEvent.start();
+    String type = message.getType();
+    String source = message.getSource();
     String destination = message.getDestination();
-    String nextHop = distanceVector.getNextHop(destination);
+    int destinationAddress = Ipv4.parse(destination);
+    int nextHop =
+        distanceVector.getNextHop(
+            destinationAddress, flowHash(addressOf(source), destinationAddress));
 
-    if (nextHop == null) {
+    if (nextHop == DistanceVector.NO_ROUTE) {
+      metrics.recordDrop(DropReason.NO_ROUTE);
       logger.warn("No route to destination: {}", destination);
+      event.finish(localAddress, type, source, destination, nextHop, ForwardEvent.NO_ROUTE);
       return;
     }
 
     try {
-      String messageJson = objectMapper.writeValueAsString(message);
-      udpClient.sendMessage(nextHop, messageJson);
-    } catch (JsonProcessingException e) {
+      boolean queued =
+          sendData(nextHop, type, codecForNeighbor(nextHop).encode(limitHops(message, nextHop)));
+      event.finish(
+          localAddress,
+          type,
+          source,
+          destination,
+          nextHop,
+          queued ? ForwardEvent.FORWARDED : ForwardEvent.QUEUE_FULL);
+    } catch (IOException e) {
       logger.error("Error serializing message: {}", e.getMessage(), e);
     }
   }
 
-  /** Send periodic updates to all neighbors. */
-  public void sendPeriodicUpdates() {
-    List<String> staleNeighbors = topologyManager.findStaleNeighbors();
-    distanceVector.removeRoutesForStaleNeighbors(staleNeighbors);
+  /**
+   * Hash the source and destination of a message, so that messages of the same flow choose the same
+   * equal-cost next hop and stay in order. The local address is mixed in so that consecutive
+   * routers do not all make the same choice.
+   *
+   * @param source The source address
+   * @param destination The destination address
+   * @return The flow hash
+   */
+  private int flowHash(int source, int destination) {
+    int hash = (ownAddress * 31 + source) * 31 + destination;
+    // murmur3 finalizer, so every bit of the input affects the low bits used to pick a next hop
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+
+  /**
+   * Parse the address of a message's source, which only feeds the flow hash and so may be missing
+   * or malformed.
+   *
+   * @param address The address
+   * @return The address as an int, or 0 if it is not a valid IPv4 address
+   */
+  private static int addressOf(String address) {
+    if (address == null) {
+      return 0;
+    }
+    try {
+      return Ipv4.parse(address);
+    } catch (IllegalArgumentException e) {
+      return 0;
+    }
+  }
+
+  /** Get the router's settings. */
+  public RouterOptions getOptions() {
+    return options;
+  }
+
+  /**
+   * Start running timers, including the periodic updates to each neighbor.
+   *
+   * @param scheduler The scheduler that runs the timers
+   */
+  public void start(ScheduledExecutorService scheduler) {
+    start();
+    scheduler.scheduleAtFixedRate(
+        this::advanceTimers, timers.getTickMillis(), timers.getTickMillis(), TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Start the router without a timer thread. The caller runs the timers with {@link
+   * #advanceTimers}, e.g. after moving a virtual clock.
+   */
+  public void start() {
+    started = true;
+    timers.schedule(METRICS_SAMPLE_MILLIS, this::sampleMetrics);
+  }
+
+  /** Sample the route change rate and schedule the next sample. */
+  private void sampleMetrics() {
+    metrics.sampleRouteChanges(clock.millis());
+    timers.schedule(METRICS_SAMPLE_MILLIS, this::sampleMetrics);
+  }
+
+  /**
+   * Run the timers that have expired. Called every tick once started with a scheduler.
+   *
+   * @return The number of timers run
+   */
+  public int advanceTimers() {
+    return timers.advance();
+  }
+
+  /**
+   * Start the periodic updates to a neighbor, replacing any already running. The first update is
+   * sent at a random point within the first period, so that updates to different neighbors are
+   * spread evenly over the period rather than sent in one burst.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @param periodMillis The update period in milliseconds
+   */
+  private void startPeriodicUpdates(String neighborIp, long periodMillis) {
+    NeighborUpdates updates = new NeighborUpdates(periodMillis);
+    NeighborUpdates previous = neighborUpdates.put(neighborIp, updates);
+    if (previous != null) {
+      previous.cancel();
+    }
+
+    long delay = random.nextLong(periodMillis) + 1;
+    updates.setTimer(timers.schedule(delay, () -> sendPeriodicUpdate(neighborIp, updates)));
+  }
+
+  /**
+   * Send a periodic update to a neighbor and schedule the next one. Every few periods the full
+   * table is sent; in between, only the routes changed since the last update, which doubles as a
+   * keepalive when nothing changed. Each period is randomly lengthened or shortened by the
+   * configured jitter, so routers that started together do not stay synchronized.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @param updates The neighbor's update schedule
+   */
+  private void sendPeriodicUpdate(String neighborIp, NeighborUpdates updates) {
+    if (neighborUpdates.get(neighborIp) != updates) {
+      // The neighbor was removed or its schedule replaced
+      return;
+    }
+
+    long round = updates.nextRound();
+    sendUpdateToNeighbor(neighborIp, round % options.getFullRefreshPeriods() == 0);
+
+    double jitter = options.getUpdateJitter() * (2 * random.nextDouble() - 1);
+    long delay = Math.round(updates.getPeriodMillis() * (1 + jitter));
+    updates.setTimer(timers.schedule(delay, () -> sendPeriodicUpdate(neighborIp, updates)));
+  }
+
+  /**
+   * Fail over the routes through a neighbor that stopped sending updates.
+   *
+   * @param neighborIp The neighbor's IP address
+   */
+  private void handleDeadNeighbor(String neighborIp) {
+    // A neighbor that comes back may have lost its table, so it gets a full update next
+    advertisedVersions.remove(neighborIp);
+    if (distanceVector.removeRoutesVia(neighborIp)) {
+      scheduleTriggeredUpdate();
+    }
+  }
+
+  /**
+   * Schedule a triggered update carrying the routes that just changed. Triggered updates are at
+   * least one hold-down interval apart; changes made while one is pending are sent with it.
+   */
+  private void scheduleTriggeredUpdate() {
+    if (!started || !triggeredUpdatePending.compareAndSet(false, true)) {
+      return;
+    }
+
+    long delay = Math.max(0, lastTriggeredUpdate + options.getHoldDownMillis() - clock.millis());
+    timers.schedule(delay, this::sendTriggeredUpdates);
+  }
+
+  /** Send the routes changed since the last update to every neighbor that has any. */
+  private void sendTriggeredUpdates() {
+    triggeredUpdatePending.set(false);
+    lastTriggeredUpdate = clock.millis();
 
     for (String neighborIp : topologyManager.getAllNeighbors()) {
-      sendUpdateToNeighbor(neighborIp);
+      outboundQueues.requestUpdate(neighborIp, false, false);
     }
   }
 
   /**
-   * Send an update to a specific neighbor.
+   * Queue a periodic update to a specific neighbor.
    *
    * @param neighborIp The neighbor's IP address
+   * @param fullRefresh Whether to send the full table instead of the changes since the last update
    */
-  private void sendUpdateToNeighbor(String neighborIp) {
-    Map<String, Integer> distances = distanceVector.getDistancesForNeighbor(neighborIp);
+  private void sendUpdateToNeighbor(String neighborIp, boolean fullRefresh) {
+    outboundQueues.requestUpdate(neighborIp, fullRefresh, true);
+  }
+
+  /**
+   * Build the update for a neighbor from the routes changed since the last update it was sent. Runs
+   * when the neighbor's outbound queue is about to send it, so requests that piled up in the
+   * meantime are served by one update.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @param fullRefresh Whether to send the full table instead of the changes since the last update
+   * @param periodic Whether this is a periodic update, sent even if no route changed
+   * @return The datagrams to send
+   */
+  private List<byte[]> buildUpdate(String neighborIp, boolean fullRefresh, boolean periodic) {
+    List<byte[]> datagrams = new ArrayList<>();
+    // Hellos go out with every full refresh, so neighbors learn our features after a restart, and
+    // with every update while a neighbor has yet to switch to binary
+    if (periodic
+        && (fullRefresh
+            || (options.isBinaryEncoding() && !topologyManager.sendsBinary(neighborIp)))) {
+      byte[] hello = encodeHello(neighborIp);
+      metrics.recordSent("hello", neighborIp, hello.length);
+      datagrams.add(hello);
+    }
+
+    long sinceVersion = fullRefresh ? 0 : advertisedVersions.getOrDefault(neighborIp, 0L);
+    Advertisement advertisement = distanceVector.getAdvertisement(neighborIp, sinceVersion);
+    if (!periodic && advertisement.getDistances().isEmpty()) {
+      return datagrams;
+    }
 
-    UpdateMessage updateMessage = new UpdateMessage(localAddress, neighborIp, distances);
     try {
-      String updateJson = objectMapper.writeValueAsString(updateMessage);
-      udpClient.sendMessage(neighborIp, updateJson);
-    } catch (JsonProcessingException e) {
+      UpdateSentEvent event = UpdateSentEvent.start();
+      List<byte[]> updates = encodeAdvertisement(neighborIp, advertisement, sinceVersion == 0);
+      long bytes = 0;
+      for (byte[] update : updates) {
+        metrics.recordSent("update", neighborIp, update.length);
+        datagrams.add(update);
+        bytes += update.length;
+      }
+      event.finish(
+          localAddress,
+          neighborIp,
+          advertisement.getDistances().size(),
+          updates.size(),
+          bytes,
+          sinceVersion == 0,
+          periodic);
+      advertisedVersions.merge(neighborIp, advertisement.getVersion(), Math::max);
+    } catch (IOException e) {
       logger.error("Error serializing update message: {}", e.getMessage(), e);
     }
+    return datagrams;
+  }
+
+  /**
+   * Encode an advertisement as update messages for a neighbor, each fitting within the configured
+   * MTU. Full advertisements are cached per neighbor and reused while the neighbor's routes and
+   * encoding stay the same, which in a stable network is every periodic update.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @param advertisement The advertisement to encode
+   * @param full Whether the advertisement is the neighbor's full table
+   * @return The encoded messages
+   * @throws IOException If the message cannot be encoded
+   */
+  private List<byte[]> encodeAdvertisement(
+      String neighborIp, Advertisement advertisement, boolean full) throws IOException {
+    MessageCodec codec = codecForNeighbor(neighborIp);
+    if (full) {
+      EncodedAdvertisement cached = encodedAdvertisements.get(neighborIp);
+      if (cached != null && cached.advertisement == advertisement && cached.codec == codec) {
+        return cached.encoded;
+      }
+    }
+
+    List<byte[]> encoded =
+        codec.encodeUpdate(
+            new UpdateMessage(localAddress, neighborIp, advertisement.getDistances()),
+            options.getMtu());
+    if (full) {
+      encodedAdvertisements.put(
+          neighborIp, new EncodedAdvertisement(advertisement, codec, encoded));
+    }
+    return encoded;
+  }
+
+  /**
+   * Encode a hello telling a neighbor which encodings we accept and which features we support.
+   * Hellos are always JSON so that peers running older versions can read and ignore them.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @return The encoded hello
+   */
+  private byte[] encodeHello(String neighborIp) {
+    HelloMessage hello =
+        new HelloMessage(
+            localAddress,
+            neighborIp,
+            options.isBinaryEncoding()
+                ? List.of(HelloMessage.ENCODING_JSON, HelloMessage.ENCODING_BINARY)
+                : List.of(HelloMessage.ENCODING_JSON),
+            List.of(HelloMessage.FEATURE_TTL));
+    try {
+      return jsonCodec.encode(hello);
+    } catch (IOException e) {
+      // A hello has no user-supplied content, so this cannot happen
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Select the encoding for messages sent to a neighbor.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @return The binary codec if both ends have agreed on it, the JSON codec otherwise
+   */
+  private MessageCodec codecForNeighbor(String neighborIp) {
+    return codecForNeighbor(Ipv4.parse(neighborIp));
+  }
+
+  /**
+   * Select the encoding for messages sent to a neighbor.
+   *
+   * @param neighbor The neighbor's address
+   * @return The binary codec if both ends have agreed on it, the JSON codec otherwise
+   */
+  private MessageCodec codecForNeighbor(int neighbor) {
+    return options.isBinaryEncoding() && topologyManager.acceptsBinary(neighbor)
+        ? binaryCodec
+        : jsonCodec;
   }
 
   /**
@@ -185,9 +845,42 @@ public class Router {
    * @param weight The link weight
    */
   public void addNeighbor(String neighborIp, int weight) {
-    if (topologyManager.addNeighbor(neighborIp, weight)) {
-      sendUpdateToNeighbor(neighborIp);
+    addNeighbor(neighborIp, weight, updatePeriod);
+  }
+
+  /**
+   * Add a neighbor that is sent updates at its own period.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @param weight The link weight
+   * @param neighborUpdatePeriod The update period for the neighbor, in seconds
+   */
+  public void addNeighbor(String neighborIp, int weight, int neighborUpdatePeriod) {
+    try {
+      Ipv4.parse(neighborIp);
+    } catch (IllegalArgumentException e) {
+      logger.warn("Ignoring neighbor with invalid address: {}", neighborIp);
+      return;
     }
+    if (neighborUpdatePeriod < 1) {
+      logger.warn("Ignoring neighbor {} with invalid update period", neighborIp);
+      return;
+    }
+
+    if (topologyManager.addNeighbor(neighborIp, weight, neighborUpdatePeriod)) {
+      outboundQueues.add(neighborIp);
+      metrics.addNeighbor(neighborIp);
+      distanceVector.setRouteTimeout(neighborIp, routeTimeoutMillis(neighborUpdatePeriod));
+      if (distanceVector.updateLinkWeight(neighborIp, weight)) {
+        scheduleTriggeredUpdate();
+      }
+      sendUpdateToNeighbor(neighborIp, true);
+      startPeriodicUpdates(neighborIp, neighborUpdatePeriod * 1000L);
+    }
+  }
+
+  private long routeTimeoutMillis(int period) {
+    return ROUTE_TIMEOUT_REFRESHES * options.getFullRefreshPeriods() * period * 1000L;
   }
 
   /**
@@ -197,10 +890,67 @@ public class Router {
    */
   public void removeNeighbor(String neighborIp) {
     if (topologyManager.removeNeighbor(neighborIp)) {
-      distanceVector.removeRoutesVia(neighborIp);
+      outboundQueues.remove(neighborIp);
+      NeighborUpdates updates = neighborUpdates.remove(neighborIp);
+      if (updates != null) {
+        updates.cancel();
+      }
+      advertisedVersions.remove(neighborIp);
+      encodedAdvertisements.remove(neighborIp);
+      metrics.removeNeighbor(neighborIp);
+      boolean routesChanged = distanceVector.removeRoutesVia(neighborIp);
+      distanceVector.forgetNeighbor(neighborIp);
+      if (routesChanged) {
+        scheduleTriggeredUpdate();
+      }
+    }
+  }
+
+  /**
+   * Originate a prefix for a network attached to this router.
+   *
+   * @param prefix The prefix in CIDR notation
+   * @param distance The distance advertised for the prefix
+   */
+  public void addPrefix(String prefix, int distance) {
+    try {
+      if (distanceVector.addLocalPrefix(prefix, distance)) {
+        scheduleTriggeredUpdate();
+      }
+    } catch (IllegalArgumentException e) {
+      logger.warn("Ignoring invalid prefix: {}", prefix);
+    }
+  }
+
+  /**
+   * Stop originating a prefix.
+   *
+   * @param prefix The prefix in CIDR notation
+   */
+  public void removePrefix(String prefix) {
+    try {
+      if (distanceVector.removeLocalPrefix(prefix)) {
+        scheduleTriggeredUpdate();
+      }
+    } catch (IllegalArgumentException e) {
+      logger.warn("Ignoring invalid prefix: {}", prefix);
     }
   }
 
+  /**
+   * Get a snapshot of the routing table.
+   *
+   * @return The current routes
+   */
+  public List<RoutingEntry> getRoutes() {
+    return distanceVector.getRoutes();
+  }
+
+  /** Get the version of the routing table, which grows whenever an advertised route changes. */
+  public long getRouteVersion() {
+    return distanceVector.getVersion();
+  }
+
   /**
    * Send a trace message to a destination.
    *
@@ -215,4 +965,47 @@ public class Router {
     TraceMessage traceMessage = new TraceMessage(localAddress, destinationIp);
     forwardMessage(traceMessage);
   }
+
+  /** A full advertisement together with its encoded datagrams for one neighbor. */
+  private static final class EncodedAdvertisement {
+    private final Advertisement advertisement;
+    private final MessageCodec codec;
+    private final List<byte[]> encoded;
+
+    private EncodedAdvertisement(
+        Advertisement advertisement, MessageCodec codec, List<byte[]> encoded) {
+      this.advertisement = advertisement;
+      this.codec = codec;
+      this.encoded = encoded;
+    }
+  }
+
+  /** The periodic update schedule of one neighbor. */
+  private static final class NeighborUpdates {
+    private final long periodMillis;
+    private long rounds;
+    private TimerWheel.Timeout timer;
+
+    private NeighborUpdates(long periodMillis) {
+      this.periodMillis = periodMillis;
+    }
+
+    private long getPeriodMillis() {
+      return periodMillis;
+    }
+
+    private synchronized long nextRound() {
+      return rounds++;
+    }
+
+    private synchronized void setTimer(TimerWheel.Timeout timer) {
+      this.timer = timer;
+    }
+
+    private synchronized void cancel() {
+      if (timer != null) {
+        timer.cancel();
+      }
+    }
+  }
 }
@@ -0,0 +1,242 @@
+package com.redes.udprip.app;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/** Tunable router settings. Defaults can be overridden with {@code udprip.*} system properties. */
+public class RouterOptions {
+  /** The smallest accepted MTU; any single route fits well within it in either encoding. */
+  public static final int MIN_MTU = 256;
+
+  private boolean binaryEncoding;
+  private int fullRefreshPeriods = 6;
+  private long holdDownMillis = 1000;
+  private int mtu = 1472;
+  private double updateJitter = 0.1;
+  private int queueCapacity = 256;
+  private PoisonMode poisonMode = PoisonMode.NONE;
+  private int ttl = 64;
+  private int handlerThreads = 1;
+  private int ingressCapacity = 1024;
+  private int controlWeight;
+  private double dataRate;
+  private int dataBurst = 100;
+
+  /**
+   * Create options from system properties.
+   *
+   * <ul>
+   *   <li>{@code udprip.binary}: offer the binary encoding to neighbors (default false)
+   *   <li>{@code udprip.fullRefreshPeriods}: send the full table every this many update periods,
+   *       and only changed routes in between (default 6)
+   *   <li>{@code udprip.holdDownMillis}: minimum interval between triggered updates (default 1000)
+   *   <li>{@code udprip.mtu}: largest update datagram to send, in bytes; larger updates are split
+   *       (default 1472, an Ethernet frame minus the IPv4 and UDP headers)
+   *   <li>{@code udprip.updateJitter}: fraction of the update period by which each update to a
+   *       neighbor is randomly advanced or delayed (default 0.1)
+   *   <li>{@code udprip.queueCapacity}: data messages queued per neighbor before new ones are
+   *       dropped (default 256)
+   *   <li>{@code udprip.poisoning}: {@code none}, {@code routes} to advertise lost routes as
+   *       unreachable, or {@code reverse} to also advertise routes as unreachable to the neighbor
+   *       they were learned from (default none). Without poisoning a lost route can count to
+   *       infinity in a loop of three or more routers; with it a lost route is withdrawn after a
+   *       hold-down of a few update periods
+   *   <li>{@code udprip.ttl}: hop limit given to data and trace messages sent by this router; a
+   *       message whose limit runs out is dropped instead of circling a routing loop (default 64)
+   *   <li>{@code udprip.handlers}: threads handling received messages. Messages are spread over
+   *       them by the address they were sent from, so each neighbor's updates are applied in order
+   *       and different neighbors' in parallel; neighbors that send from one shared address, such
+   *       as unbound sockets on loopback, all land on the same thread (default 1)
+   *   <li>{@code udprip.ingressCapacity}: received control messages, and separately data messages,
+   *       queued per handler thread before new ones are dropped (default 1024)
+   *   <li>{@code udprip.controlWeight}: control messages handled before one waiting data message is
+   *       let through, 0 for strict priority (default 0)
+   *   <li>{@code udprip.dataRate}: data messages accepted per second from each neighbor, 0 for no
+   *       limit; all other senders share one limit (default 0)
+   *   <li>{@code udprip.dataBurst}: data messages a neighbor may send in a burst above its rate
+   *       (default 100)
+   * </ul>
+   *
+   * @return The options
+   */
+  public static RouterOptions fromSystemProperties() {
+    RouterOptions options = new RouterOptions();
+    options.setBinaryEncoding(Boolean.getBoolean("udprip.binary"));
+    options.setFullRefreshPeriods(
+        Integer.getInteger("udprip.fullRefreshPeriods", options.getFullRefreshPeriods()));
+    options.setHoldDownMillis(Long.getLong("udprip.holdDownMillis", options.getHoldDownMillis()));
+    options.setMtu(Integer.getInteger("udprip.mtu", options.getMtu()));
+    options.setQueueCapacity(
+        Integer.getInteger("udprip.queueCapacity", options.getQueueCapacity()));
+    String updateJitter = System.getProperty("udprip.updateJitter");
+    if (updateJitter != null) {
+      options.setUpdateJitter(Double.parseDouble(updateJitter));
+    }
+    String poisoning = System.getProperty("udprip.poisoning");
+    if (poisoning != null) {
+      options.setPoisonMode(PoisonMode.valueOf(poisoning.trim().toUpperCase(Locale.ROOT)));
+    }
+    options.setTtl(Integer.getInteger("udprip.ttl", options.getTtl()));
+    options.setHandlerThreads(Integer.getInteger("udprip.handlers", options.getHandlerThreads()));
+    options.setIngressCapacity(
+        Integer.getInteger("udprip.ingressCapacity", options.getIngressCapacity()));
+    options.setControlWeight(
+        Integer.getInteger("udprip.controlWeight", options.getControlWeight()));
+    String dataRate = System.getProperty("udprip.dataRate");
+    if (dataRate != null) {
+      options.setDataRate(Double.parseDouble(dataRate));
+    }
+    options.setDataBurst(Integer.getInteger("udprip.dataBurst", options.getDataBurst()));
+    return options;
+  }
+
+  /** Whether the binary encoding is offered to neighbors that accept it. */
+  public boolean isBinaryEncoding() {
+    return binaryEncoding;
+  }
+
+  public void setBinaryEncoding(boolean binaryEncoding) {
+    this.binaryEncoding = binaryEncoding;
+  }
+
+  /** Get how many update periods pass between full-table updates. */
+  public int getFullRefreshPeriods() {
+    return fullRefreshPeriods;
+  }
+
+  public void setFullRefreshPeriods(int fullRefreshPeriods) {
+    if (fullRefreshPeriods < 1) {
+      throw new IllegalArgumentException("fullRefreshPeriods must be at least 1");
+    }
+    this.fullRefreshPeriods = fullRefreshPeriods;
+  }
+
+  /** Get the minimum interval between triggered updates, in milliseconds. */
+  public long getHoldDownMillis() {
+    return holdDownMillis;
+  }
+
+  public void setHoldDownMillis(long holdDownMillis) {
+    if (holdDownMillis < 0) {
+      throw new IllegalArgumentException("holdDownMillis must not be negative");
+    }
+    this.holdDownMillis = holdDownMillis;
+  }
+
+  /** Get the largest update datagram to send, in bytes. */
+  public int getMtu() {
+    return mtu;
+  }
+
+  public void setMtu(int mtu) {
+    if (mtu < MIN_MTU) {
+      throw new IllegalArgumentException("mtu must be at least " + MIN_MTU);
+    }
+    this.mtu = mtu;
+  }
+
+  /** Get the fraction of the update period by which updates are randomly advanced or delayed. */
+  public double getUpdateJitter() {
+    return updateJitter;
+  }
+
+  public void setUpdateJitter(double updateJitter) {
+    if (!(updateJitter >= 0 && updateJitter <= 0.5)) {
+      throw new IllegalArgumentException("updateJitter must be between 0 and 0.5");
+    }
+    this.updateJitter = updateJitter;
+  }
+
+  /** Get the number of data messages queued per neighbor before new ones are dropped. */
+  public int getQueueCapacity() {
+    return queueCapacity;
+  }
+
+  public void setQueueCapacity(int queueCapacity) {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("queueCapacity must be at least 1");
+    }
+    this.queueCapacity = queueCapacity;
+  }
+
+  /** Get how lost routes and routes learned from a neighbor are advertised. */
+  public PoisonMode getPoisonMode() {
+    return poisonMode;
+  }
+
+  public void setPoisonMode(PoisonMode poisonMode) {
+    this.poisonMode = Objects.requireNonNull(poisonMode);
+  }
+
+  /** Get the hop limit given to data and trace messages originated by this router. */
+  public int getTtl() {
+    return ttl;
+  }
+
+  public void setTtl(int ttl) {
+    if (ttl < 1 || ttl > 255) {
+      throw new IllegalArgumentException("ttl must be between 1 and 255");
+    }
+    this.ttl = ttl;
+  }
+
+  /** Get the number of threads handling received messages. */
+  public int getHandlerThreads() {
+    return handlerThreads;
+  }
+
+  public void setHandlerThreads(int handlerThreads) {
+    if (handlerThreads < 1) {
+      throw new IllegalArgumentException("handlerThreads must be at least 1");
+    }
+    this.handlerThreads = handlerThreads;
+  }
+
+  /** Get the number of received messages of each class queued per handler thread. */
+  public int getIngressCapacity() {
+    return ingressCapacity;
+  }
+
+  public void setIngressCapacity(int ingressCapacity) {
+    if (ingressCapacity < 1) {
+      throw new IllegalArgumentException("ingressCapacity must be at least 1");
+    }
+    this.ingressCapacity = ingressCapacity;
+  }
+
+  /** Get the number of control messages handled before a waiting data message, 0 for strict. */
+  public int getControlWeight() {
+    return controlWeight;
+  }
+
+  public void setControlWeight(int controlWeight) {
+    if (controlWeight < 0) {
+      throw new IllegalArgumentException("controlWeight must not be negative");
+    }
+    this.controlWeight = controlWeight;
+  }
+
+  /** Get the data messages accepted per second from each neighbor, 0 for no limit. */
+  public double getDataRate() {
+    return dataRate;
+  }
+
+  public void setDataRate(double dataRate) {
+    if (!(dataRate >= 0)) {
+      throw new IllegalArgumentException("dataRate must not be negative");
+    }
+    this.dataRate = dataRate;
+  }
+
+  /** Get the number of data messages a neighbor may send in a burst above its rate. */
+  public int getDataBurst() {
+    return dataBurst;
+  }
+
+  public void setDataBurst(int dataBurst) {
+    if (dataBurst < 1) {
+      throw new IllegalArgumentException("dataBurst must be at least 1");
+    }
+    this.dataBurst = dataBurst;
+  }
+}
@@ -0,0 +1,164 @@
+package com.redes.udprip.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timer wheel. Time is divided into ticks, and each timer is kept in the bucket for the tick
+ * it expires on, modulo the wheel size, in a doubly linked list. Scheduling and cancelling are
+ * O(1); advancing the wheel only visits the buckets of the ticks that passed. Timers further away
+ * than one revolution stay in their bucket until their tick comes around.
+ *
+ * <p>Timers fire with tick granularity, never early. The wheel does not run by itself; {@link
+ * #advance} must be called regularly, normally once per tick. Tasks run on the thread calling it,
+ * outside the wheel's lock, so they may schedule further timers.
+ */
+public class TimerWheel {
+  private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+
+  /** The default tick length in milliseconds. */
+  public static final long DEFAULT_TICK_MILLIS = 100;
+
+  private static final int DEFAULT_WHEEL_SIZE = 1024;
+
+  private final Clock clock;
+  private final long tickMillis;
+  private final Timeout[] buckets;
+  private final int mask;
+  private final long startMillis;
+  private long tick;
+  private int size;
+
+  /** A scheduled timer. */
+  public static final class Timeout {
+    private final TimerWheel wheel;
+    private final Runnable task;
+    private final long deadlineTick;
+    private Timeout previous;
+    private Timeout next;
+    private boolean pending = true;
+
+    private Timeout(TimerWheel wheel, Runnable task, long deadlineTick) {
+      this.wheel = wheel;
+      this.task = task;
+      this.deadlineTick = deadlineTick;
+    }
+
+    /** Cancel the timer. Does nothing if it already fired or was cancelled. */
+    public void cancel() {
+      synchronized (wheel) {
+        if (pending) {
+          wheel.unlink(this);
+        }
+      }
+    }
+
+    /** Whether the timer has neither fired nor been cancelled. */
+    public boolean isPending() {
+      synchronized (wheel) {
+        return pending;
+      }
+    }
+  }
+
+  public TimerWheel(Clock clock) {
+    this(clock, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+  }
+
+  public TimerWheel(Clock clock, long tickMillis, int wheelSize) {
+    if (tickMillis < 1) {
+      throw new IllegalArgumentException("tickMillis must be at least 1");
+    }
+    if (wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+      throw new IllegalArgumentException("wheelSize must be a power of two");
+    }
+    this.clock = clock;
+    this.tickMillis = tickMillis;
+    this.buckets = new Timeout[wheelSize];
+    this.mask = wheelSize - 1;
+    this.startMillis = clock.millis();
+  }
+
+  /** Get the tick length in milliseconds. */
+  public long getTickMillis() {
+    return tickMillis;
+  }
+
+  /**
+   * Schedule a task.
+   *
+   * @param delayMillis The delay in milliseconds
+   * @param task The task to run once the delay has passed
+   * @return The timer, which can be used to cancel it
+   */
+  public synchronized Timeout schedule(long delayMillis, Runnable task) {
+    long deadline = clock.millis() - startMillis + Math.max(0, delayMillis);
+    // Round up, so that a timer never fires early
+    long deadlineTick = Math.max(tick + 1, (deadline + tickMillis - 1) / tickMillis);
+
+    Timeout timeout = new Timeout(this, task, deadlineTick);
+    int bucket = (int) (deadlineTick & mask);
+    timeout.next = buckets[bucket];
+    if (timeout.next != null) {
+      timeout.next.previous = timeout;
+    }
+    buckets[bucket] = timeout;
+    size++;
+    return timeout;
+  }
+
+  /**
+   * Run every task whose timer has expired.
+   *
+   * @return The number of tasks run
+   */
+  public int advance() {
+    List<Runnable> expired = new ArrayList<>();
+    synchronized (this) {
+      long currentTick = (clock.millis() - startMillis) / tickMillis;
+      while (tick < currentTick) {
+        tick++;
+        Timeout timeout = buckets[(int) (tick & mask)];
+        while (timeout != null) {
+          Timeout next = timeout.next;
+          if (timeout.deadlineTick <= tick) {
+            unlink(timeout);
+            expired.add(timeout.task);
+          }
+          timeout = next;
+        }
+      }
+    }
+
+    for (Runnable task : expired) {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        logger.error("Timer task failed: {}", e.getMessage(), e);
+      }
+    }
+    return expired.size();
+  }
+
+  /** Get the number of pending timers. */
+  public synchronized int size() {
+    return size;
+  }
+
+  private void unlink(Timeout timeout) {
+    if (timeout.previous != null) {
+      timeout.previous.next = timeout.next;
+    } else {
+      buckets[(int) (timeout.deadlineTick & mask)] = timeout.next;
+    }
+    if (timeout.next != null) {
+      timeout.next.previous = timeout.previous;
+    }
+    timeout.previous = null;
+    timeout.next = null;
+    timeout.pending = false;
+    size--;
+  }
+}
@@ -1,29 +1,76 @@
 package com.redes.udprip.app;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.redes.udprip.metrics.NeighborStateEvent;
+import com.redes.udprip.model.IntMap;
+import com.redes.udprip.model.Ipv4;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Manages the virtual topology by maintaining neighbor relationships and link weights. */
+/**
+ * Manages the virtual topology by maintaining neighbor relationships and link weights.
+ *
+ * <p>Each live neighbor has a dead-interval timer on a {@link TimerWheel}. Updates only record the
+ * time they arrived; when the timer fires it checks that time and either declares the neighbor dead
+ * or sleeps for the rest of the interval, so hearing from a neighbor costs no timer operations.
+ *
+ * <p>What the forwarding path asks about a neighbor, its encoding and hop limit support, is kept in
+ * a {@link Link} keyed by the neighbor's address as an int, so it can be looked up per packet
+ * without turning the next hop back into a string.
+ */
 public class TopologyManager {
   private static final Logger logger = LoggerFactory.getLogger(TopologyManager.class);
 
+  /** Number of update periods without an update after which a neighbor is considered dead. */
+  public static final int DEAD_INTERVAL_PERIODS = 4;
+
+  private static final long NEVER = Long.MIN_VALUE;
+
   private final Map<String, Integer> neighbors = new ConcurrentHashMap<>();
   private final Map<String, Long> lastUpdated = new ConcurrentHashMap<>();
+  private final Map<String, TimerWheel.Timeout> deadTimers = new ConcurrentHashMap<>();
+  // Guards a neighbor's last update time together with its dead timer, so an update cannot slip
+  // in between reading the time and declaring the neighbor dead
+  private final Object livenessLock = new Object();
+  private final IntMap<Link> links = new IntMap<>();
 
+  private final String localAddress;
   private final int updatePeriod;
+  private final Clock clock;
+  private final TimerWheel timers;
+  private final Consumer<String> deadNeighborListener;
+
+  /** What is known about the other end of the link to a neighbor. */
+  private static final class Link {
+    private volatile int updatePeriod;
+    private volatile long binaryAccepted = NEVER;
+    private volatile long binaryReceived = NEVER;
+    private volatile boolean ttlSupported;
+  }
 
   /**
    * Creates a new TopologyManager with the specified update period.
    *
-   * @param updatePeriod The update period in seconds
+   * @param localAddress The address of the router the neighbors belong to
+   * @param updatePeriod The default update period in seconds
+   * @param clock The clock timestamps are taken from
+   * @param timers The timer wheel running the dead-interval timers
+   * @param deadNeighborListener Called with the address of each neighbor found dead
    */
-  public TopologyManager(int updatePeriod) {
+  public TopologyManager(
+      String localAddress,
+      int updatePeriod,
+      Clock clock,
+      TimerWheel timers,
+      Consumer<String> deadNeighborListener) {
+    this.localAddress = localAddress;
     this.updatePeriod = updatePeriod;
+    this.clock = clock;
+    this.timers = timers;
+    this.deadNeighborListener = deadNeighborListener;
   }
 
   /**
@@ -34,29 +81,264 @@ public class TopologyManager {
    * @return true if the neighbor was added, false if it already existed
    */
   public boolean addNeighbor(String neighborIp, int weight) {
-    Integer oldWeight = neighbors.put(neighborIp, weight);
-    lastUpdated.put(neighborIp, System.currentTimeMillis());
+    return addNeighbor(neighborIp, weight, updatePeriod);
+  }
+
+  /**
+   * Add a neighbor with the specified link weight and update period.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @param weight The link weight
+   * @param neighborUpdatePeriod The period of updates on the link, in seconds
+   * @return true if the neighbor was added or its weight or period changed
+   */
+  public boolean addNeighbor(String neighborIp, int weight, int neighborUpdatePeriod) {
+    int address = Ipv4.parse(neighborIp);
+    int oldPeriod;
+    Integer oldWeight;
+    synchronized (livenessLock) {
+      Link link = links.computeIfAbsent(address, ignored -> new Link());
+      oldPeriod = link.updatePeriod;
+      link.updatePeriod = neighborUpdatePeriod;
+      oldWeight = neighbors.put(neighborIp, weight);
+      lastUpdated.put(neighborIp, clock.millis());
+      armDeadTimer(neighborIp);
+    }
 
     if (oldWeight == null) {
-      logger.info("Added neighbor {} with weight {}", neighborIp, weight);
+      logger.info(
+          "Added neighbor {} with weight {} and update period {}s",
+          neighborIp,
+          weight,
+          neighborUpdatePeriod);
+      NeighborStateEvent.emit(localAddress, neighborIp, NeighborStateEvent.UP, weight);
       return true;
     } else if (oldWeight != weight) {
       logger.info("Updated neighbor {} weight from {} to {}", neighborIp, oldWeight, weight);
       return true;
+    } else if (oldPeriod != 0 && oldPeriod != neighborUpdatePeriod) {
+      logger.info(
+          "Updated neighbor {} update period from {}s to {}s",
+          neighborIp,
+          oldPeriod,
+          neighborUpdatePeriod);
+      return true;
     }
     return false;
   }
 
+  /**
+   * Get the period of updates on the link to a neighbor.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @return The update period in seconds
+   */
+  public int getUpdatePeriod(String neighborIp) {
+    Link link = linkOf(neighborIp);
+    return link != null ? link.updatePeriod : updatePeriod;
+  }
+
+  /**
+   * Find the link to a neighbor.
+   *
+   * @param neighborIp The neighbor's IP address, which may come from a received message
+   * @return The link, or null if the address is not a configured neighbor
+   */
+  private Link linkOf(String neighborIp) {
+    if (neighborIp == null) {
+      return null;
+    }
+    try {
+      return links.get(Ipv4.parse(neighborIp));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
   /**
    * Records that an update was received from a neighbor. This updates the timestamp for that
-   * neighbor.
+   * neighbor, and brings it back to life if it was dead.
    *
    * @param neighborIp The neighbor's IP address
    */
   public void recordNeighborUpdate(String neighborIp) {
-    if (neighbors.containsKey(neighborIp)) {
-      lastUpdated.put(neighborIp, System.currentTimeMillis());
+    synchronized (livenessLock) {
+      // replace() only touches neighbors that are still present, so a concurrent removal
+      // cannot be undone by a late update
+      if (lastUpdated.replace(neighborIp, clock.millis()) == null
+          || deadTimers.containsKey(neighborIp)) {
+        return;
+      }
+      armDeadTimer(neighborIp);
     }
+    logger.info("Neighbor {} is alive again", neighborIp);
+    NeighborStateEvent.emit(
+        localAddress, neighborIp, NeighborStateEvent.UP, neighbors.getOrDefault(neighborIp, 0));
+  }
+
+  /**
+   * Check whether an address is a configured neighbor, alive or not.
+   *
+   * @param address The address
+   * @return true if the address is a neighbor
+   */
+  public boolean isNeighbor(int address) {
+    return links.get(address) != null;
+  }
+
+  /**
+   * Check whether a neighbor has been heard from within the dead interval.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @return true if the neighbor is configured and not dead
+   */
+  public boolean isAlive(String neighborIp) {
+    return deadTimers.containsKey(neighborIp);
+  }
+
+  private long deadIntervalMillis(String neighborIp) {
+    return getUpdatePeriod(neighborIp) * DEAD_INTERVAL_PERIODS * 1000L;
+  }
+
+  private void armDeadTimer(String neighborIp) {
+    deadTimers.computeIfAbsent(
+        neighborIp, ip -> timers.schedule(deadIntervalMillis(ip), () -> checkNeighbor(ip)));
+  }
+
+  /**
+   * Declare a neighbor dead if its dead interval has passed, or wait for the rest of it.
+   *
+   * @param neighborIp The neighbor's IP address
+   */
+  private void checkNeighbor(String neighborIp) {
+    synchronized (livenessLock) {
+      // A timer cancelled after it fired finds the neighbor removed, or a newer timer in its place
+      TimerWheel.Timeout deadTimer = deadTimers.get(neighborIp);
+      if (deadTimer == null || deadTimer.isPending()) {
+        return;
+      }
+
+      long remaining =
+          lastUpdated.get(neighborIp) + deadIntervalMillis(neighborIp) - clock.millis();
+      if (remaining > 0) {
+        deadTimers.put(neighborIp, timers.schedule(remaining, () -> checkNeighbor(neighborIp)));
+        return;
+      }
+      deadTimers.remove(neighborIp);
+    }
+
+    // The neighbor may come back as a different version, so wait for its next hello
+    Link link = linkOf(neighborIp);
+    if (link != null) {
+      link.ttlSupported = false;
+    }
+    logger.info("Detected stale neighbor: {}", neighborIp);
+    NeighborStateEvent.emit(
+        localAddress, neighborIp, NeighborStateEvent.STALE, neighbors.getOrDefault(neighborIp, 0));
+    deadNeighborListener.accept(neighborIp);
+  }
+
+  /**
+   * Records that a neighbor announced it accepts the binary encoding.
+   *
+   * @param neighborIp The neighbor's IP address
+   */
+  public void recordBinaryAccepted(String neighborIp) {
+    Link link = linkOf(neighborIp);
+    if (link != null) {
+      link.binaryAccepted = clock.millis();
+    }
+  }
+
+  /**
+   * Records that a binary encoded message was received from a neighbor. A neighbor only sends
+   * binary once it knows we accept it, and always accepts binary itself.
+   *
+   * @param neighborIp The neighbor's IP address
+   */
+  public void recordBinaryReceived(String neighborIp) {
+    Link link = linkOf(neighborIp);
+    if (link != null) {
+      long now = clock.millis();
+      link.binaryAccepted = now;
+      link.binaryReceived = now;
+    }
+  }
+
+  /**
+   * Check whether a neighbor has recently shown that it accepts the binary encoding. Neighbors that
+   * stop doing so, e.g. after a downgrade, fall back to JSON.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @return true if binary messages can be sent to the neighbor
+   */
+  public boolean acceptsBinary(String neighborIp) {
+    Link link = linkOf(neighborIp);
+    return link != null && isRecent(link, link.binaryAccepted);
+  }
+
+  /**
+   * Check whether a neighbor has recently shown that it accepts the binary encoding.
+   *
+   * @param neighbor The neighbor's address
+   * @return true if binary messages can be sent to the neighbor
+   */
+  public boolean acceptsBinary(int neighbor) {
+    Link link = links.get(neighbor);
+    return link != null && isRecent(link, link.binaryAccepted);
+  }
+
+  /**
+   * Check whether a neighbor has recently sent us binary messages, i.e. already knows that we
+   * accept them.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @return true if the neighbor is sending binary messages
+   */
+  public boolean sendsBinary(String neighborIp) {
+    Link link = linkOf(neighborIp);
+    return link != null && isRecent(link, link.binaryReceived);
+  }
+
+  /**
+   * Records whether a neighbor announced in its hello that it understands hop limits.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @param supported true if the hello listed the hop limit feature
+   */
+  public void recordTtlSupport(String neighborIp, boolean supported) {
+    Link link = linkOf(neighborIp);
+    if (link != null) {
+      link.ttlSupported = supported;
+    }
+  }
+
+  /**
+   * Check whether messages carrying a hop limit can be sent to a neighbor. Older peers reject
+   * messages with fields they do not know, so the hop limit is only sent to neighbors that
+   * announced support for it.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @return true if the neighbor understands hop limits
+   */
+  public boolean supportsTtl(String neighborIp) {
+    Link link = linkOf(neighborIp);
+    return link != null && link.ttlSupported;
+  }
+
+  /**
+   * Check whether messages carrying a hop limit can be sent to a neighbor.
+   *
+   * @param neighbor The neighbor's address
+   * @return true if the neighbor understands hop limits
+   */
+  public boolean supportsTtl(int neighbor) {
+    Link link = links.get(neighbor);
+    return link != null && link.ttlSupported;
+  }
+
+  private boolean isRecent(Link link, long timestamp) {
+    return timestamp != NEVER && clock.millis() - timestamp <= link.updatePeriod * 2 * 1000L;
   }
 
   /**
@@ -66,10 +348,21 @@ public class TopologyManager {
    * @return true if the neighbor was removed, false if it didn't exist
    */
   public boolean removeNeighbor(String neighborIp) {
-    Integer weight = neighbors.remove(neighborIp);
+    Integer weight;
+    synchronized (livenessLock) {
+      weight = neighbors.remove(neighborIp);
+      if (weight != null) {
+        lastUpdated.remove(neighborIp);
+        links.remove(Ipv4.parse(neighborIp));
+        TimerWheel.Timeout deadTimer = deadTimers.remove(neighborIp);
+        if (deadTimer != null) {
+          deadTimer.cancel();
+        }
+      }
+    }
     if (weight != null) {
-      lastUpdated.remove(neighborIp);
       logger.info("Removed neighbor {}", neighborIp);
+      NeighborStateEvent.emit(localAddress, neighborIp, NeighborStateEvent.DOWN, weight);
       return true;
     }
     return false;
@@ -93,27 +386,4 @@ public class TopologyManager {
   public Set<String> getAllNeighbors() {
     return neighbors.keySet();
   }
-
-  /**
-   * Finds neighbors that haven't been updated within the timeout period.
-   *
-   * @return A list of IPs of neighbors considered stale
-   */
-  public List<String> findStaleNeighbors() {
-    long timeout = updatePeriod * 4 * 1000L;
-    long now = System.currentTimeMillis();
-    List<String> staleNeighbors = new ArrayList<>();
-
-    for (Map.Entry<String, Long> entry : lastUpdated.entrySet()) {
-      String neighborIp = entry.getKey();
-      long lastUpdate = entry.getValue();
-
-      if (now - lastUpdate > timeout) {
-        staleNeighbors.add(neighborIp);
-        logger.info("Detected stale neighbor: {}", neighborIp);
-      }
-    }
-
-    return staleNeighbors;
-  }
 }
@@ -0,0 +1,399 @@
+package com.redes.udprip.codec;
+
+import com.redes.udprip.model.DataMessage;
+import com.redes.udprip.model.HelloMessage;
+import com.redes.udprip.model.HopLimitedMessage;
+import com.redes.udprip.model.Ipv4;
+import com.redes.udprip.model.Message;
+import com.redes.udprip.model.TraceMessage;
+import com.redes.udprip.model.UpdateMessage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary encoding of UDPRIP messages. Every message starts with a type tag byte and a flags
+ * byte, followed by the 4-byte source and destination addresses. Data and trace messages with the
+ * hop limit flag set carry it in the next byte. Then:
+ *
+ * <ul>
+ *   <li>data: varint payload length, UTF-8 payload
+ *   <li>update: varint route count, then per route a 4-byte destination, a prefix length byte if
+ *       the prefixes flag is set, and a varint distance
+ *   <li>trace: 2-byte router count, then 4 bytes per router
+ *   <li>hello: a bitmask of accepted encodings and supported features
+ * </ul>
+ *
+ * <p>Type tags never collide with the first byte of a JSON message, so both encodings can share a
+ * socket.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+  private static final byte TAG_DATA = 1;
+  private static final byte TAG_UPDATE = 2;
+  private static final byte TAG_TRACE = 3;
+  private static final byte TAG_HELLO = 4;
+
+  private static final int HEADER_SIZE = 10;
+  private static final int SOURCE_OFFSET = 2;
+  private static final int DESTINATION_OFFSET = 6;
+  private static final int MAX_VARINT_SIZE = 5;
+  private static final int MAX_TRACE_HOPS = 0xFFFF;
+  private static final int MAX_TTL = 0xFF;
+
+  private static final byte FLAG_PREFIXES = 1;
+  private static final byte FLAG_TTL = 2;
+  private static final byte SUPPORTED_FLAGS = FLAG_PREFIXES | FLAG_TTL;
+
+  private static final byte ACCEPTS_JSON = 1;
+  private static final byte ACCEPTS_BINARY = 2;
+  private static final byte SUPPORTS_TTL = 4;
+
+  /**
+   * Check whether a datagram is binary encoded.
+   *
+   * @param data The buffer holding the datagram
+   * @param offset The offset of the datagram in the buffer
+   * @param length The length of the datagram
+   * @return true if the datagram starts with a binary type tag
+   */
+  public static boolean isBinary(byte[] data, int offset, int length) {
+    return length > 0 && data[offset] >= TAG_DATA && data[offset] <= TAG_HELLO;
+  }
+
+  @Override
+  public byte[] encode(Message message) throws IOException {
+    try {
+      if (message instanceof DataMessage dataMessage) {
+        return encodeData(dataMessage);
+      } else if (message instanceof UpdateMessage updateMessage) {
+        return encodeUpdate(updateMessage);
+      } else if (message instanceof TraceMessage traceMessage) {
+        return encodeTrace(traceMessage);
+      } else if (message instanceof HelloMessage helloMessage) {
+        return encodeHello(helloMessage);
+      }
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Cannot encode " + message.getType() + " message: " + e.getMessage());
+    }
+    throw new IOException("Unknown message type: " + message.getType());
+  }
+
+  @Override
+  public List<byte[]> encodeUpdate(UpdateMessage message, int maxLength) throws IOException {
+    Map<String, Integer> distances =
+        message.getDistances() != null ? message.getDistances() : Map.of();
+    // A part carries prefix lengths for all its routes if any of them is not a host route
+    boolean hostRoutesOnly =
+        distances.keySet().stream().allMatch(destination -> destination.indexOf('/') < 0);
+    int addressSize = hostRoutesOnly ? 4 : 5;
+    List<Map<String, Integer>> groups =
+        UpdateSplitter.split(
+            distances,
+            maxLength - HEADER_SIZE - MAX_VARINT_SIZE,
+            (destination, distance) -> addressSize + varintLength(distance));
+
+    List<byte[]> parts = new ArrayList<>(groups.size());
+    for (Map<String, Integer> group : groups) {
+      parts.add(encode(new UpdateMessage(message.getSource(), message.getDestination(), group)));
+    }
+    return parts;
+  }
+
+  private byte[] encodeData(DataMessage message) {
+    byte[] payload =
+        message.getPayload() != null
+            ? message.getPayload().getBytes(StandardCharsets.UTF_8)
+            : new byte[0];
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 1 + MAX_VARINT_SIZE + payload.length);
+    writeHeader(buffer, TAG_DATA, message.getTtl() != null ? FLAG_TTL : 0, message);
+    writeTtl(buffer, message);
+    writeVarint(buffer, payload.length);
+    buffer.put(payload);
+    return toArray(buffer);
+  }
+
+  private byte[] encodeUpdate(UpdateMessage message) {
+    Map<String, Integer> distances =
+        message.getDistances() != null ? message.getDistances() : Map.of();
+    // Prefix lengths are only sent when needed, so host-route updates stay readable by peers
+    // that predate CIDR support
+    long[] prefixes = new long[distances.size()];
+    boolean hostRoutesOnly = true;
+    int i = 0;
+    for (String destination : distances.keySet()) {
+      prefixes[i] = Ipv4.parsePrefix(destination);
+      hostRoutesOnly &= Ipv4.prefixLength(prefixes[i]) == Ipv4.MAX_PREFIX_LENGTH;
+      i++;
+    }
+
+    ByteBuffer buffer =
+        ByteBuffer.allocate(
+            HEADER_SIZE + MAX_VARINT_SIZE + distances.size() * (5 + MAX_VARINT_SIZE));
+    writeHeader(buffer, TAG_UPDATE, hostRoutesOnly ? 0 : FLAG_PREFIXES, message);
+    writeVarint(buffer, distances.size());
+    i = 0;
+    for (int distance : distances.values()) {
+      buffer.putInt(Ipv4.prefixAddress(prefixes[i]));
+      if (!hostRoutesOnly) {
+        buffer.put((byte) Ipv4.prefixLength(prefixes[i]));
+      }
+      writeVarint(buffer, distance);
+      i++;
+    }
+    return toArray(buffer);
+  }
+
+  private byte[] encodeTrace(TraceMessage message) {
+    List<String> routers = message.getRouters() != null ? message.getRouters() : List.of();
+    if (routers.size() > MAX_TRACE_HOPS) {
+      throw new IllegalArgumentException("too many trace hops");
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 1 + 2 + routers.size() * 4);
+    writeHeader(buffer, TAG_TRACE, message.getTtl() != null ? FLAG_TTL : 0, message);
+    writeTtl(buffer, message);
+    buffer.putShort((short) routers.size());
+    for (String router : routers) {
+      buffer.putInt(Ipv4.parse(router));
+    }
+    return toArray(buffer);
+  }
+
+  private byte[] encodeHello(HelloMessage message) {
+    byte accepted = 0;
+    if (message.acceptsEncoding(HelloMessage.ENCODING_JSON)) {
+      accepted |= ACCEPTS_JSON;
+    }
+    if (message.acceptsEncoding(HelloMessage.ENCODING_BINARY)) {
+      accepted |= ACCEPTS_BINARY;
+    }
+    if (message.supportsFeature(HelloMessage.FEATURE_TTL)) {
+      accepted |= SUPPORTS_TTL;
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 1);
+    writeHeader(buffer, TAG_HELLO, message);
+    buffer.put(accepted);
+    return toArray(buffer);
+  }
+
+  @Override
+  public Message decode(byte[] data, int offset, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+    try {
+      byte tag = readHeaderTag(buffer);
+      String source = Ipv4.format(buffer.getInt());
+      String destination = Ipv4.format(buffer.getInt());
+      boolean hopLimited = tag == TAG_DATA || tag == TAG_TRACE;
+      Integer ttl = hopLimited && (data[offset + 1] & FLAG_TTL) != 0 ? buffer.get() & 0xFF : null;
+
+      switch (tag) {
+        case TAG_DATA:
+          {
+            byte[] payload = new byte[readCount(buffer, readVarint(buffer), 1)];
+            buffer.get(payload);
+            DataMessage message =
+                new DataMessage(source, destination, new String(payload, StandardCharsets.UTF_8));
+            message.setTtl(ttl);
+            return message;
+          }
+        case TAG_UPDATE:
+          {
+            boolean hasPrefixes = (data[offset + 1] & FLAG_PREFIXES) != 0;
+            int count = readCount(buffer, readVarint(buffer), hasPrefixes ? 6 : 5);
+            Map<String, Integer> distances = new HashMap<>(count * 4 / 3 + 1);
+            for (int i = 0; i < count; i++) {
+              int address = buffer.getInt();
+              int prefixLength = hasPrefixes ? buffer.get() & 0xFF : Ipv4.MAX_PREFIX_LENGTH;
+              if (prefixLength > Ipv4.MAX_PREFIX_LENGTH) {
+                throw new IOException("Prefix length out of range: " + prefixLength);
+              }
+              distances.put(
+                  Ipv4.formatPrefix(Ipv4.prefix(address, prefixLength)), readVarint(buffer));
+            }
+            return new UpdateMessage(source, destination, distances);
+          }
+        case TAG_TRACE:
+          {
+            int count = readCount(buffer, Short.toUnsignedInt(buffer.getShort()), 4);
+            List<String> routers = new ArrayList<>(count + 1);
+            for (int i = 0; i < count; i++) {
+              routers.add(Ipv4.format(buffer.getInt()));
+            }
+            TraceMessage message = new TraceMessage();
+            message.setSource(source);
+            message.setDestination(destination);
+            message.setRouters(routers);
+            message.setTtl(ttl);
+            return message;
+          }
+        default:
+          {
+            byte accepted = buffer.get();
+            List<String> encodings = new ArrayList<>(2);
+            if ((accepted & ACCEPTS_JSON) != 0) {
+              encodings.add(HelloMessage.ENCODING_JSON);
+            }
+            if ((accepted & ACCEPTS_BINARY) != 0) {
+              encodings.add(HelloMessage.ENCODING_BINARY);
+            }
+            List<String> features =
+                (accepted & SUPPORTS_TTL) != 0 ? List.of(HelloMessage.FEATURE_TTL) : List.of();
+            return new HelloMessage(source, destination, encodings, features);
+          }
+      }
+    } catch (BufferUnderflowException e) {
+      throw new EOFException("Truncated binary message");
+    }
+  }
+
+  @Override
+  public MessageHeader peek(byte[] data, int offset, int length) throws IOException {
+    if (length < HEADER_SIZE) {
+      throw new EOFException("Truncated binary message");
+    }
+    byte tag = readHeaderTag(ByteBuffer.wrap(data, offset, length));
+    String source = Ipv4.format(readInt(data, offset + SOURCE_OFFSET));
+    String destination = Ipv4.format(readInt(data, offset + DESTINATION_OFFSET));
+    boolean hasTtl = (tag == TAG_DATA || tag == TAG_TRACE) && (data[offset + 1] & FLAG_TTL) != 0;
+    if (hasTtl && length < HEADER_SIZE + 1) {
+      throw new EOFException("Truncated binary message");
+    }
+    int ttl = hasTtl ? data[offset + HEADER_SIZE] & 0xFF : -1;
+    int ttlOffset = hasTtl ? offset + HEADER_SIZE : -1;
+
+    switch (tag) {
+      case TAG_DATA:
+        return new MessageHeader("data", source, destination, -1, true, ttl, ttlOffset, 1);
+      case TAG_UPDATE:
+        return new MessageHeader("update", source, destination, -1, true);
+      case TAG_TRACE:
+        int countOffset = offset + HEADER_SIZE + (hasTtl ? 1 : 0);
+        if (countOffset + 2 > offset + length) {
+          throw new EOFException("Truncated binary message");
+        }
+        boolean empty = data[countOffset] == 0 && data[countOffset + 1] == 0;
+        return new MessageHeader(
+            "trace", source, destination, offset + length, empty, ttl, ttlOffset, 1);
+      default:
+        return new MessageHeader("hello", source, destination, -1, true);
+    }
+  }
+
+  @Override
+  public byte[] relay(
+      byte[] data, int offset, int length, MessageHeader header, String hop, int ttl)
+      throws IOException {
+    boolean appendHop = hop != null && header.getHopsEnd() >= 0;
+    byte[] result = Arrays.copyOfRange(data, offset, offset + length + (appendHop ? 4 : 0));
+    if (header.getTtlOffset() >= 0) {
+      if (ttl < 0 || ttl > MAX_TTL) {
+        throw new IOException("Hop limit out of range: " + ttl);
+      }
+      result[header.getTtlOffset() - offset] = (byte) ttl;
+    }
+
+    if (appendHop) {
+      int countOffset = HEADER_SIZE + (header.getTtlOffset() >= 0 ? 1 : 0);
+      int count = ((result[countOffset] & 0xFF) << 8) | (result[countOffset + 1] & 0xFF);
+      if (count == MAX_TRACE_HOPS) {
+        throw new IOException("Trace message has too many hops");
+      }
+      result[countOffset] = (byte) ((count + 1) >>> 8);
+      result[countOffset + 1] = (byte) (count + 1);
+      int address = Ipv4.parse(hop);
+      for (int i = 0; i < 4; i++) {
+        result[length + i] = (byte) (address >>> (24 - 8 * i));
+      }
+    }
+    return result;
+  }
+
+  private static void writeHeader(ByteBuffer buffer, byte tag, Message message) {
+    writeHeader(buffer, tag, (byte) 0, message);
+  }
+
+  private static void writeHeader(ByteBuffer buffer, byte tag, byte flags, Message message) {
+    buffer.put(tag);
+    buffer.put(flags);
+    buffer.putInt(Ipv4.parse(message.getSource()));
+    buffer.putInt(Ipv4.parse(message.getDestination()));
+  }
+
+  private static void writeTtl(ByteBuffer buffer, HopLimitedMessage message) {
+    Integer ttl = message.getTtl();
+    if (ttl != null) {
+      if (ttl < 0 || ttl > MAX_TTL) {
+        throw new IllegalArgumentException("hop limit out of range " + ttl);
+      }
+      buffer.put((byte) (int) ttl);
+    }
+  }
+
+  private static byte readHeaderTag(ByteBuffer buffer) throws IOException {
+    byte tag = buffer.get();
+    byte flags = buffer.get();
+    if (tag < TAG_DATA || tag > TAG_HELLO) {
+      throw new IOException("Unknown binary message tag: " + tag);
+    }
+    if ((flags & ~SUPPORTED_FLAGS) != 0) {
+      throw new IOException("Unsupported binary message flags: " + flags);
+    }
+    return tag;
+  }
+
+  private static int readInt(byte[] data, int offset) {
+    return ((data[offset] & 0xFF) << 24)
+        | ((data[offset + 1] & 0xFF) << 16)
+        | ((data[offset + 2] & 0xFF) << 8)
+        | (data[offset + 3] & 0xFF);
+  }
+
+  private static void writeVarint(ByteBuffer buffer, int value) {
+    if (value < 0) {
+      throw new IllegalArgumentException("negative varint " + value);
+    }
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static int varintLength(int value) {
+    return value < 0 ? MAX_VARINT_SIZE : (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+  }
+
+  private static int readVarint(ByteBuffer buffer) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        if (value < 0) {
+          throw new IOException("Varint out of range");
+        }
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  /** Validate a decoded element count against the bytes left, before allocating for it. */
+  private static int readCount(ByteBuffer buffer, int count, int minElementSize)
+      throws IOException {
+    if (count > buffer.remaining() / minElementSize) {
+      throw new EOFException("Truncated binary message");
+    }
+    return count;
+  }
+
+  private static byte[] toArray(ByteBuffer buffer) {
+    return Arrays.copyOf(buffer.array(), buffer.position());
+  }
+}
@@ -0,0 +1,228 @@
+package com.redes.udprip.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.redes.udprip.model.HopLimitedMessage;
+import com.redes.udprip.model.Message;
+import com.redes.udprip.model.UpdateMessage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/** Encodes and decodes UDPRIP messages in their JSON wire format. */
+public class JsonMessageCodec implements MessageCodec {
+  /** The largest hop limit, which is what a relay to a binary-speaking neighbor can carry. */
+  private static final int MAX_TTL = 0xFF;
+
+  private final ObjectMapper objectMapper =
+      new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+  private final ObjectReader messageReader = objectMapper.readerFor(Message.class);
+  private final JsonFactory jsonFactory = objectMapper.getFactory();
+
+  @Override
+  public byte[] encode(Message message) throws IOException {
+    return objectMapper.writeValueAsBytes(message);
+  }
+
+  @Override
+  public List<byte[]> encodeUpdate(UpdateMessage message, int maxLength) throws IOException {
+    Map<String, Integer> distances =
+        message.getDistances() != null ? message.getDistances() : Map.of();
+    UpdateMessage part = new UpdateMessage(message.getSource(), message.getDestination(), Map.of());
+    int overhead = encode(part).length;
+
+    // Each route takes "destination":distance plus a separating comma
+    List<Map<String, Integer>> groups =
+        UpdateSplitter.split(
+            distances,
+            maxLength - overhead,
+            (destination, distance) -> destination.length() + 4 + decimalLength(distance));
+
+    List<byte[]> parts = new ArrayList<>(groups.size());
+    for (Map<String, Integer> group : groups) {
+      part.setDistances(group);
+      parts.add(encode(part));
+    }
+    return parts;
+  }
+
+  private static int decimalLength(int value) {
+    int length = value < 0 ? 2 : 1;
+    for (long magnitude = Math.abs((long) value); magnitude >= 10; magnitude /= 10) {
+      length++;
+    }
+    return length;
+  }
+
+  /**
+   * Encode a message as a JSON string.
+   *
+   * @param message The message to encode
+   * @return The JSON text
+   * @throws IOException If the message cannot be serialized
+   */
+  public String encodeAsString(Message message) throws IOException {
+    return objectMapper.writeValueAsString(message);
+  }
+
+  @Override
+  public Message decode(byte[] data, int offset, int length) throws IOException {
+    Message message;
+    try {
+      message = messageReader.readValue(data, offset, length);
+    } catch (JsonParseException e) {
+      throw endsEarly(e, length) ? truncated(e) : e;
+    } catch (JsonMappingException e) {
+      // Running out of input inside a nested value surfaces wrapped in a mapping error
+      if (e.getCause() instanceof JsonParseException cause && endsEarly(cause, length)) {
+        throw truncated(cause);
+      }
+      throw e;
+    }
+
+    if (message instanceof HopLimitedMessage hopLimited
+        && hopLimited.getTtl() != null
+        && hopLimited.getTtl() > MAX_TTL) {
+      throw new IOException("Hop limit out of range: " + hopLimited.getTtl());
+    }
+    return message;
+  }
+
+  /**
+   * Whether a parse error was caused by the input running out rather than by malformed JSON. Input
+   * ending between two object entries is reported as a plain parse error at the end of the input.
+   *
+   * @param e The parse error
+   * @param length The length of the input
+   * @return true if the message was cut off
+   */
+  private static boolean endsEarly(JsonParseException e, int length) {
+    return e instanceof JsonEOFException
+        || (e.getLocation() != null && e.getLocation().getByteOffset() >= length);
+  }
+
+  private static EOFException truncated(JsonParseException cause) {
+    EOFException e = new EOFException("Truncated JSON message: " + cause.getOriginalMessage());
+    e.initCause(cause);
+    return e;
+  }
+
+  @Override
+  public MessageHeader peek(byte[] data, int offset, int length) throws IOException {
+    String type = null;
+    String source = null;
+    String destination = null;
+    int hopsEnd = -1;
+    boolean hopsEmpty = true;
+    int ttl = -1;
+    int ttlOffset = -1;
+    int ttlLength = 0;
+
+    try (JsonParser parser = jsonFactory.createParser(data, offset, length)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new JsonParseException(parser, "Message is not a JSON object");
+      }
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.currentName();
+        // Stop before a data payload, so it is never read
+        if (field.equals("payload") && type != null && source != null && destination != null) {
+          break;
+        }
+        JsonToken value = parser.nextToken();
+
+        switch (field) {
+          case "type":
+            type = parser.getValueAsString();
+            break;
+          case "source":
+            source = parser.getValueAsString();
+            break;
+          case "destination":
+            destination = parser.getValueAsString();
+            break;
+          case "ttl":
+            if (value == JsonToken.VALUE_NUMBER_INT) {
+              ttl = Math.max(0, parser.getIntValue());
+              if (ttl > MAX_TTL) {
+                throw new JsonParseException(parser, "Hop limit out of range: " + ttl);
+              }
+              ttlOffset = offset + (int) parser.currentTokenLocation().getByteOffset();
+              ttlLength = parser.getTextLength();
+            }
+            break;
+          case "routers":
+            if (value == JsonToken.START_ARRAY) {
+              while (parser.nextToken() != JsonToken.END_ARRAY) {
+                hopsEmpty = false;
+                parser.skipChildren();
+              }
+              hopsEnd = offset + (int) parser.currentTokenLocation().getByteOffset();
+            }
+            break;
+          default:
+            parser.skipChildren();
+        }
+
+        // Stop as soon as everything needed has been seen. Trace messages are read to the end,
+        // since the hop limit may follow the router list, and data messages stop at their payload
+        if (type != null
+            && source != null
+            && destination != null
+            && !type.equals("trace")
+            && !type.equals("data")) {
+          break;
+        }
+      }
+    } catch (JsonParseException e) {
+      throw endsEarly(e, length) ? truncated(e) : e;
+    }
+
+    return new MessageHeader(
+        type, source, destination, hopsEnd, hopsEmpty, ttl, ttlOffset, ttlLength);
+  }
+
+  @Override
+  public byte[] relay(
+      byte[] data, int offset, int length, MessageHeader header, String hop, int ttl)
+      throws IOException {
+    byte[] result;
+    int ttlStart = header.getTtlOffset() - offset;
+    if (hop != null && header.getHopsEnd() >= 0) {
+      byte[] hopBytes =
+          ((header.isHopsEmpty() ? "\"" : ",\"") + hop + "\"").getBytes(StandardCharsets.UTF_8);
+      int head = header.getHopsEnd() - offset;
+      result = new byte[length + hopBytes.length];
+      System.arraycopy(data, offset, result, 0, head);
+      System.arraycopy(hopBytes, 0, result, head, hopBytes.length);
+      System.arraycopy(data, offset + head, result, head + hopBytes.length, length - head);
+      if (ttlStart >= head) {
+        ttlStart += hopBytes.length;
+      }
+    } else {
+      result = Arrays.copyOfRange(data, offset, offset + length);
+    }
+
+    if (header.getTtlOffset() >= 0) {
+      // A shorter number is padded with spaces, which JSON allows between tokens
+      byte[] digits = Integer.toString(ttl).getBytes(StandardCharsets.US_ASCII);
+      if (ttl < 0 || digits.length > header.getTtlLength()) {
+        throw new IOException("Hop limit " + ttl + " does not fit the message");
+      }
+      System.arraycopy(digits, 0, result, ttlStart, digits.length);
+      Arrays.fill(result, ttlStart + digits.length, ttlStart + header.getTtlLength(), (byte) ' ');
+    }
+    return result;
+  }
+}
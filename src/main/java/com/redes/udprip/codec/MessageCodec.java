@@ -0,0 +1,71 @@
+package com.redes.udprip.codec;
+
+import com.redes.udprip.model.Message;
+import com.redes.udprip.model.UpdateMessage;
+import java.io.IOException;
+import java.util.List;
+
+/** A wire encoding of UDPRIP messages. */
+public interface MessageCodec {
+  /**
+   * Encode a message.
+   *
+   * @param message The message to encode
+   * @return The encoded message
+   * @throws IOException If the message cannot be encoded
+   */
+  byte[] encode(Message message) throws IOException;
+
+  /**
+   * Encode an update message, split into as many update messages as needed for each to fit in a
+   * datagram of the given size. Every part is a valid update on its own.
+   *
+   * @param message The message to encode
+   * @param maxLength The maximum length of each encoded part
+   * @return The encoded parts, at least one
+   * @throws IOException If the message cannot be encoded
+   */
+  List<byte[]> encodeUpdate(UpdateMessage message, int maxLength) throws IOException;
+
+  /**
+   * Decode a message straight into its concrete type.
+   *
+   * @param data The buffer holding the message
+   * @param offset The offset of the message in the buffer
+   * @param length The length of the message
+   * @return The decoded message
+   * @throws IOException If the message is malformed or of an unknown type; an {@link
+   *     java.io.EOFException} if the datagram ends before the message does
+   */
+  Message decode(byte[] data, int offset, int length) throws IOException;
+
+  /**
+   * Read the type, source, destination and hop limit of a message, and for trace messages where a
+   * new hop goes, without decoding the rest of it. A hop limit is only found ahead of the payload
+   * or router list, where this codec writes it.
+   *
+   * @param data The buffer holding the message
+   * @param offset The offset of the message in the buffer
+   * @param length The length of the message
+   * @return The message header
+   * @throws IOException If the message is malformed; an {@link java.io.EOFException} if the
+   *     datagram ends before the header does
+   */
+  MessageHeader peek(byte[] data, int offset, int length) throws IOException;
+
+  /**
+   * Copy an encoded data or trace message to be relayed, lowering its hop limit and appending a
+   * router to its hop list, without decoding it.
+   *
+   * @param data The buffer holding the message
+   * @param offset The offset of the message in the buffer
+   * @param length The length of the message
+   * @param header The header returned by {@link #peek}
+   * @param hop The router address to append to a trace message, or null to append none
+   * @param ttl The new hop limit, no greater than the current one; ignored if the message has none
+   * @return The new encoded message
+   * @throws IOException If the message cannot be rewritten
+   */
+  byte[] relay(byte[] data, int offset, int length, MessageHeader header, String hop, int ttl)
+      throws IOException;
+}
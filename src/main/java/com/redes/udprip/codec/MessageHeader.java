@@ -0,0 +1,77 @@
+package com.redes.udprip.codec;
+
+/**
+ * The routing-relevant fields of a message, read without decoding the rest of it. Used by the
+ * transit fast path to relay a datagram without rebuilding the full message.
+ */
+public class MessageHeader {
+  private final String type;
+  private final String source;
+  private final String destination;
+  private final int hopsEnd;
+  private final boolean hopsEmpty;
+  private final int ttl;
+  private final int ttlOffset;
+  private final int ttlLength;
+
+  public MessageHeader(
+      String type, String source, String destination, int hopsEnd, boolean hopsEmpty) {
+    this(type, source, destination, hopsEnd, hopsEmpty, -1, -1, 0);
+  }
+
+  public MessageHeader(
+      String type,
+      String source,
+      String destination,
+      int hopsEnd,
+      boolean hopsEmpty,
+      int ttl,
+      int ttlOffset,
+      int ttlLength) {
+    this.type = type;
+    this.source = source;
+    this.destination = destination;
+    this.hopsEnd = hopsEnd;
+    this.hopsEmpty = hopsEmpty;
+    this.ttl = ttl;
+    this.ttlOffset = ttlOffset;
+    this.ttlLength = ttlLength;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public String getDestination() {
+    return destination;
+  }
+
+  /** Get the offset at which a new trace hop is inserted, or -1 if the message has no hops. */
+  public int getHopsEnd() {
+    return hopsEnd;
+  }
+
+  /** Whether the trace hop list is currently empty. */
+  public boolean isHopsEmpty() {
+    return hopsEmpty;
+  }
+
+  /** Get the hop limit of a data or trace message, or -1 if it has none. */
+  public int getTtl() {
+    return ttl;
+  }
+
+  /** Get the offset at which the hop limit is stored, or -1 if the message has none. */
+  public int getTtlOffset() {
+    return ttlOffset;
+  }
+
+  /** Get the number of bytes the hop limit takes up. */
+  public int getTtlLength() {
+    return ttlLength;
+  }
+}
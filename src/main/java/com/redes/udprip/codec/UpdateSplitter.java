@@ -0,0 +1,51 @@
+package com.redes.udprip.codec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntBiFunction;
+
+/** Splits the routes of an update into groups whose encodings fit a size budget. */
+final class UpdateSplitter {
+  private UpdateSplitter() {}
+
+  /**
+   * Split routes greedily into groups.
+   *
+   * @param distances The routes to split
+   * @param budget The number of bytes available for routes in each group
+   * @param routeSize The encoded size of a route, given its destination and distance
+   * @return The groups, at least one even when there are no routes
+   * @throws IOException If a single route does not fit the budget
+   */
+  static List<Map<String, Integer>> split(
+      Map<String, Integer> distances, int budget, ToIntBiFunction<String, Integer> routeSize)
+      throws IOException {
+    List<Map<String, Integer>> groups = new ArrayList<>();
+    Map<String, Integer> group = new HashMap<>();
+    int used = 0;
+
+    for (Map.Entry<String, Integer> entry : distances.entrySet()) {
+      int size = routeSize.applyAsInt(entry.getKey(), entry.getValue());
+      if (size > budget) {
+        throw new IOException("Route to " + entry.getKey() + " does not fit in a datagram");
+      }
+      if (used + size > budget) {
+        groups.add(group);
+        group = new HashMap<>();
+        used = 0;
+      }
+      group.put(entry.getKey(), entry.getValue());
+      used += size;
+    }
+
+    if (groups.isEmpty()) {
+      // Everything fits, so the routes need not be copied
+      return List.of(distances);
+    }
+    groups.add(group);
+    return groups;
+  }
+}
@@ -1,18 +1,35 @@
 package com.redes.udprip.infra;
 
 import com.redes.udprip.app.Router;
+import java.util.Arrays;
+import java.util.Map;
 import java.util.Scanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Handles command-line interface input. */
+/**
+ * Handles command-line interface input. When one process hosts several routers, each command is
+ * prefixed with the address of the router it is for, e.g. {@code 127.0.1.1 add 127.0.1.2 1}.
+ */
 public class CliHandler {
   private static final Logger logger = LoggerFactory.getLogger(CliHandler.class);
 
   private final Router router;
+  private final Map<String, Router> routers;
 
   public CliHandler(Router router) {
     this.router = router;
+    this.routers = Map.of();
+  }
+
+  /**
+   * Create a handler for the routers hosted by one process.
+   *
+   * @param routers The routers, by address
+   */
+  public CliHandler(Map<String, Router> routers) {
+    this.router = null;
+    this.routers = routers;
   }
 
   /** Start the CLI handler. */
@@ -35,7 +52,11 @@ public class CliHandler {
         String[] parts = line.split("\\s+");
         if (parts.length > 0) {
           try {
-            handleCommand(parts);
+            if (router != null) {
+              handleCommand(router, parts);
+            } else {
+              dispatchCommand(parts);
+            }
           } catch (Exception e) {
             logger.error("Error executing command: {}", e.getMessage(), e);
           }
@@ -44,30 +65,60 @@ public class CliHandler {
     }
   }
 
+  /**
+   * Pass a command to the hosted router named by its first argument.
+   *
+   * @param args The router address followed by the command arguments
+   */
+  private void dispatchCommand(String[] args) {
+    Router target = routers.get(args[0]);
+    if (target == null) {
+      logger.warn("No router hosted at {}", args[0]);
+      return;
+    }
+    if (args.length > 1) {
+      handleCommand(target, Arrays.copyOfRange(args, 1, args.length));
+    }
+  }
+
   /**
    * Handle a command from the CLI.
    *
+   * @param router The router the command is for
    * @param args The command arguments
    */
-  private void handleCommand(String[] args) {
+  private void handleCommand(Router router, String[] args) {
     String command = args[0].toLowerCase();
 
     switch (command) {
       case "add":
-        if (args.length != 3) {
+        if (args.length != 3 && args.length != 4) {
           return;
         }
         String addIp = args[1];
         int weight;
+        int period = 0;
         try {
           weight = Integer.parseInt(args[2]);
           if (weight <= 0) {
             return;
           }
+          if (args.length == 4) {
+            period = Integer.parseInt(args[3]);
+            if (period <= 0 || addIp.contains("/")) {
+              return;
+            }
+          }
         } catch (NumberFormatException e) {
           return;
         }
-        router.addNeighbor(addIp, weight);
+        if (addIp.contains("/")) {
+          router.addPrefix(addIp, weight);
+        } else if (period > 0) {
+          router.addNeighbor(addIp, weight, period);
+        } else {
+          router.addNeighbor(addIp, weight);
+        }
         break;
 
       case "del":
@@ -75,7 +126,11 @@ public class CliHandler {
           return;
         }
         String delIp = args[1];
-        router.removeNeighbor(delIp);
+        if (delIp.contains("/")) {
+          router.removePrefix(delIp);
+        } else {
+          router.removeNeighbor(delIp);
+        }
         break;
 
       case "trace":
@@ -86,6 +141,10 @@ public class CliHandler {
         router.sendTrace(traceIp);
         break;
 
+      case "stats":
+        System.out.print(router.getMetrics().report());
+        break;
+
       default:
     }
   }
@@ -0,0 +1,15 @@
+package com.redes.udprip.infra;
+
+/** Receives the datagrams a transport delivers to one router. */
+@FunctionalInterface
+public interface DatagramHandler {
+  /**
+   * Handle a received datagram.
+   *
+   * @param data The buffer holding the datagram
+   * @param offset The offset of the datagram in the buffer
+   * @param length The length of the datagram
+   * @param sender The address the datagram was received from
+   */
+  void handle(byte[] data, int offset, int length, int sender);
+}
@@ -0,0 +1,116 @@
+package com.redes.udprip.infra;
+
+import com.redes.udprip.model.Ipv4;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory stand-in for the UDP network between routers running in the same JVM. Each router
+ * attaches with its address and a handler for the datagrams sent to it, and gets a {@link
+ * Transport} to send its own. Sent datagrams are copied and handed to the receiver through an
+ * executor, which decides when and on which thread they arrive.
+ *
+ * <p>Links between pairs of routers can be taken down. Datagrams sent over a link that is down, or
+ * to an address nobody attached to, are lost without notice, as on a real network.
+ */
+public class InMemoryNetwork {
+  private final Executor delivery;
+  private final Map<String, DatagramHandler> receivers = new ConcurrentHashMap<>();
+  private final Set<String> downLinks = ConcurrentHashMap.newKeySet();
+  private final LongAdder lostDatagrams = new LongAdder();
+
+  /**
+   * Create a network.
+   *
+   * @param delivery Runs the delivery of each sent datagram to its receiver
+   */
+  public InMemoryNetwork(Executor delivery) {
+    this.delivery = delivery;
+  }
+
+  /**
+   * Attach a router to the network.
+   *
+   * @param address The router's IP address
+   * @param receiver Handles the datagrams sent to the address
+   * @return The transport the router sends with
+   * @throws IllegalArgumentException If the address is not an IPv4 address or is already attached
+   */
+  public Transport attach(String address, DatagramHandler receiver) {
+    if (receivers.putIfAbsent(address, receiver) != null) {
+      throw new IllegalArgumentException("address already attached: " + address);
+    }
+    return new Endpoint(address, receiver);
+  }
+
+  /**
+   * Take a link down or bring it back up. Links are up unless taken down.
+   *
+   * @param first The address at one end of the link
+   * @param second The address at the other end
+   * @param up Whether datagrams pass over the link
+   */
+  public void setLinkUp(String first, String second, boolean up) {
+    if (up) {
+      downLinks.remove(linkKey(first, second));
+    } else {
+      downLinks.add(linkKey(first, second));
+    }
+  }
+
+  /**
+   * Check whether a link is up.
+   *
+   * @param first The address at one end of the link
+   * @param second The address at the other end
+   * @return true unless the link was taken down
+   */
+  public boolean isLinkUp(String first, String second) {
+    return !downLinks.contains(linkKey(first, second));
+  }
+
+  /** Get the number of datagrams lost on links that were down or to unknown addresses. */
+  public long getLostDatagrams() {
+    return lostDatagrams.sum();
+  }
+
+  private static String linkKey(String first, String second) {
+    return first.compareTo(second) < 0 ? first + " " + second : second + " " + first;
+  }
+
+  /** The transport of one attached router. */
+  private final class Endpoint implements Transport {
+    private final String address;
+    private final int sender;
+    private final DatagramHandler receiver;
+
+    private Endpoint(String address, DatagramHandler receiver) {
+      this.address = address;
+      this.sender = Ipv4.parse(address);
+      this.receiver = receiver;
+    }
+
+    @Override
+    public void sendBytes(String destinationIp, byte[] data, int offset, int length) {
+      DatagramHandler destination = receivers.get(destinationIp);
+      if (destination == null || downLinks.contains(linkKey(address, destinationIp))) {
+        lostDatagrams.increment();
+        return;
+      }
+
+      // The sender may reuse its buffer once this returns
+      byte[] copy = Arrays.copyOfRange(data, offset, offset + length);
+      delivery.execute(() -> destination.handle(copy, 0, copy.length, sender));
+    }
+
+    /** Detach the router; datagrams sent to it from now on are lost. */
+    @Override
+    public void close() {
+      receivers.remove(address, receiver);
+    }
+  }
+}
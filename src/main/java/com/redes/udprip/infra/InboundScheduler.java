@@ -0,0 +1,326 @@
+package com.redes.udprip.infra;
+
+import com.redes.udprip.app.Router;
+import com.redes.udprip.app.RouterOptions;
+import com.redes.udprip.codec.MessageHeader;
+import com.redes.udprip.metrics.DropReason;
+import com.redes.udprip.model.IntMap;
+import com.redes.udprip.model.Ipv4;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Schedules received datagrams for handling so that a flood of data traffic cannot starve the
+ * control plane. Receiver threads only classify each datagram and queue it; handler threads take
+ * them from two bounded queues, one for control messages (updates and hellos) and one for data and
+ * trace messages.
+ *
+ * <p>A scheduler serves either one router or, in a process hosting many, every router {@link
+ * #attach attached} to it, so the routers share one pool of handler threads instead of each
+ * starting its own.
+ *
+ * <p>Every handler thread has its own pair of queues, and messages are assigned to a handler by the
+ * router and the address they were received from. The distance vector locks each stripe of
+ * destinations on its own, so several updates can be applied at once, but handlers taking from one
+ * shared queue could then apply two updates from the same neighbor out of order and leave an older
+ * distance in place. With a handler per neighbor, updates from different neighbors are handled in
+ * parallel while those from one neighbor are still handled in the order they arrived.
+ *
+ * <p>Control messages are served first. With a control weight of 0 the priority is strict; with a
+ * weight of {@code n}, one data message is let through after every {@code n} control messages while
+ * both queues are busy, so data keeps moving during an update storm.
+ *
+ * <p>Data messages can also be rate limited per neighbor with a token bucket, so a single
+ * misbehaving neighbor cannot fill the data queue. Buckets are keyed by the address a datagram came
+ * from, not by the source in its header, which the sender can set to anything. Only configured
+ * neighbors get a bucket of their own and every other sender shares one, so the buckets stay
+ * bounded; a removed neighbor falls back to the shared bucket, and its own is dropped the next time
+ * a bucket is created. Messages that exceed their rate or find their queue full are dropped and
+ * counted in the router's metrics.
+ */
+public class InboundScheduler {
+  private static final Logger logger = LoggerFactory.getLogger(InboundScheduler.class);
+
+  private final int controlWeight;
+  private final double dataRate;
+  private final int dataBurst;
+  private final Handler[] handlers;
+  private final List<Inlet> inlets = new CopyOnWriteArrayList<>();
+  private final Inlet inlet;
+  private final List<Thread> threads = new ArrayList<>();
+  private volatile boolean running = true;
+
+  /** A received datagram and its header, waiting to be handled by a router. */
+  private record Packet(Router router, byte[] data, MessageHeader header) {}
+
+  /** The queues of one handler thread. */
+  private static final class Handler {
+    private final BlockingQueue<Packet> controlQueue;
+    private final BlockingQueue<Packet> dataQueue;
+    // One permit per queued packet, so the handler always finds a packet after taking a permit
+    private final Semaphore pending = new Semaphore(0);
+
+    private Handler(int capacity) {
+      this.controlQueue = new ArrayBlockingQueue<>(capacity);
+      this.dataQueue = new ArrayBlockingQueue<>(capacity);
+    }
+  }
+
+  /**
+   * Create a scheduler using the ingress settings of the router's options.
+   *
+   * @param router The router that handles the messages
+   */
+  public InboundScheduler(Router router) {
+    this(router, router.getOptions());
+  }
+
+  /**
+   * Create a scheduler for one router.
+   *
+   * @param router The router that handles the messages
+   * @param options The handler count, ingress queue capacity, control weight and data rate limit
+   */
+  public InboundScheduler(Router router, RouterOptions options) {
+    this(options, router);
+  }
+
+  /**
+   * Create a scheduler shared by the routers later attached to it.
+   *
+   * @param options The handler count, ingress queue capacity, control weight and data rate limit
+   */
+  public InboundScheduler(RouterOptions options) {
+    this(options, null);
+  }
+
+  private InboundScheduler(RouterOptions options, Router router) {
+    this.controlWeight = options.getControlWeight();
+    this.dataRate = options.getDataRate();
+    this.dataBurst = options.getDataBurst();
+    this.handlers = new Handler[options.getHandlerThreads()];
+    for (int i = 0; i < handlers.length; i++) {
+      handlers[i] = new Handler(options.getIngressCapacity());
+    }
+    this.inlet = router == null ? null : new Inlet(router, 0);
+    if (inlet != null) {
+      inlets.add(inlet);
+    }
+  }
+
+  /**
+   * Attach a router to a shared scheduler, whose threads then handle the router's datagrams.
+   *
+   * @param router The router that handles the messages
+   * @return The handler the router's transport passes received datagrams to
+   */
+  public synchronized DatagramHandler attach(Router router) {
+    Inlet attached = new Inlet(router, inlets.size());
+    inlets.add(attached);
+    return attached;
+  }
+
+  /** Start the handler threads. */
+  public synchronized void start() {
+    for (int i = 0; i < handlers.length; i++) {
+      Handler handler = handlers[i];
+      Thread thread = new Thread(() -> handleLoop(handler), "udp-handler-" + i);
+      thread.setDaemon(true);
+      threads.add(thread);
+      thread.start();
+    }
+  }
+
+  /**
+   * Classify a datagram received by the scheduler's router and queue it for handling, or drop it.
+   *
+   * @param data The buffer holding the received datagram
+   * @param offset The offset of the datagram in the buffer
+   * @param length The length of the datagram
+   * @param sender The address the datagram was received from
+   * @throws IllegalStateException If the scheduler is shared by attached routers
+   */
+  public void submit(byte[] data, int offset, int length, int sender) {
+    if (inlet == null) {
+      throw new IllegalStateException("shared scheduler, submit through an attached router");
+    }
+    inlet.handle(data, offset, length, sender);
+  }
+
+  private Handler handlerFor(int key) {
+    if (handlers.length == 1) {
+      return handlers[0];
+    }
+    return handlers[Math.floorMod(key, handlers.length)];
+  }
+
+  private static boolean isControl(MessageHeader header) {
+    String type = header.getType();
+    return "update".equals(type) || "hello".equals(type);
+  }
+
+  /**
+   * Take packets from a handler's queues and hand them to the router until stopped.
+   *
+   * @param handler The queues of the calling handler thread
+   */
+  private void handleLoop(Handler handler) {
+    BlockingQueue<Packet> controlQueue = handler.controlQueue;
+    BlockingQueue<Packet> dataQueue = handler.dataQueue;
+    int controlRun = 0;
+    while (running) {
+      try {
+        if (!handler.pending.tryAcquire(1, TimeUnit.SECONDS)) {
+          continue;
+        }
+      } catch (InterruptedException e) {
+        break;
+      }
+
+      Packet packet = null;
+      if (controlWeight == 0 || controlRun < controlWeight) {
+        packet = controlQueue.poll();
+      }
+      if (packet == null) {
+        packet = dataQueue.poll();
+      }
+      if (packet == null) {
+        // The data queue was empty after all, so take the control message that was passed over
+        packet = controlQueue.poll();
+      }
+      controlRun = isControl(packet.header()) ? controlRun + 1 : 0;
+
+      packet.router().handleMessage(packet.data(), 0, packet.data().length, packet.header());
+    }
+  }
+
+  /** Get the number of control messages dropped because the control queue was full. */
+  public long getDroppedControl() {
+    return dropCount(DropReason.CONTROL_QUEUE_FULL);
+  }
+
+  /** Get the number of data messages dropped because the data queue was full. */
+  public long getDroppedData() {
+    return dropCount(DropReason.DATA_QUEUE_FULL);
+  }
+
+  /** Get the number of data messages dropped because their sender exceeded its rate. */
+  public long getRateLimitedData() {
+    return dropCount(DropReason.RATE_LIMITED);
+  }
+
+  private long dropCount(DropReason reason) {
+    long count = 0;
+    for (Inlet attached : inlets) {
+      count += attached.router.getMetrics().getDropCount(reason);
+    }
+    return count;
+  }
+
+  /** Stop the handler threads. Queued packets are discarded. */
+  public synchronized void stop() {
+    running = false;
+    threads.forEach(Thread::interrupt);
+    for (Handler handler : handlers) {
+      handler.controlQueue.clear();
+      handler.dataQueue.clear();
+    }
+  }
+
+  /** The entry point of one router's datagrams, holding its rate limits. */
+  private final class Inlet implements DatagramHandler {
+    private final Router router;
+    // Spreads the neighbors of different routers over the handlers
+    private final int salt;
+    private final IntMap<TokenBucket> buckets = new IntMap<>();
+    private final TokenBucket otherSenders = new TokenBucket(dataRate, dataBurst);
+
+    private Inlet(Router router, int index) {
+      this.router = router;
+      this.salt = index * 0x9E3779B9;
+    }
+
+    @Override
+    public void handle(byte[] data, int offset, int length, int sender) {
+      MessageHeader header;
+      try {
+        header = router.peekHeader(data, offset, length, sender);
+      } catch (IOException e) {
+        logger.debug("Dropped malformed datagram: {}", e.getMessage());
+        return;
+      }
+
+      boolean control = isControl(header);
+      if (!control && dataRate > 0 && !bucketFor(sender).tryAcquire()) {
+        router.getMetrics().recordDrop(DropReason.RATE_LIMITED);
+        logger.debug("Rate limited data from {}", Ipv4.format(sender));
+        return;
+      }
+
+      // The receive buffer is reused, so the queued packet needs its own copy
+      byte[] copy = new byte[length];
+      System.arraycopy(data, offset, copy, 0, length);
+      Handler handler = handlerFor(salt ^ sender);
+      Packet packet = new Packet(router, copy, header);
+      if (!(control ? handler.controlQueue : handler.dataQueue).offer(packet)) {
+        router
+            .getMetrics()
+            .recordDrop(control ? DropReason.CONTROL_QUEUE_FULL : DropReason.DATA_QUEUE_FULL);
+        logger.debug("Ingress queue full, dropped {} message", header.getType());
+        return;
+      }
+      handler.pending.release();
+    }
+
+    private TokenBucket bucketFor(int sender) {
+      if (!router.isNeighbor(sender)) {
+        return otherSenders;
+      }
+      TokenBucket bucket = buckets.get(sender);
+      if (bucket != null) {
+        return bucket;
+      }
+
+      buckets.forEach(
+          (address, stale) -> {
+            if (!router.isNeighbor(address)) {
+              buckets.remove(address);
+            }
+          });
+      return buckets.computeIfAbsent(sender, address -> new TokenBucket(dataRate, dataBurst));
+    }
+  }
+
+  /** Token bucket allowing a sustained rate of messages with bursts up to a fixed size. */
+  private static final class TokenBucket {
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    private TokenBucket(double ratePerSecond, int burst) {
+      this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+      this.burst = burst;
+      this.tokens = burst;
+    }
+
+    synchronized boolean tryAcquire() {
+      long now = System.nanoTime();
+      tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+      lastRefill = now;
+      if (tokens < 1) {
+        return false;
+      }
+      tokens--;
+      return true;
+    }
+  }
+}
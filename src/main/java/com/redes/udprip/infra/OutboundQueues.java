@@ -0,0 +1,300 @@
+package com.redes.udprip.infra;
+
+import com.redes.udprip.metrics.DropReason;
+import com.redes.udprip.metrics.RouterMetrics;
+import com.redes.udprip.model.IntMap;
+import com.redes.udprip.model.Ipv4;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per-neighbor outbound queues in front of a {@link Transport}, so that routing work never waits
+ * for a send. Each neighbor's queue is drained by a sender task on an executor, one task per
+ * neighbor at a time.
+ *
+ * <p>Updates are not queued as messages. A neighbor only has a flag saying that an update is due,
+ * and the update is built when the sender gets to it, so however many were requested in the
+ * meantime only the newest state is sent. A due update always goes out before queued data.
+ *
+ * <p>Control messages, such as hellos, go out before anything else and are never dropped to make
+ * room for data. Data messages are queued in order up to a fixed capacity per neighbor. When a
+ * neighbor's queue is full, new data messages to it are dropped (tail drop) and counted.
+ *
+ * <p>A neighbor's queue exists from {@link #add} until {@link #remove}. Traffic to a neighbor
+ * without a queue is dropped, so a send racing the neighbor's removal cannot bring the queue back.
+ *
+ * <p>The time from an update being requested until it is sent is recorded as the update fan-out
+ * time, which includes the wait for the sender and the time taken to build the update.
+ *
+ * <p>Queues are keyed by the neighbor's address as an int, so queueing a forwarded message neither
+ * formats nor hashes an address string.
+ */
+public class OutboundQueues {
+  private static final Logger logger = LoggerFactory.getLogger(OutboundQueues.class);
+
+  /** Maximum number of data messages a sender task sends before yielding to other neighbors. */
+  private static final int DRAIN_BATCH = 64;
+
+  private static final int UPDATE_DUE = 1;
+  private static final int FULL_REFRESH = 2;
+  private static final int SEND_EMPTY = 4;
+
+  /** Builds the update for a neighbor when it is about to be sent. */
+  @FunctionalInterface
+  public interface UpdateSource {
+    /**
+     * Build the update for a neighbor.
+     *
+     * @param neighborIp The neighbor's IP address
+     * @param fullRefresh Whether the full table was requested
+     * @param sendEmpty Whether the update is sent even if no route changed
+     * @return The datagrams to send, possibly none
+     */
+    List<byte[]> buildUpdate(String neighborIp, boolean fullRefresh, boolean sendEmpty);
+  }
+
+  private final Transport transport;
+  private final UpdateSource updateSource;
+  private final int capacity;
+  private final Executor executor;
+  private final RouterMetrics metrics;
+  private final IntMap<NeighborQueue> queues = new IntMap<>();
+
+  /** The pending traffic to one neighbor. Guarded by its own lock. */
+  private static final class NeighborQueue {
+    private final String neighborIp;
+    private final ArrayDeque<byte[]> control = new ArrayDeque<>();
+    private final ArrayDeque<byte[]> data = new ArrayDeque<>();
+    private int updateFlags;
+    private long updateRequestedNanos;
+    private boolean draining;
+
+    private NeighborQueue(int neighbor) {
+      this.neighborIp = Ipv4.format(neighbor);
+    }
+  }
+
+  /**
+   * Create the queues.
+   *
+   * @param transport Sends the datagrams
+   * @param updateSource Builds updates when they are sent
+   * @param capacity The maximum number of data messages queued per neighbor
+   * @param executor Runs the sender tasks
+   */
+  public OutboundQueues(
+      Transport transport, UpdateSource updateSource, int capacity, Executor executor) {
+    this(transport, updateSource, capacity, executor, new RouterMetrics());
+  }
+
+  /**
+   * Create queues that record drops and update fan-out times in a router's metrics.
+   *
+   * @param transport Sends the datagrams
+   * @param updateSource Builds updates when they are sent
+   * @param capacity The maximum number of data messages queued per neighbor
+   * @param executor Runs the sender tasks
+   * @param metrics The metrics to record in
+   */
+  public OutboundQueues(
+      Transport transport,
+      UpdateSource updateSource,
+      int capacity,
+      Executor executor,
+      RouterMetrics metrics) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("capacity must be at least 1");
+    }
+    this.transport = transport;
+    this.updateSource = updateSource;
+    this.capacity = capacity;
+    this.executor = executor;
+    this.metrics = metrics;
+  }
+
+  /**
+   * Create the queue of a neighbor. Does nothing if it already has one.
+   *
+   * @param neighborIp The neighbor's IP address
+   */
+  public void add(String neighborIp) {
+    queues.computeIfAbsent(Ipv4.parse(neighborIp), NeighborQueue::new);
+  }
+
+  /**
+   * Request an update to a neighbor. Requests made before the update is sent are merged into it.
+   * Does nothing if the neighbor has no queue.
+   *
+   * @param neighborIp The neighbor's IP address
+   * @param fullRefresh Whether to send the full table
+   * @param sendEmpty Whether to send the update even if no route changed
+   */
+  public void requestUpdate(String neighborIp, boolean fullRefresh, boolean sendEmpty) {
+    NeighborQueue queue = queues.get(Ipv4.parse(neighborIp));
+    if (queue == null) {
+      logger.debug("No outbound queue to {}, update not requested", neighborIp);
+      return;
+    }
+    boolean startDrain;
+    synchronized (queue) {
+      if (queue.updateFlags == 0) {
+        queue.updateRequestedNanos = System.nanoTime();
+      }
+      queue.updateFlags |=
+          UPDATE_DUE | (fullRefresh ? FULL_REFRESH : 0) | (sendEmpty ? SEND_EMPTY : 0);
+      startDrain = startDraining(queue);
+    }
+    if (startDrain) {
+      executor.execute(() -> drain(queue));
+    }
+  }
+
+  /**
+   * Queue a control message to a neighbor, ahead of any update or data.
+   *
+   * @param neighbor The neighbor's address
+   * @param datagram The encoded message; must not be modified afterwards
+   * @return true if the message was queued, false if the neighbor has no queue
+   */
+  public boolean sendControl(int neighbor, byte[] datagram) {
+    NeighborQueue queue = queues.get(neighbor);
+    if (queue == null) {
+      return false;
+    }
+    boolean startDrain;
+    synchronized (queue) {
+      queue.control.add(datagram);
+      startDrain = startDraining(queue);
+    }
+    if (startDrain) {
+      executor.execute(() -> drain(queue));
+    }
+    return true;
+  }
+
+  /**
+   * Queue a data message to a neighbor, or drop it if the neighbor's queue is full or the neighbor
+   * has no queue, as when it was removed after the next hop was looked up.
+   *
+   * @param neighbor The neighbor's address
+   * @param datagram The encoded message; must not be modified afterwards
+   * @return true if the message was queued, false if it was dropped
+   */
+  public boolean sendData(int neighbor, byte[] datagram) {
+    NeighborQueue queue = queues.get(neighbor);
+    if (queue == null) {
+      metrics.recordDrop(DropReason.NO_ROUTE);
+      logger.debug(
+          "No outbound queue to {}, dropped {} bytes", Ipv4.format(neighbor), datagram.length);
+      return false;
+    }
+    boolean startDrain;
+    synchronized (queue) {
+      if (queue.data.size() >= capacity) {
+        metrics.recordDrop(DropReason.OUTBOUND_QUEUE_FULL);
+        logger.debug(
+            "Outbound queue to {} is full, dropped {} bytes", queue.neighborIp, datagram.length);
+        return false;
+      }
+      queue.data.add(datagram);
+      startDrain = startDraining(queue);
+    }
+    if (startDrain) {
+      executor.execute(() -> drain(queue));
+    }
+    return true;
+  }
+
+  /**
+   * Discard everything queued for a neighbor.
+   *
+   * @param neighborIp The neighbor's IP address
+   */
+  public void remove(String neighborIp) {
+    NeighborQueue queue = queues.remove(Ipv4.parse(neighborIp));
+    if (queue != null) {
+      synchronized (queue) {
+        queue.control.clear();
+        queue.data.clear();
+        queue.updateFlags = 0;
+      }
+    }
+  }
+
+  /** Get the number of data messages dropped because a queue was full. */
+  public long getDroppedData() {
+    return metrics.getDropCount(DropReason.OUTBOUND_QUEUE_FULL);
+  }
+
+  private static boolean startDraining(NeighborQueue queue) {
+    if (queue.draining) {
+      return false;
+    }
+    queue.draining = true;
+    return true;
+  }
+
+  /**
+   * Send a neighbor's control messages and due update, then a batch of its data. If anything is
+   * left, another sender task is submitted, so a busy neighbor does not hold up the others.
+   *
+   * @param queue The neighbor's queue
+   */
+  private void drain(NeighborQueue queue) {
+    byte[][] control;
+    int updateFlags;
+    long updateRequestedNanos;
+    synchronized (queue) {
+      control = queue.control.toArray(new byte[0][]);
+      queue.control.clear();
+      updateFlags = queue.updateFlags;
+      updateRequestedNanos = queue.updateRequestedNanos;
+      queue.updateFlags = 0;
+    }
+
+    for (byte[] datagram : control) {
+      transport.sendBytes(queue.neighborIp, datagram, 0, datagram.length);
+    }
+
+    if (updateFlags != 0) {
+      try {
+        List<byte[]> update =
+            updateSource.buildUpdate(
+                queue.neighborIp,
+                (updateFlags & FULL_REFRESH) != 0,
+                (updateFlags & SEND_EMPTY) != 0);
+        for (byte[] datagram : update) {
+          transport.sendBytes(queue.neighborIp, datagram, 0, datagram.length);
+        }
+        if (!update.isEmpty()) {
+          metrics.recordUpdateFanOut(System.nanoTime() - updateRequestedNanos);
+        }
+      } catch (RuntimeException e) {
+        logger.error("Error sending update to {}: {}", queue.neighborIp, e.getMessage(), e);
+      }
+    }
+
+    for (int i = 0; i < DRAIN_BATCH; i++) {
+      byte[] datagram;
+      synchronized (queue) {
+        datagram = queue.data.poll();
+      }
+      if (datagram == null) {
+        break;
+      }
+      transport.sendBytes(queue.neighborIp, datagram, 0, datagram.length);
+    }
+
+    boolean more;
+    synchronized (queue) {
+      more = !queue.control.isEmpty() || queue.updateFlags != 0 || !queue.data.isEmpty();
+      queue.draining = more;
+    }
+    if (more) {
+      executor.execute(() -> drain(queue));
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package com.redes.udprip.infra;
+
+import java.io.Closeable;
+
+/**
+ * Sends datagrams to other routers. {@link UdpClient} sends them over UDP, as do the endpoints of a
+ * {@link UdpHost}; {@link InMemoryNetwork} hands them to routers running in the same JVM.
+ */
+public interface Transport extends Closeable {
+  /**
+   * Send an already encoded datagram to a destination IP address. Delivery is not guaranteed.
+   *
+   * @param destinationIp The destination IP address
+   * @param data The buffer holding the datagram
+   * @param offset The offset of the datagram in the buffer
+   * @param length The length of the datagram
+   */
+  void sendBytes(String destinationIp, byte[] data, int offset, int length);
+
+  /** Release the transport. */
+  @Override
+  void close();
+}
@@ -1,21 +1,75 @@
 package com.redes.udprip.infra;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** UDP client for sending messages to other routers. */
-public class UdpClient {
+/**
+ * UDP client for sending messages to other routers. A single non-blocking channel is kept open for
+ * the lifetime of the client, neighbor addresses are resolved once and cached, and each sending
+ * thread reuses its own direct buffer, shared by all clients in the process.
+ */
+public class UdpClient implements Transport {
   private static final Logger logger = LoggerFactory.getLogger(UdpClient.class);
+  private static final int MAX_DATAGRAM_SIZE = 65507;
+
+  // A thread sends one datagram at a time, so one buffer per thread serves every client
+  private static final ThreadLocal<ByteBuffer> sendBuffers =
+      ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE));
 
   private final int port;
+  private final DatagramChannel channel;
+  private final Map<String, InetSocketAddress> resolvedAddresses = new ConcurrentHashMap<>();
+
+  public UdpClient(int port) throws IOException {
+    this(port, DatagramChannel.open(StandardProtocolFamily.INET));
+    this.channel.configureBlocking(false);
+  }
 
-  public UdpClient(int port) {
+  /**
+   * Create a client that sends from a router's own address. Receivers tell neighbors apart by the
+   * address datagrams come from, so a router must not send from whatever address the kernel picks
+   * for an unbound socket, which on loopback is 127.0.0.1 for every router.
+   *
+   * @param port The destination port
+   * @param localAddress The address to send from; the local port is chosen by the kernel
+   * @throws IOException If the socket cannot be created or bound
+   */
+  public UdpClient(int port, InetAddress localAddress) throws IOException {
+    this(port, openBound(localAddress));
+  }
+
+  private static DatagramChannel openBound(InetAddress localAddress) throws IOException {
+    DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+    try {
+      channel.configureBlocking(false);
+      channel.bind(new InetSocketAddress(localAddress, 0));
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    return channel;
+  }
+
+  /**
+   * Create a client that sends from a channel opened by the caller, such as one already bound to a
+   * router's address. The channel must be non-blocking.
+   *
+   * @param port The destination port
+   * @param channel The channel to send from
+   */
+  UdpClient(int port, DatagramChannel channel) {
     this.port = port;
+    this.channel = channel;
   }
 
   /**
@@ -25,16 +79,67 @@ public class UdpClient {
    * @param message The message to send
    */
   public void sendMessage(String destinationIp, String message) {
-    try (DatagramSocket socket = new DatagramSocket()) {
-      byte[] data = message.getBytes(StandardCharsets.UTF_8);
+    byte[] data = message.getBytes(StandardCharsets.UTF_8);
+    sendBytes(destinationIp, data, 0, data.length);
+  }
 
-      InetAddress address = InetAddress.getByName(destinationIp);
-      DatagramPacket packet = new DatagramPacket(data, data.length, address, port);
+  @Override
+  public void sendBytes(String destinationIp, byte[] data, int offset, int length) {
+    if (length > MAX_DATAGRAM_SIZE) {
+      logger.error("Message of {} bytes to {} exceeds the datagram limit", length, destinationIp);
+      return;
+    }
 
-      socket.send(packet);
-      logger.debug("Sent {} bytes to {}: {}", data.length, destinationIp, message);
+    InetSocketAddress address = resolve(destinationIp);
+    if (address == null) {
+      return;
+    }
+
+    ByteBuffer buffer = sendBuffers.get();
+    buffer.clear();
+    buffer.put(data, offset, length);
+    buffer.flip();
+
+    try {
+      if (channel.send(buffer, address) == 0) {
+        logger.warn("Send buffer full, dropped {} bytes to {}", length, destinationIp);
+        return;
+      }
+      logger.debug("Sent {} bytes to {}", length, destinationIp);
     } catch (IOException e) {
       logger.error("Error sending message to {}: {}", destinationIp, e.getMessage(), e);
     }
   }
+
+  /**
+   * Resolve a destination IP address, caching the result.
+   *
+   * @param destinationIp The destination IP address
+   * @return The socket address, or null if it cannot be resolved
+   */
+  private InetSocketAddress resolve(String destinationIp) {
+    InetSocketAddress address = resolvedAddresses.get(destinationIp);
+    if (address != null) {
+      return address;
+    }
+
+    try {
+      address = new InetSocketAddress(InetAddress.getByName(destinationIp), port);
+      resolvedAddresses.put(destinationIp, address);
+      return address;
+    } catch (UnknownHostException e) {
+      logger.error("Unable to resolve {}: {}", destinationIp, e.getMessage());
+      return null;
+    }
+  }
+
+  /** Close the underlying channel. */
+  @Override
+  public void close() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      logger.error("Error closing UDP client: {}", e.getMessage(), e);
+    }
+  }
 }
@@ -0,0 +1,222 @@
+package com.redes.udprip.infra;
+
+import com.redes.udprip.model.Ipv4;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves the sockets of many routers in one process. Each router gets an {@link Endpoint} bound to
+ * its own address, and a single thread waits on a selector for datagrams on all of them, so a
+ * router costs a socket rather than a set of receive threads.
+ *
+ * <p>Datagrams are handed to the endpoint's handler on the selector thread, in the order they
+ * arrive. Handlers must not block, since every router in the process waits on them; an {@link
+ * InboundScheduler} shared by the routers only classifies and queues each datagram.
+ */
+public class UdpHost implements Closeable {
+  private static final Logger logger = LoggerFactory.getLogger(UdpHost.class);
+  // Large enough for any UDP datagram
+  private static final int BUFFER_SIZE = 65507;
+  // Datagrams read from one socket before moving on, so a busy router cannot starve the rest
+  private static final int RECEIVE_BATCH = 64;
+
+  private final int port;
+  private final Selector selector;
+  private final Queue<Endpoint> pendingRegistrations = new ConcurrentLinkedQueue<>();
+  private final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+  private volatile boolean running = true;
+  private Thread thread;
+
+  /**
+   * Create a host whose routers all use the same port.
+   *
+   * @param port The port every endpoint binds and sends to
+   * @throws IOException If the selector cannot be opened
+   */
+  public UdpHost(int port) throws IOException {
+    this.port = port;
+    this.selector = Selector.open();
+  }
+
+  /**
+   * Bind a socket for a router. Datagrams received before a handler is set are dropped.
+   *
+   * @param address The router's address
+   * @return The endpoint, which is also the router's transport
+   * @throws IOException If the socket cannot be created or bound
+   */
+  public Endpoint bind(InetAddress address) throws IOException {
+    DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+    try {
+      channel.configureBlocking(false);
+      channel.bind(new InetSocketAddress(address, port));
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+
+    Endpoint endpoint = new Endpoint(address.getHostAddress(), channel);
+    endpoints.add(endpoint);
+    // Channels can only be registered while the selector thread is not blocked in select
+    pendingRegistrations.add(endpoint);
+    selector.wakeup();
+    return endpoint;
+  }
+
+  /** Get the endpoints that have been bound and not closed. */
+  public List<Endpoint> getEndpoints() {
+    return List.copyOf(endpoints);
+  }
+
+  /** Start the selector thread. */
+  public synchronized void start() {
+    if (thread != null) {
+      return;
+    }
+    thread = new Thread(this::selectLoop, "udp-host");
+    thread.setDaemon(true);
+    thread.start();
+    logger.info("UDP host started on port {}", port);
+  }
+
+  /** Wait for datagrams on every endpoint until the host is closed. */
+  private void selectLoop() {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    while (running) {
+      try {
+        selector.select();
+        registerPending();
+
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          if (key.isValid() && key.isReadable()) {
+            receive((Endpoint) key.attachment(), buffer);
+          }
+        }
+      } catch (ClosedSelectorException e) {
+        break;
+      } catch (IOException e) {
+        if (running) {
+          logger.error("Error waiting for datagrams: {}", e.getMessage(), e);
+        }
+      }
+    }
+  }
+
+  private void registerPending() {
+    Endpoint endpoint;
+    while ((endpoint = pendingRegistrations.poll()) != null) {
+      try {
+        endpoint.channel.register(selector, SelectionKey.OP_READ, endpoint);
+      } catch (ClosedChannelException e) {
+        // Closed before it was registered
+      }
+    }
+  }
+
+  /**
+   * Read the datagrams waiting on an endpoint's socket and pass them to its handler.
+   *
+   * @param endpoint The endpoint whose socket is readable
+   * @param buffer The receive buffer of the selector thread
+   */
+  private void receive(Endpoint endpoint, ByteBuffer buffer) {
+    for (int i = 0; i < RECEIVE_BATCH; i++) {
+      SocketAddress sender;
+      buffer.clear();
+      try {
+        sender = endpoint.channel.receive(buffer);
+      } catch (IOException e) {
+        if (endpoint.channel.isOpen()) {
+          logger.error("Error receiving on {}: {}", endpoint.address, e.getMessage(), e);
+        }
+        return;
+      }
+      if (sender == null) {
+        return;
+      }
+
+      DatagramHandler handler = endpoint.handler;
+      if (handler == null) {
+        continue;
+      }
+      try {
+        handler.handle(buffer.array(), 0, buffer.position(), Ipv4.of(sender));
+      } catch (RuntimeException e) {
+        logger.error("Error handling datagram for {}: {}", endpoint.address, e.getMessage(), e);
+      }
+    }
+  }
+
+  /** Stop the selector thread and close every endpoint. */
+  @Override
+  public synchronized void close() {
+    running = false;
+    endpoints.forEach(Endpoint::close);
+    try {
+      selector.close();
+    } catch (IOException e) {
+      logger.error("Error closing selector: {}", e.getMessage(), e);
+    }
+  }
+
+  /** A router's socket on the host. Sends go straight out of the socket the router is bound to. */
+  public final class Endpoint implements Transport {
+    private final String address;
+    private final DatagramChannel channel;
+    private final UdpClient client;
+    private volatile DatagramHandler handler;
+
+    private Endpoint(String address, DatagramChannel channel) {
+      this.address = address;
+      this.channel = channel;
+      this.client = new UdpClient(port, channel);
+    }
+
+    /** Get the address the endpoint is bound to. */
+    public String getAddress() {
+      return address;
+    }
+
+    /**
+     * Set the handler that receives the endpoint's datagrams.
+     *
+     * @param handler The handler, called on the selector thread
+     */
+    public void setHandler(DatagramHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void sendBytes(String destinationIp, byte[] data, int offset, int length) {
+      client.sendBytes(destinationIp, data, offset, length);
+    }
+
+    /** Close the endpoint's socket, which also removes it from the selector. */
+    @Override
+    public void close() {
+      endpoints.remove(this);
+      client.close();
+    }
+  }
+}
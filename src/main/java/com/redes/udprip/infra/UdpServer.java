@@ -1,80 +1,155 @@
 package com.redes.udprip.infra;
 
 import com.redes.udprip.app.Router;
+import com.redes.udprip.model.Ipv4;
 import java.io.IOException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
 import java.net.InetAddress;
-import java.net.SocketException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** UDP server that listens for incoming packets and forwards them to the router. */
-public class UdpServer implements Runnable {
+/**
+ * UDP server that listens for incoming packets and forwards them to the router. When more than one
+ * receiver is requested, each receiver binds its own socket to the same port with SO_REUSEPORT so
+ * the kernel spreads incoming datagrams across the receiver threads.
+ *
+ * <p>Receiver threads do not handle messages themselves. They pass each datagram to an {@link
+ * InboundScheduler}, whose handler threads serve routing updates ahead of data.
+ */
+public class UdpServer {
   private static final Logger logger = LoggerFactory.getLogger(UdpServer.class);
-  private static final int BUFFER_SIZE = 8192;
+  // Large enough for any UDP datagram, so updates from peers that do not split them are never
+  // truncated
+  private static final int BUFFER_SIZE = 65507;
 
   private final InetAddress bindAddress;
   private final int port;
-  private final Router router;
-  private DatagramSocket socket;
+  private final int receiverCount;
+  private final InboundScheduler scheduler;
+  private final List<DatagramChannel> channels = new ArrayList<>();
+  private final List<Thread> threads = new ArrayList<>();
   private volatile boolean running = true;
 
   public UdpServer(InetAddress bindAddress, int port, Router router) {
+    this(bindAddress, port, 1, router);
+  }
+
+  public UdpServer(InetAddress bindAddress, int port, int receiverCount, Router router) {
+    if (receiverCount < 1) {
+      throw new IllegalArgumentException("receiverCount must be at least 1");
+    }
     this.bindAddress = bindAddress;
     this.port = port;
-    this.router = router;
+    this.receiverCount = receiverCount;
+    this.scheduler = new InboundScheduler(router);
+  }
+
+  /** Get the scheduler that queues received datagrams for the router. */
+  public InboundScheduler getScheduler() {
+    return scheduler;
   }
 
-  @Override
-  public void run() {
-    try {
-      // Create and bind the socket
-      socket = new DatagramSocket(port, bindAddress);
-      byte[] buffer = new byte[BUFFER_SIZE];
+  /**
+   * Bind the receive sockets and start one daemon thread per socket, plus the handler threads.
+   *
+   * @throws IOException If a socket cannot be created or bound
+   */
+  public synchronized void start() throws IOException {
+    for (int i = 0; i < receiverCount; i++) {
+      DatagramChannel channel = openChannel();
+      channels.add(channel);
+
+      Thread thread = new Thread(() -> receiveLoop(channel), "udp-receiver-" + i);
+      thread.setDaemon(true);
+      threads.add(thread);
+    }
+
+    scheduler.start();
+    threads.forEach(Thread::start);
+    logger.info(
+        "UDP server listening on {}:{} with {} receiver(s)",
+        bindAddress.getHostAddress(),
+        port,
+        receiverCount);
+  }
 
-      logger.info("UDP server listening on {}:{}", bindAddress.getHostAddress(), port);
+  /**
+   * Open a receive socket bound to the server address.
+   *
+   * @return The bound channel
+   * @throws IOException If the socket cannot be created or bound
+   */
+  private DatagramChannel openChannel() throws IOException {
+    DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+    if (receiverCount > 1) {
+      if (!channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+        channel.close();
+        throw new IOException("SO_REUSEPORT is not supported on this platform");
+      }
+      channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+    }
+    channel.bind(new InetSocketAddress(bindAddress, port));
+    return channel;
+  }
 
-      while (running) {
-        try {
-          // Receive packet
-          DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
-          socket.receive(packet);
+  /**
+   * Receive packets on a channel until the server is stopped.
+   *
+   * @param channel The channel owned by the calling receiver thread
+   */
+  private void receiveLoop(DatagramChannel channel) {
+    ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
 
-          // Extract message
-          String message =
-              new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+    while (running) {
+      try {
+        // Receive packet
+        buffer.clear();
+        SocketAddress sender = channel.receive(buffer);
+        if (sender == null) {
+          continue;
+        }
 
-          // Log source IP and message size
+        // Log source IP and message size
+        if (logger.isDebugEnabled()) {
           logger.debug(
               "Received {} bytes from {}: {}",
-              packet.getLength(),
-              packet.getAddress().getHostAddress(),
-              message);
+              buffer.position(),
+              sender,
+              new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+        }
 
-          // Forward to router
-          router.handleMessage(message);
-        } catch (IOException e) {
-          if (running) {
-            logger.error("Error receiving packet: {}", e.getMessage(), e);
-          }
+        // Queue for the router
+        scheduler.submit(buffer.array(), 0, buffer.position(), Ipv4.of(sender));
+      } catch (ClosedChannelException e) {
+        break;
+      } catch (IOException e) {
+        if (running) {
+          logger.error("Error receiving packet: {}", e.getMessage(), e);
         }
       }
-    } catch (SocketException e) {
-      logger.error("Error creating UDP socket: {}", e.getMessage(), e);
-    } finally {
-      if (socket != null && !socket.isClosed()) {
-        socket.close();
-      }
     }
   }
 
   /** Stop the server. */
-  public void stop() {
+  public synchronized void stop() {
     running = false;
-    if (socket != null && !socket.isClosed()) {
-      socket.close();
+    for (DatagramChannel channel : channels) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        logger.error("Error closing UDP socket: {}", e.getMessage(), e);
+      }
     }
+    threads.forEach(Thread::interrupt);
+    scheduler.stop();
   }
 }
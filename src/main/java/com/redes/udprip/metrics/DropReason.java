@@ -0,0 +1,39 @@
+package com.redes.udprip.metrics;
+
+/** Why a router dropped a datagram. */
+public enum DropReason {
+  /** There was no route to the destination. */
+  NO_ROUTE("no-route"),
+
+  /** The datagram was not a valid message. */
+  PARSE_ERROR("parse-error"),
+
+  /** The datagram ended before the message did. */
+  TRUNCATED("truncated"),
+
+  /** The message's hop limit ran out. */
+  EXPIRED("expired"),
+
+  /** The outbound queue to the next hop was full. */
+  OUTBOUND_QUEUE_FULL("outbound-full"),
+
+  /** The ingress queue for control messages was full. */
+  CONTROL_QUEUE_FULL("control-full"),
+
+  /** The ingress queue for data messages was full. */
+  DATA_QUEUE_FULL("data-full"),
+
+  /** The source sent data faster than its rate limit. */
+  RATE_LIMITED("rate-limited");
+
+  private final String label;
+
+  DropReason(String label) {
+    this.label = label;
+  }
+
+  /** Get the name the reason is reported under. */
+  public String getLabel() {
+    return label;
+  }
+}
@@ -0,0 +1,100 @@
+package com.redes.udprip.metrics;
+
+import com.redes.udprip.model.Ipv4;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for the forwarding decision made for a data or trace message. There is one
+ * per message, so besides the usual threshold the event has a {@code sampling} setting that keeps
+ * about one in N of them.
+ */
+@Name("com.redes.udprip.Forward")
+@Label("Forward")
+@Category({"UDPRIP", "Forwarding"})
+@Description("A data or trace message was forwarded, delivered or dropped")
+@Enabled(false)
+@StackTrace(false)
+public class ForwardEvent extends Event {
+  /** Sent on without being decoded. */
+  public static final String RELAYED = "relayed";
+
+  /** Decoded and encoded again for the next hop. */
+  public static final String REENCODED = "re-encoded";
+
+  /** Sent on after being handled by this router. */
+  public static final String FORWARDED = "forwarded";
+
+  /** Addressed to this router. */
+  public static final String DELIVERED = "delivered";
+
+  /** Dropped because there was no route to the destination. */
+  public static final String NO_ROUTE = "no route";
+
+  /** Dropped because its hop limit ran out. */
+  public static final String EXPIRED = "expired";
+
+  /** Dropped because the outbound queue to the next hop was full. */
+  public static final String QUEUE_FULL = "queue full";
+
+  @Label("Router")
+  String router;
+
+  @Label("Message Type")
+  String type;
+
+  @Label("Source")
+  String source;
+
+  @Label("Destination")
+  String destination;
+
+  @Label("Next Hop")
+  String nextHop;
+
+  @Label("Decision")
+  String decision;
+
+  /** Start timing a forwarding decision. */
+  public static ForwardEvent start() {
+    ForwardEvent event = new ForwardEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Commit the event if it is enabled, took at least its threshold and is sampled.
+   *
+   * @param router The address of the forwarding router
+   * @param type The message type
+   * @param source The message source
+   * @param destination The message destination
+   * @param nextHop The next hop's address, or 0 if there is none
+   * @param decision What was done with the message
+   */
+  public void finish(
+      String router, String type, String source, String destination, int nextHop, String decision) {
+    if (shouldCommit()) {
+      this.router = router;
+      this.type = type;
+      this.source = source;
+      this.destination = destination;
+      this.nextHop = nextHop != 0 ? Ipv4.format(nextHop) : null;
+      this.decision = decision;
+      commit();
+    }
+  }
+
+  @Label("Sampling")
+  @Description("Keep about one event in this many")
+  @SettingDefinition
+  protected boolean sampling(SamplingControl control) {
+    return control.sample();
+  }
+}
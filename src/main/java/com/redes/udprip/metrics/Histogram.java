@@ -0,0 +1,167 @@
+package com.redes.udprip.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of non-negative values, such as latencies in nanoseconds, laid out like an
+ * HdrHistogram. Each power of two is split into 16 equal buckets, so a value is known to within
+ * 1/16 of its size while the whole histogram takes a few kilobytes. Recording takes no lock: it
+ * finds the bucket with a couple of shifts and increments it atomically.
+ */
+public class Histogram {
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // Values from 2^36 up (about 69 seconds in nanoseconds) share the last bucket
+  private static final int MAX_EXPONENT = 36;
+  private static final int BUCKETS = SUB_BUCKETS * (MAX_EXPONENT - SUB_BUCKET_BITS + 1);
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final LongAdder total = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Record a value. Negative values are recorded as 0.
+   *
+   * @param value The value to record
+   */
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts.incrementAndGet(bucketIndex(value));
+    total.add(value);
+
+    long currentMax = max.get();
+    while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+      currentMax = max.get();
+    }
+  }
+
+  private static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    if (exponent >= MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int shift = exponent - SUB_BUCKET_BITS;
+    // value >>> shift is in [SUB_BUCKETS, 2 * SUB_BUCKETS), which picks the sub-bucket
+    return shift * SUB_BUCKETS + (int) (value >>> shift);
+  }
+
+  private static long highestValueIn(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long subBucket = SUB_BUCKETS + index % SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  /**
+   * Take a snapshot of the recorded values. Values recorded while the snapshot is taken may or may
+   * not be included.
+   *
+   * @return The snapshot
+   */
+  public Snapshot snapshot() {
+    long[] bucketCounts = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      bucketCounts[i] = counts.get(i);
+      count += bucketCounts[i];
+    }
+    long maxValue = max.get();
+    return new Snapshot(
+        count,
+        count > 0 ? (double) total.sum() / count : 0,
+        percentile(bucketCounts, count, 50, maxValue),
+        percentile(bucketCounts, count, 90, maxValue),
+        percentile(bucketCounts, count, 99, maxValue),
+        percentile(bucketCounts, count, 99.9, maxValue),
+        maxValue);
+  }
+
+  /**
+   * Find the value below which a percentage of the recorded values fall.
+   *
+   * @param bucketCounts The count of each bucket
+   * @param count The total count
+   * @param percent The percentage
+   * @param maxValue The largest value recorded
+   * @return The highest value of the bucket holding the percentile, or 0 if nothing was recorded
+   */
+  private static long percentile(long[] bucketCounts, long count, double percent, long maxValue) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(count * percent / 100));
+    long seen = 0;
+    for (int i = 0; i < bucketCounts.length; i++) {
+      seen += bucketCounts[i];
+      if (seen >= rank) {
+        return Math.min(highestValueIn(i), maxValue);
+      }
+    }
+    return maxValue;
+  }
+
+  /** The recorded values at one point in time. */
+  public static final class Snapshot {
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    private Snapshot(long count, double mean, long p50, long p90, long p99, long p999, long max) {
+      this.count = count;
+      this.mean = mean;
+      this.p50 = p50;
+      this.p90 = p90;
+      this.p99 = p99;
+      this.p999 = p999;
+      this.max = max;
+    }
+
+    /** Get the number of values recorded. */
+    public long getCount() {
+      return count;
+    }
+
+    /** Get the mean of the recorded values. */
+    public double getMean() {
+      return mean;
+    }
+
+    /** Get the median. */
+    public long getP50() {
+      return p50;
+    }
+
+    /** Get the 90th percentile. */
+    public long getP90() {
+      return p90;
+    }
+
+    /** Get the 99th percentile. */
+    public long getP99() {
+      return p99;
+    }
+
+    /** Get the 99.9th percentile. */
+    public long getP999() {
+      return p999;
+    }
+
+    /** Get the largest value recorded. */
+    public long getMax() {
+      return max;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.redes.udprip.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight recorder event for a neighbor coming up, going stale or being removed. */
+@Name("com.redes.udprip.NeighborState")
+@Label("Neighbor State")
+@Category({"UDPRIP", "Routing"})
+@Description("A neighbor was added or heard from again, went stale, or was removed")
+@Enabled(false)
+@StackTrace(false)
+public class NeighborStateEvent extends Event {
+  /** The neighbor was added, or sent an update after going stale. */
+  public static final String UP = "up";
+
+  /** Nothing was heard from the neighbor within its dead interval. */
+  public static final String STALE = "stale";
+
+  /** The neighbor was removed from the configuration. */
+  public static final String DOWN = "down";
+
+  @Label("Router")
+  String router;
+
+  @Label("Neighbor")
+  String neighbor;
+
+  @Label("State")
+  String state;
+
+  @Label("Link Weight")
+  int weight;
+
+  /**
+   * Record a neighbor state change if the event is enabled.
+   *
+   * @param router The address of the router the neighbor belongs to
+   * @param neighbor The neighbor's address
+   * @param state {@link #UP}, {@link #STALE} or {@link #DOWN}
+   * @param weight The weight of the link to the neighbor
+   */
+  public static void emit(String router, String neighbor, String state, int weight) {
+    NeighborStateEvent event = new NeighborStateEvent();
+    if (event.shouldCommit()) {
+      event.router = router;
+      event.neighbor = neighbor;
+      event.state = state;
+      event.weight = weight;
+      event.commit();
+    }
+  }
+}
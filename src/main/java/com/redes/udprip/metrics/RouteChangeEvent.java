@@ -0,0 +1,80 @@
+package com.redes.udprip.metrics;
+
+import com.redes.udprip.model.Ipv4;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight recorder event for a route being added to, changed in or removed from a routing table. */
+@Name("com.redes.udprip.RouteChange")
+@Label("Route Change")
+@Category({"UDPRIP", "Routing"})
+@Description("A route was added to, changed in or removed from the routing table")
+@Enabled(false)
+@StackTrace(false)
+public class RouteChangeEvent extends Event {
+  public static final String ADD = "add";
+  public static final String UPDATE = "update";
+  public static final String REMOVE = "remove";
+
+  @Label("Router")
+  String router;
+
+  @Label("Change")
+  String change;
+
+  @Label("Destination")
+  String destination;
+
+  @Label("Distance")
+  int distance;
+
+  @Label("Next Hop")
+  String nextHop;
+
+  @Label("Previous Distance")
+  int previousDistance;
+
+  @Label("Previous Next Hop")
+  String previousNextHop;
+
+  /**
+   * Record a route change if the event is enabled. Addresses are only formatted when it is.
+   *
+   * @param router The address of the router whose table changed
+   * @param change {@link #ADD}, {@link #UPDATE} or {@link #REMOVE}
+   * @param destination The destination prefix
+   * @param distance The new distance
+   * @param nextHop The new next hop, or 0 if there is none
+   * @param previousDistance The distance before the change, or 0 for a new route
+   * @param previousNextHop The next hop before the change, or 0 for a new route
+   */
+  public static void emit(
+      int router,
+      String change,
+      long destination,
+      int distance,
+      int nextHop,
+      int previousDistance,
+      int previousNextHop) {
+    RouteChangeEvent event = new RouteChangeEvent();
+    if (event.shouldCommit()) {
+      event.router = Ipv4.format(router);
+      event.change = change;
+      event.destination = Ipv4.formatPrefix(destination);
+      event.distance = distance;
+      event.nextHop = formatHop(nextHop);
+      event.previousDistance = previousDistance;
+      event.previousNextHop = formatHop(previousNextHop);
+      event.commit();
+    }
+  }
+
+  private static String formatHop(int hop) {
+    return hop == 0 ? null : Ipv4.format(hop);
+  }
+}
@@ -0,0 +1,439 @@
+package com.redes.udprip.metrics;
+
+import com.redes.udprip.model.IntMap;
+import com.redes.udprip.model.Ipv4;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms of one router. Counters are {@link LongAdder}s and latencies go
+ * into {@link Histogram}s, so the receive, handler and sender threads record at the same time
+ * without taking a lock, at a cost of a few nanoseconds per count.
+ *
+ * <p>Traffic is counted by message type and by neighbor. A received datagram is only counted for a
+ * neighbor when the neighbor is its source, since a relayed datagram does not say which neighbor
+ * passed it on.
+ */
+public class RouterMetrics implements RouterMetricsMXBean {
+  /** Domain of the JMX names metrics are registered under. */
+  public static final String JMX_DOMAIN = "com.redes.udprip";
+
+  private static final String[] MESSAGE_TYPES = {"data", "update", "trace", "hello", "other"};
+  private static final int OTHER_TYPE = MESSAGE_TYPES.length - 1;
+
+  /** Number of route version samples the change rate is taken over. */
+  private static final int RATE_SAMPLES = 11;
+
+  private final IntSupplier routeCount;
+  private final LongSupplier routeVersion;
+  private final LongAdder[] packetsIn = adders(MESSAGE_TYPES.length);
+  private final LongAdder[] bytesIn = adders(MESSAGE_TYPES.length);
+  private final LongAdder[] packetsOut = adders(MESSAGE_TYPES.length);
+  private final LongAdder[] bytesOut = adders(MESSAGE_TYPES.length);
+  private final LongAdder[] drops = adders(DropReason.values().length);
+  private final IntMap<NeighborTraffic> neighbors = new IntMap<>();
+  private final Histogram parseLatency = new Histogram();
+  private final Histogram handleLatency = new Histogram();
+  private final Histogram updateFanOut = new Histogram();
+  private final long[] sampleTimes = new long[RATE_SAMPLES];
+  private final long[] sampleVersions = new long[RATE_SAMPLES];
+  private int nextSample;
+  private int samples;
+
+  /** The traffic exchanged with one neighbor. */
+  private static final class NeighborTraffic {
+    private final String address;
+    private final LongAdder packetsIn = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder packetsOut = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    private NeighborTraffic(int neighbor) {
+      this.address = Ipv4.format(neighbor);
+    }
+  }
+
+  /** Create metrics without a routing table to report on. */
+  public RouterMetrics() {
+    this(() -> 0, () -> 0);
+  }
+
+  /**
+   * Create the metrics of a router.
+   *
+   * @param routeCount Supplies the number of reachable routes
+   * @param routeVersion Supplies the routing table version, which grows by one per route change
+   */
+  public RouterMetrics(IntSupplier routeCount, LongSupplier routeVersion) {
+    this.routeCount = routeCount;
+    this.routeVersion = routeVersion;
+  }
+
+  private static LongAdder[] adders(int count) {
+    LongAdder[] adders = new LongAdder[count];
+    for (int i = 0; i < count; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  private static int typeIndex(String type) {
+    if (type == null) {
+      return OTHER_TYPE;
+    }
+    switch (type) {
+      case "data":
+        return 0;
+      case "update":
+        return 1;
+      case "trace":
+        return 2;
+      case "hello":
+        return 3;
+      default:
+        return OTHER_TYPE;
+    }
+  }
+
+  /**
+   * Register the metrics with the platform MBean server.
+   *
+   * @param address The router's address, which names the MBean
+   * @throws JMException If the MBean cannot be registered
+   */
+  public void register(String address) throws JMException {
+    ManagementFactory.getPlatformMBeanServer()
+        .registerMBean(this, new ObjectName(JMX_DOMAIN + ":type=Router,address=" + address));
+  }
+
+  /**
+   * Start counting the traffic of a neighbor.
+   *
+   * @param neighborIp The neighbor's IP address
+   */
+  public void addNeighbor(String neighborIp) {
+    neighbors.computeIfAbsent(Ipv4.parse(neighborIp), NeighborTraffic::new);
+  }
+
+  /**
+   * Stop counting the traffic of a neighbor and forget what was counted.
+   *
+   * @param neighborIp The neighbor's IP address
+   */
+  public void removeNeighbor(String neighborIp) {
+    neighbors.remove(Ipv4.parse(neighborIp));
+  }
+
+  /**
+   * Count a received datagram.
+   *
+   * @param type The message type
+   * @param sender The address the datagram was received from, which is the neighbor that delivered
+   *     it rather than the router that originated it
+   * @param bytes The datagram length
+   */
+  public void recordReceived(String type, int sender, int bytes) {
+    int index = typeIndex(type);
+    packetsIn[index].increment();
+    bytesIn[index].add(bytes);
+    NeighborTraffic neighbor = neighbors.get(sender);
+    if (neighbor != null) {
+      neighbor.packetsIn.increment();
+      neighbor.bytesIn.add(bytes);
+    }
+  }
+
+  /**
+   * Count a datagram sent to a neighbor.
+   *
+   * @param type The message type
+   * @param neighborIp The neighbor's IP address
+   * @param bytes The datagram length
+   */
+  public void recordSent(String type, String neighborIp, int bytes) {
+    recordSent(type, Ipv4.parse(neighborIp), bytes);
+  }
+
+  /**
+   * Count a datagram sent to a neighbor.
+   *
+   * @param type The message type
+   * @param neighborAddress The neighbor's address
+   * @param bytes The datagram length
+   */
+  public void recordSent(String type, int neighborAddress, int bytes) {
+    int index = typeIndex(type);
+    packetsOut[index].increment();
+    bytesOut[index].add(bytes);
+    NeighborTraffic neighbor = neighbors.get(neighborAddress);
+    if (neighbor != null) {
+      neighbor.packetsOut.increment();
+      neighbor.bytesOut.add(bytes);
+    }
+  }
+
+  /**
+   * Count a dropped datagram.
+   *
+   * @param reason Why it was dropped
+   */
+  public void recordDrop(DropReason reason) {
+    drops[reason.ordinal()].increment();
+  }
+
+  /**
+   * Get the number of datagrams dropped for a reason.
+   *
+   * @param reason The reason
+   * @return The number dropped
+   */
+  public long getDropCount(DropReason reason) {
+    return drops[reason.ordinal()].sum();
+  }
+
+  /**
+   * Record the time taken to read the header of a received datagram.
+   *
+   * @param nanos The time in nanoseconds
+   */
+  public void recordParse(long nanos) {
+    parseLatency.record(nanos);
+  }
+
+  /**
+   * Record the time taken to handle a received message.
+   *
+   * @param nanos The time in nanoseconds
+   */
+  public void recordHandle(long nanos) {
+    handleLatency.record(nanos);
+  }
+
+  /**
+   * Record the time from an update being requested for a neighbor until it was sent.
+   *
+   * @param nanos The time in nanoseconds
+   */
+  public void recordUpdateFanOut(long nanos) {
+    updateFanOut.record(nanos);
+  }
+
+  /**
+   * Sample the routing table version, from which the route change rate is taken. Called at a
+   * regular interval; the rate covers the last ten intervals.
+   *
+   * @param nowMillis The current time in milliseconds
+   */
+  public synchronized void sampleRouteChanges(long nowMillis) {
+    sampleTimes[nextSample] = nowMillis;
+    sampleVersions[nextSample] = routeVersion.getAsLong();
+    nextSample = (nextSample + 1) % RATE_SAMPLES;
+    samples = Math.min(samples + 1, RATE_SAMPLES);
+  }
+
+  @Override
+  public Map<String, Long> getPacketsIn() {
+    return byType(packetsIn);
+  }
+
+  @Override
+  public Map<String, Long> getBytesIn() {
+    return byType(bytesIn);
+  }
+
+  @Override
+  public Map<String, Long> getPacketsOut() {
+    return byType(packetsOut);
+  }
+
+  @Override
+  public Map<String, Long> getBytesOut() {
+    return byType(bytesOut);
+  }
+
+  private static Map<String, Long> byType(LongAdder[] counters) {
+    Map<String, Long> values = new LinkedHashMap<>();
+    for (int i = 0; i < MESSAGE_TYPES.length; i++) {
+      values.put(MESSAGE_TYPES[i], counters[i].sum());
+    }
+    return values;
+  }
+
+  @Override
+  public Map<String, Long> getNeighborPacketsIn() {
+    return byNeighbor(neighbor -> neighbor.packetsIn);
+  }
+
+  @Override
+  public Map<String, Long> getNeighborBytesIn() {
+    return byNeighbor(neighbor -> neighbor.bytesIn);
+  }
+
+  @Override
+  public Map<String, Long> getNeighborPacketsOut() {
+    return byNeighbor(neighbor -> neighbor.packetsOut);
+  }
+
+  @Override
+  public Map<String, Long> getNeighborBytesOut() {
+    return byNeighbor(neighbor -> neighbor.bytesOut);
+  }
+
+  private Map<String, Long> byNeighbor(Function<NeighborTraffic, LongAdder> counter) {
+    Map<String, Long> values = new TreeMap<>();
+    neighbors.forEach(
+        (address, neighbor) -> values.put(neighbor.address, counter.apply(neighbor).sum()));
+    return values;
+  }
+
+  @Override
+  public Map<String, Long> getDrops() {
+    Map<String, Long> values = new LinkedHashMap<>();
+    for (DropReason reason : DropReason.values()) {
+      values.put(reason.getLabel(), getDropCount(reason));
+    }
+    return values;
+  }
+
+  @Override
+  public int getRouteCount() {
+    return routeCount.getAsInt();
+  }
+
+  @Override
+  public long getRouteChanges() {
+    return routeVersion.getAsLong();
+  }
+
+  @Override
+  public synchronized double getRouteChangesPerSecond() {
+    if (samples < 2) {
+      return 0;
+    }
+    int newest = (nextSample + RATE_SAMPLES - 1) % RATE_SAMPLES;
+    int oldest = samples < RATE_SAMPLES ? 0 : nextSample;
+    long millis = sampleTimes[newest] - sampleTimes[oldest];
+    return millis > 0 ? (sampleVersions[newest] - sampleVersions[oldest]) * 1000.0 / millis : 0;
+  }
+
+  @Override
+  public Histogram.Snapshot getParseLatency() {
+    return parseLatency.snapshot();
+  }
+
+  @Override
+  public Histogram.Snapshot getHandleLatency() {
+    return handleLatency.snapshot();
+  }
+
+  @Override
+  public Histogram.Snapshot getUpdateFanOut() {
+    return updateFanOut.snapshot();
+  }
+
+  /**
+   * Format the metrics as a report for people to read, with latencies in microseconds.
+   *
+   * @return The report, one line per row
+   */
+  public String report() {
+    StringBuilder report = new StringBuilder();
+    report.append(
+        String.format(
+            Locale.ROOT,
+            "routes %d, route changes %d (%.1f/s)%n",
+            getRouteCount(),
+            getRouteChanges(),
+            getRouteChangesPerSecond()));
+
+    String trafficFormat = "%-16s %12s %12s %12s %12s%n";
+    report.append(
+        String.format(
+            Locale.ROOT,
+            trafficFormat,
+            "type",
+            "packets in",
+            "bytes in",
+            "packets out",
+            "bytes out"));
+    for (int i = 0; i < MESSAGE_TYPES.length; i++) {
+      report.append(
+          String.format(
+              Locale.ROOT,
+              trafficFormat,
+              MESSAGE_TYPES[i],
+              packetsIn[i].sum(),
+              bytesIn[i].sum(),
+              packetsOut[i].sum(),
+              bytesOut[i].sum()));
+    }
+    report.append(
+        String.format(
+            Locale.ROOT,
+            trafficFormat,
+            "neighbor",
+            "packets in",
+            "bytes in",
+            "packets out",
+            "bytes out"));
+    Map<String, NeighborTraffic> byAddress = new TreeMap<>();
+    neighbors.forEach((address, neighbor) -> byAddress.put(neighbor.address, neighbor));
+    byAddress.forEach(
+        (ip, neighbor) ->
+            report.append(
+                String.format(
+                    Locale.ROOT,
+                    trafficFormat,
+                    ip,
+                    neighbor.packetsIn.sum(),
+                    neighbor.bytesIn.sum(),
+                    neighbor.packetsOut.sum(),
+                    neighbor.bytesOut.sum())));
+
+    report.append(
+        String.format(
+            Locale.ROOT,
+            "%-16s %10s %10s %10s %10s %10s %10s %10s%n",
+            "latency (us)",
+            "count",
+            "mean",
+            "p50",
+            "p90",
+            "p99",
+            "p99.9",
+            "max"));
+    appendLatency(report, "parse", getParseLatency());
+    appendLatency(report, "handle", getHandleLatency());
+    appendLatency(report, "update fan-out", getUpdateFanOut());
+
+    report.append("drops");
+    getDrops()
+        .forEach((reason, count) -> report.append(' ').append(reason).append('=').append(count));
+    report.append(System.lineSeparator());
+    return report.toString();
+  }
+
+  private static void appendLatency(StringBuilder report, String name, Histogram.Snapshot latency) {
+    report.append(
+        String.format(
+            Locale.ROOT,
+            "%-16s %10d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+            name,
+            latency.getCount(),
+            latency.getMean() / 1000,
+            latency.getP50() / 1000.0,
+            latency.getP90() / 1000.0,
+            latency.getP99() / 1000.0,
+            latency.getP999() / 1000.0,
+            latency.getMax() / 1000.0));
+  }
+}
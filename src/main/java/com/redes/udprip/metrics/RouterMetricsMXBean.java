@@ -0,0 +1,54 @@
+package com.redes.udprip.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link RouterMetrics}. Latencies are in nanoseconds; traffic maps are
+ * keyed by message type or by neighbor address.
+ */
+public interface RouterMetricsMXBean {
+  /** Get the packets received, by message type. */
+  Map<String, Long> getPacketsIn();
+
+  /** Get the bytes received, by message type. */
+  Map<String, Long> getBytesIn();
+
+  /** Get the packets sent, by message type. */
+  Map<String, Long> getPacketsOut();
+
+  /** Get the bytes sent, by message type. */
+  Map<String, Long> getBytesOut();
+
+  /** Get the packets received from each neighbor. */
+  Map<String, Long> getNeighborPacketsIn();
+
+  /** Get the bytes received from each neighbor. */
+  Map<String, Long> getNeighborBytesIn();
+
+  /** Get the packets sent to each neighbor. */
+  Map<String, Long> getNeighborPacketsOut();
+
+  /** Get the bytes sent to each neighbor. */
+  Map<String, Long> getNeighborBytesOut();
+
+  /** Get the datagrams dropped, by reason. */
+  Map<String, Long> getDrops();
+
+  /** Get the number of reachable routes. */
+  int getRouteCount();
+
+  /** Get the number of route changes since the router started. */
+  long getRouteChanges();
+
+  /** Get the recent rate of route changes. */
+  double getRouteChangesPerSecond();
+
+  /** Get the time taken to read the header of a received datagram. */
+  Histogram.Snapshot getParseLatency();
+
+  /** Get the time taken to handle a received message once its header was read. */
+  Histogram.Snapshot getHandleLatency();
+
+  /** Get the time from an update being requested for a neighbor until it is sent. */
+  Histogram.Snapshot getUpdateFanOut();
+}
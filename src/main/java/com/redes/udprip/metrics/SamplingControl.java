@@ -0,0 +1,53 @@
+package com.redes.udprip.metrics;
+
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import jdk.jfr.SettingControl;
+
+/**
+ * Flight recorder setting that keeps a random sample of an event. The value is a whole number N:
+ * about one event in N is committed. When several recordings ask for different rates the event is
+ * sampled at the highest of them, i.e. the smallest N.
+ */
+public class SamplingControl extends SettingControl {
+  private static final String ALL = "1";
+
+  private volatile int every = 1;
+
+  @Override
+  public String combine(Set<String> settingValues) {
+    int smallest = Integer.MAX_VALUE;
+    for (String value : settingValues) {
+      smallest = Math.min(smallest, parse(value));
+    }
+    return smallest == Integer.MAX_VALUE ? ALL : Integer.toString(smallest);
+  }
+
+  @Override
+  public void setValue(String settingValue) {
+    every = parse(settingValue);
+  }
+
+  @Override
+  public String getValue() {
+    return Integer.toString(every);
+  }
+
+  /**
+   * Decide whether to keep the current event.
+   *
+   * @return true for about one call in N
+   */
+  public boolean sample() {
+    int n = every;
+    return n <= 1 || ThreadLocalRandom.current().nextInt(n) == 0;
+  }
+
+  private static int parse(String value) {
+    try {
+      return Math.max(1, Integer.parseInt(value.trim()));
+    } catch (NumberFormatException e) {
+      return 1;
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.redes.udprip.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight recorder event for an update received from a neighbor and applied to the table. */
+@Name("com.redes.udprip.UpdateReceived")
+@Label("Update Received")
+@Category({"UDPRIP", "Routing"})
+@Description("An update from a neighbor was applied to the routing table")
+@Enabled(false)
+@StackTrace(false)
+public class UpdateReceivedEvent extends Event {
+  @Label("Router")
+  String router;
+
+  @Label("Neighbor")
+  String neighbor;
+
+  @Label("Routes")
+  int routes;
+
+  @Label("Size")
+  @DataAmount
+  long bytes;
+
+  @Label("Routes Changed")
+  boolean changed;
+
+  /** Start timing the update. */
+  public static UpdateReceivedEvent start() {
+    UpdateReceivedEvent event = new UpdateReceivedEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Commit the event if it is enabled and took at least its threshold.
+   *
+   * @param router The address of the receiving router
+   * @param neighbor The neighbor's address
+   * @param routes The number of routes in the update
+   * @param bytes The size of the datagram
+   * @param changed Whether any advertised route changed
+   */
+  public void finish(String router, String neighbor, int routes, long bytes, boolean changed) {
+    if (shouldCommit()) {
+      this.router = router;
+      this.neighbor = neighbor;
+      this.routes = routes;
+      this.bytes = bytes;
+      this.changed = changed;
+      commit();
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.redes.udprip.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Flight recorder event for an update built for a neighbor, covering every datagram it took. */
+@Name("com.redes.udprip.UpdateSent")
+@Label("Update Sent")
+@Category({"UDPRIP", "Routing"})
+@Description("An update was built for a neighbor")
+@Enabled(false)
+@StackTrace(false)
+public class UpdateSentEvent extends Event {
+  @Label("Router")
+  String router;
+
+  @Label("Neighbor")
+  String neighbor;
+
+  @Label("Routes")
+  int routes;
+
+  @Label("Datagrams")
+  int datagrams;
+
+  @Label("Size")
+  @DataAmount
+  long bytes;
+
+  @Label("Full Table")
+  boolean full;
+
+  @Label("Periodic")
+  boolean periodic;
+
+  /** Start timing the update. */
+  public static UpdateSentEvent start() {
+    UpdateSentEvent event = new UpdateSentEvent();
+    event.begin();
+    return event;
+  }
+
+  /**
+   * Commit the event if it is enabled and took at least its threshold.
+   *
+   * @param router The address of the sending router
+   * @param neighbor The neighbor's address
+   * @param routes The number of routes advertised
+   * @param datagrams The number of datagrams the update was split into
+   * @param bytes The total size of the datagrams
+   * @param full Whether the update carries the full table
+   * @param periodic Whether this is a periodic update rather than a triggered one
+   */
+  public void finish(
+      String router,
+      String neighbor,
+      int routes,
+      int datagrams,
+      long bytes,
+      boolean full,
+      boolean periodic) {
+    if (shouldCommit()) {
+      this.router = router;
+      this.neighbor = neighbor;
+      this.routes = routes;
+      this.datagrams = datagrams;
+      this.bytes = bytes;
+      this.full = full;
+      this.periodic = periodic;
+      commit();
+    }
+  }
+}
@@ -1,12 +1,15 @@
 package com.redes.udprip.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 
 /**
  * Represents a data message in the UDPRIP protocol. Data messages carry a payload from source to
  * destination.
  */
-public class DataMessage implements Message {
+@JsonPropertyOrder({"type", "source", "destination", "ttl", "payload"})
+public class DataMessage implements HopLimitedMessage {
   @JsonProperty("type")
   private final String type = "data";
 
@@ -16,6 +19,12 @@ public class DataMessage implements Message {
   @JsonProperty("destination")
   private String destination;
 
+  // Left out when absent, since routers that predate it reject unknown fields. Written ahead of
+  // the payload so the header can be read without scanning past it
+  @JsonProperty("ttl")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Integer ttl;
+
   @JsonProperty("payload")
   private String payload;
 
@@ -51,6 +60,16 @@ public class DataMessage implements Message {
     this.destination = destination;
   }
 
+  @Override
+  public Integer getTtl() {
+    return ttl;
+  }
+
+  @Override
+  public void setTtl(Integer ttl) {
+    this.ttl = ttl;
+  }
+
   public String getPayload() {
     return payload;
   }
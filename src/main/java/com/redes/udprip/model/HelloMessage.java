@@ -0,0 +1,96 @@
+package com.redes.udprip.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a hello message in the UDPRIP protocol. Hello messages tell a neighbor which wire
+ * encodings this router accepts, so both ends can agree on the most compact one they share, and
+ * which optional message fields it understands.
+ */
+public class HelloMessage implements Message {
+  public static final String ENCODING_JSON = "json";
+  public static final String ENCODING_BINARY = "binary";
+  public static final String FEATURE_TTL = "ttl";
+
+  @JsonProperty("type")
+  private final String type = "hello";
+
+  @JsonProperty("source")
+  private String source;
+
+  @JsonProperty("destination")
+  private String destination;
+
+  @JsonProperty("encodings")
+  private List<String> encodings;
+
+  @JsonProperty("features")
+  private List<String> features;
+
+  // Required for Jackson deserialization
+  public HelloMessage() {
+    this.encodings = new ArrayList<>();
+    this.features = new ArrayList<>();
+  }
+
+  public HelloMessage(String source, String destination, List<String> encodings) {
+    this(source, destination, encodings, List.of());
+  }
+
+  public HelloMessage(
+      String source, String destination, List<String> encodings, List<String> features) {
+    this.source = source;
+    this.destination = destination;
+    this.encodings = encodings;
+    this.features = features;
+  }
+
+  @Override
+  public String getType() {
+    return type;
+  }
+
+  @Override
+  public String getSource() {
+    return source;
+  }
+
+  public void setSource(String source) {
+    this.source = source;
+  }
+
+  @Override
+  public String getDestination() {
+    return destination;
+  }
+
+  public void setDestination(String destination) {
+    this.destination = destination;
+  }
+
+  public List<String> getEncodings() {
+    return encodings;
+  }
+
+  public void setEncodings(List<String> encodings) {
+    this.encodings = encodings;
+  }
+
+  public boolean acceptsEncoding(String encoding) {
+    return encodings != null && encodings.contains(encoding);
+  }
+
+  public List<String> getFeatures() {
+    return features;
+  }
+
+  public void setFeatures(List<String> features) {
+    this.features = features;
+  }
+
+  public boolean supportsFeature(String feature) {
+    return features != null && features.contains(feature);
+  }
+}
@@ -0,0 +1,14 @@
+package com.redes.udprip.model;
+
+/**
+ * A message that is forwarded hop by hop and carries a hop limit, so that it is dropped instead of
+ * circling forever while routes converge. The hop limit is optional on the wire: routers that
+ * predate it neither send nor accept it.
+ */
+public interface HopLimitedMessage extends Message {
+  /** Get the number of hops the message may still take, or null if it has no hop limit. */
+  Integer getTtl();
+
+  /** Set the number of hops the message may still take, or null to send it without a limit. */
+  void setTtl(Integer ttl);
+}
@@ -0,0 +1,180 @@
+package com.redes.udprip.model;
+
+import java.util.function.IntFunction;
+
+/**
+ * Map from int keys, such as IPv4 addresses, to values, for state that is read on every packet and
+ * changed rarely, like the per-neighbor state of a router. Reads take no lock and neither box the
+ * key nor allocate: the map is an open-addressing table that is replaced as a whole on every
+ * change, so a reader always probes a consistent copy.
+ *
+ * @param <V> The type of the values
+ */
+public class IntMap<V> {
+  private static final int MIN_CAPACITY = 8;
+
+  private volatile Table table = new Table(MIN_CAPACITY);
+
+  /** An immutable open-addressing table with linear probing. */
+  private static final class Table {
+    private final int[] keys;
+    private final Object[] values;
+    private final int size;
+
+    private Table(int capacity) {
+      this(new int[capacity], new Object[capacity], 0);
+    }
+
+    private Table(int[] keys, Object[] values, int size) {
+      this.keys = keys;
+      this.values = values;
+      this.size = size;
+    }
+
+    /** Find the slot holding a key, or the empty slot where it would go. */
+    private int slotOf(int key) {
+      int mask = keys.length - 1;
+      int slot = mix(key) & mask;
+      while (values[slot] != null && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+  }
+
+  private static int mix(int key) {
+    int hash = key * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Get the value of a key.
+   *
+   * @param key The key
+   * @return The value, or null if the key is absent
+   */
+  @SuppressWarnings("unchecked")
+  public V get(int key) {
+    Table current = table;
+    return (V) current.values[current.slotOf(key)];
+  }
+
+  /**
+   * Associate a value with a key.
+   *
+   * @param key The key
+   * @param value The value, which must not be null
+   * @return The previous value, or null if the key was absent
+   */
+  public synchronized V put(int key, V value) {
+    if (value == null) {
+      throw new NullPointerException("value");
+    }
+    V previous = get(key);
+    Table current = table;
+    int capacity = current.keys.length;
+    // Keep the load factor at or below one half, so probes stay short
+    if (previous == null && (current.size + 1) * 2 > capacity) {
+      capacity *= 2;
+    }
+    Table copy = copy(current, capacity, key);
+    int slot = copy.slotOf(key);
+    copy.keys[slot] = key;
+    copy.values[slot] = value;
+    table = new Table(copy.keys, copy.values, current.size + (previous == null ? 1 : 0));
+    return previous;
+  }
+
+  /**
+   * Get the value of a key, adding one if it is absent.
+   *
+   * @param key The key
+   * @param factory Creates the value of an absent key
+   * @return The value
+   */
+  public V computeIfAbsent(int key, IntFunction<V> factory) {
+    V value = get(key);
+    if (value != null) {
+      return value;
+    }
+    synchronized (this) {
+      value = get(key);
+      if (value == null) {
+        value = factory.apply(key);
+        put(key, value);
+      }
+      return value;
+    }
+  }
+
+  /**
+   * Remove a key.
+   *
+   * @param key The key
+   * @return The value it had, or null if it was absent
+   */
+  public synchronized V remove(int key) {
+    V previous = get(key);
+    if (previous != null) {
+      Table current = table;
+      Table copy = copy(current, current.keys.length, key);
+      table = new Table(copy.keys, copy.values, current.size - 1);
+    }
+    return previous;
+  }
+
+  /**
+   * Copy a table into a new one of the given capacity, leaving out one key.
+   *
+   * @param source The table to copy
+   * @param capacity The capacity of the copy, a power of two
+   * @param skip The key to leave out
+   * @return The copy, whose size field is not set
+   */
+  private static Table copy(Table source, int capacity, int skip) {
+    Table copy = new Table(capacity);
+    for (int i = 0; i < source.keys.length; i++) {
+      if (source.values[i] != null && source.keys[i] != skip) {
+        int slot = copy.slotOf(source.keys[i]);
+        copy.keys[slot] = source.keys[i];
+        copy.values[slot] = source.values[i];
+      }
+    }
+    return copy;
+  }
+
+  /** Get the number of keys. */
+  public int size() {
+    return table.size;
+  }
+
+  /**
+   * Call an action for every key and value, as of one point in time.
+   *
+   * @param action The action
+   */
+  @SuppressWarnings("unchecked")
+  public void forEach(IntObjConsumer<V> action) {
+    Table current = table;
+    for (int i = 0; i < current.keys.length; i++) {
+      if (current.values[i] != null) {
+        action.accept(current.keys[i], (V) current.values[i]);
+      }
+    }
+  }
+
+  /** Remove every key. */
+  public synchronized void clear() {
+    table = new Table(MIN_CAPACITY);
+  }
+
+  /**
+   * Action taking an int key and a value.
+   *
+   * @param <V> The type of the values
+   */
+  @FunctionalInterface
+  public interface IntObjConsumer<V> {
+    void accept(int key, V value);
+  }
+}
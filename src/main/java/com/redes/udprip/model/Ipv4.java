@@ -0,0 +1,156 @@
+package com.redes.udprip.model;
+
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+/**
+ * Conversions between dotted-quad IPv4 addresses and their 32-bit integer form. CIDR prefixes are
+ * packed into a long holding the prefix length in bits 32-37 and the network address in the low 32
+ * bits; a host address is a /32 prefix.
+ */
+public final class Ipv4 {
+  public static final int MAX_PREFIX_LENGTH = 32;
+
+  private Ipv4() {}
+
+  /**
+   * Parse a dotted-quad IPv4 address.
+   *
+   * @param address The address, e.g. "127.0.1.1"
+   * @return The address as a 32-bit integer in network byte order
+   * @throws IllegalArgumentException If the address is not a dotted-quad IPv4 address
+   */
+  public static int parse(String address) {
+    int result = 0;
+    int octet = 0;
+    int digits = 0;
+    int dots = 0;
+
+    for (int i = 0; i < address.length(); i++) {
+      char c = address.charAt(i);
+      if (c >= '0' && c <= '9') {
+        octet = octet * 10 + (c - '0');
+        if (++digits > 3 || octet > 255) {
+          throw new IllegalArgumentException("Invalid IPv4 address: " + address);
+        }
+      } else if (c == '.' && digits > 0 && dots < 3) {
+        result = (result << 8) | octet;
+        octet = 0;
+        digits = 0;
+        dots++;
+      } else {
+        throw new IllegalArgumentException("Invalid IPv4 address: " + address);
+      }
+    }
+
+    if (dots != 3 || digits == 0) {
+      throw new IllegalArgumentException("Invalid IPv4 address: " + address);
+    }
+    return (result << 8) | octet;
+  }
+
+  /**
+   * Get the IPv4 address of a socket address, such as the sender of a datagram.
+   *
+   * @param address The socket address
+   * @return The address as a 32-bit integer in network byte order
+   * @throws IllegalArgumentException If the address is not an IPv4 socket address
+   */
+  public static int of(SocketAddress address) {
+    if (!(address instanceof InetSocketAddress socketAddress)
+        || !(socketAddress.getAddress() instanceof Inet4Address inet4Address)) {
+      throw new IllegalArgumentException("Not an IPv4 socket address: " + address);
+    }
+    byte[] bytes = inet4Address.getAddress();
+    return ((bytes[0] & 0xFF) << 24)
+        | ((bytes[1] & 0xFF) << 16)
+        | ((bytes[2] & 0xFF) << 8)
+        | (bytes[3] & 0xFF);
+  }
+
+  /**
+   * Format a 32-bit IPv4 address in dotted-quad notation.
+   *
+   * @param address The address as a 32-bit integer in network byte order
+   * @return The dotted-quad address
+   */
+  public static String format(int address) {
+    return ((address >>> 24) & 0xFF)
+        + "."
+        + ((address >>> 16) & 0xFF)
+        + "."
+        + ((address >>> 8) & 0xFF)
+        + "."
+        + (address & 0xFF);
+  }
+
+  /**
+   * Get the network mask of a prefix length.
+   *
+   * @param length The prefix length, 0 to 32
+   * @return The mask with the top {@code length} bits set
+   */
+  public static int mask(int length) {
+    return length == 0 ? 0 : -1 << (MAX_PREFIX_LENGTH - length);
+  }
+
+  /**
+   * Pack a prefix, clearing any host bits of the address.
+   *
+   * @param address The network address
+   * @param length The prefix length, 0 to 32
+   * @return The packed prefix
+   */
+  public static long prefix(int address, int length) {
+    if (length < 0 || length > MAX_PREFIX_LENGTH) {
+      throw new IllegalArgumentException("Invalid prefix length: " + length);
+    }
+    return ((long) length << 32) | ((address & mask(length)) & 0xFFFFFFFFL);
+  }
+
+  /** Get the network address of a packed prefix. */
+  public static int prefixAddress(long prefix) {
+    return (int) prefix;
+  }
+
+  /** Get the length of a packed prefix. */
+  public static int prefixLength(long prefix) {
+    return (int) (prefix >>> 32);
+  }
+
+  /**
+   * Parse a CIDR prefix such as "10.1.0.0/16". A plain address is parsed as a /32 prefix.
+   *
+   * @param prefix The prefix
+   * @return The packed prefix
+   * @throws IllegalArgumentException If the prefix is malformed
+   */
+  public static long parsePrefix(String prefix) {
+    int slash = prefix.indexOf('/');
+    if (slash < 0) {
+      return prefix(parse(prefix), MAX_PREFIX_LENGTH);
+    }
+
+    int length;
+    try {
+      length = Integer.parseInt(prefix.substring(slash + 1));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid prefix: " + prefix);
+    }
+    return prefix(parse(prefix.substring(0, slash)), length);
+  }
+
+  /**
+   * Format a packed prefix. Host routes are formatted as a plain address, which is what peers
+   * without CIDR support expect.
+   *
+   * @param prefix The packed prefix
+   * @return The prefix in CIDR notation, or the address for a /32
+   */
+  public static String formatPrefix(long prefix) {
+    int length = prefixLength(prefix);
+    String address = format(prefixAddress(prefix));
+    return length == MAX_PREFIX_LENGTH ? address : address + "/" + length;
+  }
+}
@@ -1,8 +1,24 @@
 package com.redes.udprip.model;
 
-/** Base interface for all message types in the UDPRIP protocol. */
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+
+/**
+ * Base interface for all message types in the UDPRIP protocol. The "type" field selects the
+ * concrete class, so a datagram can be decoded straight into its subtype in a single pass.
+ */
+@JsonTypeInfo(
+    use = JsonTypeInfo.Id.NAME,
+    include = JsonTypeInfo.As.EXISTING_PROPERTY,
+    property = "type")
+@JsonSubTypes({
+  @JsonSubTypes.Type(value = DataMessage.class, name = "data"),
+  @JsonSubTypes.Type(value = UpdateMessage.class, name = "update"),
+  @JsonSubTypes.Type(value = TraceMessage.class, name = "trace"),
+  @JsonSubTypes.Type(value = HelloMessage.class, name = "hello")
+})
 public interface Message {
-  /** Get the message type ("data", "update", or "trace"). */
+  /** Get the message type ("data", "update", "trace" or "hello"). */
   String getType();
 
   /** Get the source IP address of the message. */
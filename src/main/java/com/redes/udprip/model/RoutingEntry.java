@@ -1,61 +1,65 @@
 package com.redes.udprip.model;
 
-/** Represents an entry in the routing table. */
+/**
+ * Represents an entry in the routing table. The destination is a CIDR prefix; addresses are 32-bit
+ * IPv4 addresses, see {@link Ipv4}.
+ */
 public class RoutingEntry {
-  private final String destination;
-  private int distance;
-  private String nextHop;
-  private String learnedFrom;
-  private long lastUpdated;
+  private final int destination;
+  private final int prefixLength;
+  private final int distance;
+  private final int nextHop;
+  private final int learnedFrom;
+  private final long lastUpdated;
 
-  public RoutingEntry(String destination, int distance, String nextHop, String learnedFrom) {
+  public RoutingEntry(
+      int destination,
+      int prefixLength,
+      int distance,
+      int nextHop,
+      int learnedFrom,
+      long lastUpdated) {
     this.destination = destination;
+    this.prefixLength = prefixLength;
     this.distance = distance;
     this.nextHop = nextHop;
     this.learnedFrom = learnedFrom;
-    this.lastUpdated = System.currentTimeMillis();
+    this.lastUpdated = lastUpdated;
   }
 
-  public String getDestination() {
+  public int getDestination() {
     return destination;
   }
 
-  public int getDistance() {
-    return distance;
+  public int getPrefixLength() {
+    return prefixLength;
   }
 
-  public void setDistance(int distance) {
-    this.distance = distance;
+  public int getDistance() {
+    return distance;
   }
 
-  public String getNextHop() {
+  public int getNextHop() {
     return nextHop;
   }
 
-  public void setNextHop(String nextHop) {
-    this.nextHop = nextHop;
-  }
-
-  public String getLearnedFrom() {
+  public int getLearnedFrom() {
     return learnedFrom;
   }
 
-  public void setLearnedFrom(String learnedFrom) {
-    this.learnedFrom = learnedFrom;
-  }
-
   public long getLastUpdated() {
     return lastUpdated;
   }
 
-  public void updateTimestamp() {
-    this.lastUpdated = System.currentTimeMillis();
-  }
-
   @Override
   public String toString() {
     return String.format(
-        "RoutingEntry{destination='%s', distance=%d, nextHop='%s', learnedFrom='%s', lastUpdated=%d}",
-        destination, distance, nextHop, learnedFrom, lastUpdated);
+        "RoutingEntry{destination='%s', distance=%d, nextHop='%s', learnedFrom='%s',"
+            + " lastUpdated=%d}",
+        Ipv4.formatPrefix(Ipv4.prefix(destination, prefixLength)),
+        distance,
+        Ipv4.format(nextHop),
+        Ipv4.format(learnedFrom),
+        lastUpdated);
   }
 }
@@ -1,6 +1,8 @@
 package com.redes.udprip.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -8,7 +10,8 @@ import java.util.List;
  * Represents a trace message in the UDPRIP protocol. Trace messages are used to trace the route
  * from source to destination.
  */
-public class TraceMessage implements Message {
+@JsonPropertyOrder({"type", "source", "destination", "ttl", "routers"})
+public class TraceMessage implements HopLimitedMessage {
   @JsonProperty("type")
   private final String type = "trace";
 
@@ -18,6 +21,11 @@ public class TraceMessage implements Message {
   @JsonProperty("destination")
   private String destination;
 
+  // Left out when absent, since routers that predate it reject unknown fields
+  @JsonProperty("ttl")
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  private Integer ttl;
+
   @JsonProperty("routers")
   private List<String> routers;
 
@@ -56,6 +64,16 @@ public class TraceMessage implements Message {
     this.destination = destination;
   }
 
+  @Override
+  public Integer getTtl() {
+    return ttl;
+  }
+
+  @Override
+  public void setTtl(Integer ttl) {
+    this.ttl = ttl;
+  }
+
   public List<String> getRouters() {
     return routers;
   }
@@ -0,0 +1,228 @@
+package com.redes.udprip.sim;
+
+import com.redes.udprip.model.Ipv4;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The routers, links and scheduled link failures of a simulated network.
+ *
+ * <p>Topology files hold one directive per line; blank lines and lines starting with {@code #} are
+ * ignored. Routers are named by their address and need no declaration of their own.
+ *
+ * <ul>
+ *   <li>{@code link <a> <b> [weight]}: a link between two routers, with weight 1 by default
+ *   <li>{@code fail <seconds> <a> <b>}: take a link down at a point in simulated time, so that
+ *       datagrams over it are lost
+ *   <li>{@code restore <seconds> <a> <b>}: bring a failed link back up
+ * </ul>
+ */
+public class Topology {
+  /** A link between two routers. */
+  public record Link(String first, String second, int weight) {}
+
+  /** A link going down or coming back up at a point in simulated time. */
+  public record LinkEvent(long atMillis, Link link, boolean up) {}
+
+  private static final int FIRST_ADDRESS = Ipv4.parse("10.0.0.1");
+
+  private final Set<String> routers = new LinkedHashSet<>();
+  private final List<Link> links = new ArrayList<>();
+  private final Map<String, Link> linksByKey = new HashMap<>();
+  private final List<LinkEvent> events = new ArrayList<>();
+
+  /**
+   * Read a topology file.
+   *
+   * @param path The file to read
+   * @return The topology
+   * @throws IOException If the file cannot be read
+   * @throws IllegalArgumentException If a line is not a valid directive
+   */
+  public static Topology parse(Path path) throws IOException {
+    Topology topology = new Topology();
+    try (BufferedReader reader = Files.newBufferedReader(path)) {
+      String line;
+      int lineNumber = 0;
+      while ((line = reader.readLine()) != null) {
+        lineNumber++;
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+
+        String[] parts = line.split("\\s+");
+        try {
+          switch (parts[0]) {
+            case "link":
+              if (parts.length != 3 && parts.length != 4) {
+                throw new IllegalArgumentException("expected: link <a> <b> [weight]");
+              }
+              topology.addLink(
+                  parts[1], parts[2], parts.length == 4 ? Integer.parseInt(parts[3]) : 1);
+              break;
+            case "fail":
+            case "restore":
+              if (parts.length != 4) {
+                throw new IllegalArgumentException("expected: " + parts[0] + " <seconds> <a> <b>");
+              }
+              topology.addEvent(
+                  Math.round(Double.parseDouble(parts[1]) * 1000),
+                  parts[2],
+                  parts[3],
+                  parts[0].equals("restore"));
+              break;
+            default:
+              throw new IllegalArgumentException("unknown directive " + parts[0]);
+          }
+        } catch (IllegalArgumentException e) {
+          throw new IllegalArgumentException(
+              path + " line " + lineNumber + ": " + e.getMessage(), e);
+        }
+      }
+    }
+    return topology;
+  }
+
+  /**
+   * Create a grid where each router is linked to the routers next to it.
+   *
+   * @param rows The number of rows
+   * @param columns The number of columns
+   * @return The topology
+   */
+  public static Topology grid(int rows, int columns) {
+    Topology topology = new Topology();
+    for (int row = 0; row < rows; row++) {
+      for (int column = 0; column < columns; column++) {
+        String router = address(row * columns + column);
+        topology.routers.add(router);
+        if (column > 0) {
+          topology.addLink(address(row * columns + column - 1), router, 1);
+        }
+        if (row > 0) {
+          topology.addLink(address((row - 1) * columns + column), router, 1);
+        }
+      }
+    }
+    return topology;
+  }
+
+  /**
+   * Create a connected random topology. Every router is first linked to a random earlier one, and
+   * random links are then added until routers have the requested average number of neighbors.
+   *
+   * @param routerCount The number of routers
+   * @param degree The average number of neighbors per router
+   * @param seed The seed of the random choices
+   * @return The topology
+   */
+  public static Topology random(int routerCount, int degree, long seed) {
+    Random random = new Random(seed);
+    Topology topology = new Topology();
+    topology.routers.add(address(0));
+    for (int i = 1; i < routerCount; i++) {
+      topology.addLink(address(random.nextInt(i)), address(i), 1);
+    }
+
+    long linkCount =
+        Math.min((long) routerCount * degree / 2, (long) routerCount * (routerCount - 1) / 2);
+    while (topology.links.size() < linkCount) {
+      int first = random.nextInt(routerCount);
+      int second = random.nextInt(routerCount);
+      if (first != second && !topology.hasLink(address(first), address(second))) {
+        topology.addLink(address(first), address(second), 1);
+      }
+    }
+    return topology;
+  }
+
+  private static String address(int index) {
+    return Ipv4.format(FIRST_ADDRESS + index);
+  }
+
+  /**
+   * Add a link between two routers, adding the routers if they are new.
+   *
+   * @param first The address of one router
+   * @param second The address of the other router
+   * @param weight The link weight
+   */
+  public void addLink(String first, String second, int weight) {
+    Ipv4.parse(first);
+    Ipv4.parse(second);
+    if (first.equals(second)) {
+      throw new IllegalArgumentException("link from " + first + " to itself");
+    }
+    if (weight < 1) {
+      throw new IllegalArgumentException("link weight must be at least 1");
+    }
+    Link link = new Link(first, second, weight);
+    if (linksByKey.putIfAbsent(linkKey(first, second), link) != null) {
+      throw new IllegalArgumentException("duplicate link " + first + " " + second);
+    }
+    routers.add(first);
+    routers.add(second);
+    links.add(link);
+  }
+
+  /**
+   * Schedule a link to go down or come back up.
+   *
+   * @param atMillis The simulated time of the event
+   * @param first The address at one end of the link
+   * @param second The address at the other end
+   * @param up Whether the link comes up rather than goes down
+   */
+  public void addEvent(long atMillis, String first, String second, boolean up) {
+    if (atMillis < 0) {
+      throw new IllegalArgumentException("event time must not be negative");
+    }
+    Link link = linksByKey.get(linkKey(first, second));
+    if (link == null) {
+      throw new IllegalArgumentException("no link " + first + " " + second);
+    }
+    events.add(new LinkEvent(atMillis, link, up));
+    events.sort(Comparator.comparingLong(LinkEvent::atMillis));
+  }
+
+  /**
+   * Check whether two routers are linked.
+   *
+   * @param first The address of one router
+   * @param second The address of the other router
+   * @return true if there is a link between them
+   */
+  public boolean hasLink(String first, String second) {
+    return linksByKey.containsKey(linkKey(first, second));
+  }
+
+  private static String linkKey(String first, String second) {
+    return first.compareTo(second) < 0 ? first + " " + second : second + " " + first;
+  }
+
+  /** Get the router addresses, in the order they were added. */
+  public List<String> getRouters() {
+    return List.copyOf(routers);
+  }
+
+  /** Get the links. */
+  public List<Link> getLinks() {
+    return List.copyOf(links);
+  }
+
+  /** Get the scheduled link events, earliest first. */
+  public List<LinkEvent> getEvents() {
+    return List.copyOf(events);
+  }
+}
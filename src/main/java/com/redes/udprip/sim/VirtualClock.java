@@ -0,0 +1,22 @@
+package com.redes.udprip.sim;
+
+import com.redes.udprip.app.Clock;
+
+/** Clock that only moves when the simulation moves it. */
+public class VirtualClock implements Clock {
+  private long millis;
+
+  @Override
+  public long millis() {
+    return millis;
+  }
+
+  /**
+   * Move the clock forward.
+   *
+   * @param millis The new time in milliseconds; earlier times are ignored
+   */
+  public void advanceTo(long millis) {
+    this.millis = Math.max(this.millis, millis);
+  }
+}
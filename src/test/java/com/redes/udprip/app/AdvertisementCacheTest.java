@@ -0,0 +1,129 @@
+package com.redes.udprip.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.redes.udprip.model.Ipv4;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class AdvertisementCacheTest {
+  private static final int SELF = Ipv4.parse("127.0.1.1");
+  private static final int A = Ipv4.parse("127.0.1.2");
+  private static final int B = Ipv4.parse("127.0.1.3");
+  private static final int UNREACHABLE = DistanceVector.UNREACHABLE;
+
+  private final RouteTable table = new RouteTable();
+  private long version;
+
+  /** Change a route the way {@link DistanceVector} does, stamping it with a new version. */
+  private void change(AdvertisementCache cache, String destination, int distance, int from) {
+    long prefix = Ipv4.parsePrefix(destination);
+    int slot = table.put(prefix, distance, from, from, 0);
+    table.setVersion(slot, ++version);
+    cache.routeChanged(prefix, distance, from, version, table.size());
+  }
+
+  private void remove(AdvertisementCache cache, String destination) {
+    long prefix = Ipv4.parsePrefix(destination);
+    table.removeAt(table.find(prefix));
+    cache.routeRemoved(prefix);
+  }
+
+  @Test
+  void fullAdvertisementAppliesSplitHorizon() {
+    AdvertisementCache cache = new AdvertisementCache(PoisonMode.NONE);
+    change(cache, "127.0.1.1", 0, SELF);
+    change(cache, "10.0.0.0/8", 3, A);
+
+    assertEquals(
+        Map.of("127.0.1.1", 0, "10.0.0.0/8", 3), cache.full(B, table, version).getDistances());
+    assertEquals(Map.of("127.0.1.1", 0), cache.full(A, table, version).getDistances());
+  }
+
+  @Test
+  void poisonReverseAdvertisesRoutesBackAsUnreachable() {
+    AdvertisementCache cache = new AdvertisementCache(PoisonMode.REVERSE);
+    change(cache, "10.0.0.0/8", 3, A);
+
+    assertEquals(Map.of("10.0.0.0/8", UNREACHABLE), cache.full(A, table, version).getDistances());
+  }
+
+  @Test
+  void fullAdvertisementFollowsChangesAfterTheFirstScan() {
+    AdvertisementCache cache = new AdvertisementCache(PoisonMode.NONE);
+    change(cache, "10.0.0.0/8", 3, A);
+    Advertisement first = cache.full(B, table, version);
+
+    assertSame(first, cache.full(B, table, version));
+
+    change(cache, "10.0.0.0/8", 4, SELF);
+    change(cache, "10.1.0.0/16", 2, SELF);
+    Advertisement second = cache.full(B, table, version);
+    assertNotSame(first, second);
+    assertEquals(Map.of("10.0.0.0/8", 4, "10.1.0.0/16", 2), second.getDistances());
+    assertEquals(Map.of("10.0.0.0/8", 3), first.getDistances());
+
+    remove(cache, "10.1.0.0/16");
+    assertEquals(Map.of("10.0.0.0/8", 4), cache.full(B, table, version).getDistances());
+  }
+
+  @Test
+  void lostRoutesAreOnlyAdvertisedWithPoisoning() {
+    AdvertisementCache plain = new AdvertisementCache(PoisonMode.NONE);
+    change(plain, "10.0.0.0/8", 3, A);
+    plain.full(B, table, version);
+    change(plain, "10.0.0.0/8", UNREACHABLE, A);
+    assertEquals(Map.of(), plain.full(B, table, version).getDistances());
+
+    AdvertisementCache poisoned = new AdvertisementCache(PoisonMode.ROUTES);
+    poisoned.full(B, table, version);
+    change(poisoned, "10.0.0.0/8", UNREACHABLE, A);
+    assertEquals(
+        Map.of("10.0.0.0/8", UNREACHABLE), poisoned.full(B, table, version).getDistances());
+  }
+
+  @Test
+  void deltaHoldsOnlyRoutesChangedSinceTheVersion() {
+    AdvertisementCache cache = new AdvertisementCache(PoisonMode.NONE);
+    change(cache, "10.0.0.0/8", 3, A);
+    change(cache, "10.1.0.0/16", 2, A);
+    long since = version;
+    change(cache, "10.2.0.0/16", 5, A);
+    change(cache, "10.1.0.0/16", 4, A);
+
+    Advertisement delta = cache.changesSince(B, since, table, version);
+    assertEquals(Map.of("10.1.0.0/16", 4, "10.2.0.0/16", 5), delta.getDistances());
+    assertEquals(version, delta.getVersion());
+    assertEquals(Map.of(), cache.changesSince(B, version, table, version).getDistances());
+  }
+
+  @Test
+  void deltaWithdrawsARouteFromTheNeighborItIsNowLearnedFrom() {
+    AdvertisementCache cache = new AdvertisementCache(PoisonMode.ROUTES);
+    change(cache, "10.0.0.0/8", 3, B);
+    long since = version;
+    change(cache, "10.0.0.0/8", 2, A);
+
+    assertEquals(
+        Map.of("10.0.0.0/8", UNREACHABLE),
+        cache.changesSince(A, since, table, version).getDistances());
+    assertEquals(
+        Map.of("10.0.0.0/8", 2), cache.changesSince(B, since, table, version).getDistances());
+  }
+
+  @Test
+  void deltaFallsBackToAScanOnceTheLogIsTrimmed() {
+    AdvertisementCache cache = new AdvertisementCache(PoisonMode.NONE);
+    change(cache, "10.0.0.0/8", 3, A);
+    long since = version;
+    // Far more changes than the log keeps for a table this small
+    for (int i = 0; i < 1000; i++) {
+      change(cache, "10.1.0.0/16", 1 + i % 15, A);
+    }
+
+    assertEquals(
+        Map.of("10.1.0.0/16", 10), cache.changesSince(B, since, table, version).getDistances());
+  }
+}
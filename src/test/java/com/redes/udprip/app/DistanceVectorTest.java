@@ -0,0 +1,178 @@
+package com.redes.udprip.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redes.udprip.sim.VirtualClock;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class DistanceVectorTest {
+  private static final String LOCAL = "10.0.0.1";
+  private static final String NEIGHBOR_A = "10.0.0.2";
+  private static final String NEIGHBOR_B = "10.0.0.3";
+  private static final String DESTINATION = "10.0.9.9";
+  private static final long ROUTE_TIMEOUT_MILLIS = 3000;
+  private static final long GARBAGE_COLLECTION_MILLIS = 2000;
+  private static final long HOLD_DOWN_MILLIS = 1000;
+
+  private final VirtualClock clock = new VirtualClock();
+  private final TimerWheel timers = new TimerWheel(clock);
+  private final DistanceVector distanceVector =
+      new DistanceVector(
+          LOCAL,
+          clock,
+          timers,
+          ROUTE_TIMEOUT_MILLIS,
+          GARBAGE_COLLECTION_MILLIS,
+          HOLD_DOWN_MILLIS,
+          PoisonMode.ROUTES);
+
+  private void runFor(long millis) {
+    long end = clock.millis() + millis;
+    while (clock.millis() < end) {
+      clock.advanceTo(clock.millis() + timers.getTickMillis());
+      timers.advance();
+    }
+  }
+
+  private void advertise(String neighbor, int distance, int linkWeight) {
+    distanceVector.applyUpdate(neighbor, Map.of(DESTINATION, distance), linkWeight);
+  }
+
+  private Set<String> nextHopsOfFlows(int flows) {
+    Set<String> nextHops = new HashSet<>();
+    for (int flow = 0; flow < flows; flow++) {
+      nextHops.add(distanceVector.getNextHop(DESTINATION, flow));
+    }
+    return nextHops;
+  }
+
+  private Integer advertisedTo(String neighbor) {
+    return distanceVector.getDistancesForNeighbor(neighbor).get(DESTINATION);
+  }
+
+  @Test
+  void theShortestRouteInTheRibIsSelected() {
+    advertise(NEIGHBOR_A, 1, 5);
+    advertise(NEIGHBOR_B, 3, 1);
+    assertEquals(NEIGHBOR_B, distanceVector.getNextHop(DESTINATION));
+    assertEquals(4, advertisedTo(NEIGHBOR_A));
+
+    // A route that gets better is taken at once
+    advertise(NEIGHBOR_A, 0, 5);
+    assertEquals(NEIGHBOR_B, distanceVector.getNextHop(DESTINATION));
+    advertise(NEIGHBOR_A, 0, 1);
+    assertEquals(NEIGHBOR_A, distanceVector.getNextHop(DESTINATION));
+    assertEquals(1, advertisedTo(NEIGHBOR_B));
+  }
+
+  @Test
+  void removingANeighborFailsOverToAnEqualRouteAtOnce() {
+    advertise(NEIGHBOR_A, 1, 1);
+    advertise(NEIGHBOR_B, 1, 1);
+
+    distanceVector.removeRoutesVia(NEIGHBOR_A);
+    assertEquals(NEIGHBOR_B, distanceVector.getNextHop(DESTINATION));
+    assertEquals(2, advertisedTo(NEIGHBOR_A));
+  }
+
+  @Test
+  void removingANeighborFailsOverToALongerRouteAfterTheHoldDown() {
+    advertise(NEIGHBOR_A, 1, 1);
+    advertise(NEIGHBOR_B, 3, 1);
+
+    distanceVector.removeRoutesVia(NEIGHBOR_A);
+    assertNull(distanceVector.getNextHop(DESTINATION));
+    assertEquals(DistanceVector.UNREACHABLE, advertisedTo(NEIGHBOR_B));
+
+    runFor(HOLD_DOWN_MILLIS);
+    assertEquals(NEIGHBOR_B, distanceVector.getNextHop(DESTINATION));
+    assertEquals(4, advertisedTo(NEIGHBOR_A));
+  }
+
+  @Test
+  void aHeldDownDestinationTakesARouteNoLongerThanTheLostOne() {
+    advertise(NEIGHBOR_A, 2, 1);
+    distanceVector.removeRoutesVia(NEIGHBOR_A);
+
+    advertise(NEIGHBOR_B, 3, 1);
+    assertNull(distanceVector.getNextHop(DESTINATION));
+    advertise(NEIGHBOR_B, 2, 1);
+    assertEquals(NEIGHBOR_B, distanceVector.getNextHop(DESTINATION));
+  }
+
+  @Test
+  void aTimedOutRouteFailsOverToTheAlternate() {
+    advertise(NEIGHBOR_A, 1, 1);
+    advertise(NEIGHBOR_B, 2, 1);
+
+    // Only B keeps advertising the destination, until A's route times out
+    for (int i = 0; i < 3; i++) {
+      runFor(ROUTE_TIMEOUT_MILLIS / 3);
+      advertise(NEIGHBOR_B, 2, 1);
+    }
+    assertNull(distanceVector.getNextHop(DESTINATION));
+
+    runFor(HOLD_DOWN_MILLIS);
+    assertEquals(NEIGHBOR_B, distanceVector.getNextHop(DESTINATION));
+  }
+
+  @Test
+  void aLocalPrefixWinsOverLearnedRoutesUntilItIsWithdrawn() {
+    assertTrue(distanceVector.addLocalPrefix("10.0.9.0/24", 0));
+    distanceVector.applyUpdate(NEIGHBOR_A, Map.of("10.0.9.0/24", 0), 1);
+    assertTrue(distanceVector.isLocal(DESTINATION));
+
+    assertTrue(distanceVector.removeLocalPrefix("10.0.9.0/24"));
+    assertFalse(distanceVector.isLocal(DESTINATION));
+    assertEquals(NEIGHBOR_A, distanceVector.getNextHop(DESTINATION));
+  }
+
+  @Test
+  void aLostRouteIsPoisonedUntilItIsCollected() {
+    advertise(NEIGHBOR_A, 1, 1);
+    distanceVector.applyUpdate(NEIGHBOR_B, Map.of(), 1);
+
+    distanceVector.removeRoutesVia(NEIGHBOR_A);
+    assertFalse(distanceVector.hasRoute(DESTINATION));
+    assertEquals(DistanceVector.UNREACHABLE, advertisedTo(NEIGHBOR_B));
+
+    runFor(GARBAGE_COLLECTION_MILLIS);
+    assertNull(advertisedTo(NEIGHBOR_B));
+    assertTrue(
+        distanceVector.getRoutes().stream()
+            .noneMatch(route -> route.getDistance() == DistanceVector.UNREACHABLE));
+  }
+
+  @Test
+  void equalCostNeighborsShareTheFlows() {
+    advertise(NEIGHBOR_A, 1, 1);
+    advertise(NEIGHBOR_B, 1, 1);
+    assertEquals(Set.of(NEIGHBOR_A, NEIGHBOR_B), nextHopsOfFlows(64));
+    String[] pinned = new String[64];
+    for (int flow = 0; flow < pinned.length; flow++) {
+      pinned[flow] = distanceVector.getNextHop(DESTINATION, flow);
+    }
+
+    // Refreshing the same routes keeps every flow on its next hop
+    advertise(NEIGHBOR_B, 1, 1);
+    advertise(NEIGHBOR_A, 1, 1);
+    for (int flow = 0; flow < pinned.length; flow++) {
+      assertEquals(pinned[flow], distanceVector.getNextHop(DESTINATION, flow));
+    }
+
+    // The group is torn down when one route gets longer, and formed again when it comes back
+    advertise(NEIGHBOR_B, 2, 1);
+    assertEquals(Set.of(NEIGHBOR_A), nextHopsOfFlows(64));
+    advertise(NEIGHBOR_B, 1, 1);
+    assertEquals(Set.of(NEIGHBOR_A, NEIGHBOR_B), nextHopsOfFlows(64));
+
+    distanceVector.removeRoutesVia(NEIGHBOR_A);
+    assertEquals(Set.of(NEIGHBOR_B), nextHopsOfFlows(64));
+  }
+}
@@ -0,0 +1,186 @@
+package com.redes.udprip.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.redes.udprip.model.Ipv4;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class FibTest {
+  private static final int A = Ipv4.parse("127.0.1.2");
+  private static final int B = Ipv4.parse("127.0.1.3");
+  private static final int C = Ipv4.parse("127.0.1.4");
+
+  private static int lookup(Fib fib, String destination) {
+    return fib.lookup(Ipv4.parse(destination));
+  }
+
+  @Test
+  void emptyFibHasNoRoutes() {
+    Fib fib = new Fib.Builder().build();
+
+    assertEquals(0, fib.size());
+    assertEquals(DistanceVector.NO_ROUTE, lookup(fib, "10.0.0.1"));
+    assertEquals(DistanceVector.NO_ROUTE, lookup(fib, "0.0.0.0"));
+  }
+
+  @Test
+  void longestMatchingPrefixWins() {
+    Fib.Builder builder = new Fib.Builder();
+    builder.put(Ipv4.parsePrefix("0.0.0.0/0"), C);
+    builder.put(Ipv4.parsePrefix("10.0.0.0/8"), A);
+    builder.put(Ipv4.parsePrefix("10.1.0.0/16"), B);
+    builder.put(Ipv4.parsePrefix("10.1.2.3"), C);
+    Fib fib = builder.build();
+
+    assertEquals(4, fib.size());
+    assertEquals(A, lookup(fib, "10.200.0.1"));
+    assertEquals(B, lookup(fib, "10.1.200.1"));
+    assertEquals(C, lookup(fib, "10.1.2.3"));
+    assertEquals(B, lookup(fib, "10.1.2.4"));
+    assertEquals(C, lookup(fib, "192.168.0.1"));
+  }
+
+  @Test
+  void prefixesNotOnAStrideBoundaryCoverOnlyTheirRange() {
+    Fib.Builder builder = new Fib.Builder();
+    // A /9 ends three bits into the second level, a /25 one bit into the fifth
+    builder.put(Ipv4.parsePrefix("10.128.0.0/9"), A);
+    builder.put(Ipv4.parsePrefix("10.128.7.128/25"), B);
+    Fib fib = builder.build();
+
+    assertEquals(DistanceVector.NO_ROUTE, lookup(fib, "10.127.255.255"));
+    assertEquals(A, lookup(fib, "10.128.0.0"));
+    assertEquals(A, lookup(fib, "10.255.255.255"));
+    assertEquals(DistanceVector.NO_ROUTE, lookup(fib, "11.0.0.0"));
+    assertEquals(A, lookup(fib, "10.128.7.127"));
+    assertEquals(B, lookup(fib, "10.128.7.128"));
+    assertEquals(B, lookup(fib, "10.128.7.255"));
+  }
+
+  @Test
+  void removingAPrefixUncoversTheShorterOne() {
+    Fib.Builder builder = new Fib.Builder();
+    builder.put(Ipv4.parsePrefix("10.0.0.0/8"), A);
+    builder.put(Ipv4.parsePrefix("10.1.0.0/16"), B);
+    Fib before = builder.build();
+    builder.remove(Ipv4.parsePrefix("10.1.0.0/16"));
+    Fib after = builder.build();
+
+    assertEquals(A, lookup(after, "10.1.0.1"));
+    assertEquals(1, after.size());
+    // Published snapshots are not affected by later changes
+    assertEquals(B, lookup(before, "10.1.0.1"));
+    assertEquals(2, before.size());
+  }
+
+  @Test
+  void flowHashPicksAmongEqualCostNextHops() {
+    Fib.Builder builder = new Fib.Builder();
+    builder.put(Ipv4.parsePrefix("10.0.0.0/8"), new int[] {A, B, C});
+    Fib fib = builder.build();
+    int destination = Ipv4.parse("10.0.0.1");
+
+    assertEquals(A, fib.lookup(destination));
+    assertEquals(A, fib.lookup(destination, 0));
+    assertEquals(B, fib.lookup(destination, 1));
+    assertEquals(C, fib.lookup(destination, 2));
+    assertEquals(C, fib.lookup(destination, -1));
+  }
+
+  @Test
+  void groupsAreReusedOnceReleased() {
+    Fib.Builder builder = new Fib.Builder();
+    for (int i = 0; i < 100; i++) {
+      builder.put(Ipv4.prefix(i << 16, 16), new int[] {A, B});
+      builder.put(Ipv4.prefix(i << 16, 16), i % 2 == 0 ? A : B);
+    }
+    builder.put(Ipv4.parsePrefix("10.0.0.0/8"), new int[] {B, C});
+    Fib fib = builder.build();
+
+    assertEquals(101, fib.size());
+    assertEquals(A, lookup(fib, "0.0.0.1"));
+    assertEquals(B, lookup(fib, "0.1.0.1"));
+    assertEquals(C, fib.lookup(Ipv4.parse("10.0.0.1"), 1));
+  }
+
+  @Test
+  void matchesALinearScanAfterRandomChanges() {
+    Random random = new Random(7);
+    Fib.Builder builder = new Fib.Builder();
+    Map<Long, Integer> routes = new HashMap<>();
+
+    for (int change = 0; change < 20000; change++) {
+      // Keep addresses in a few /8s, so prefixes nest and share trie nodes
+      int address = (random.nextInt(4) << 24) | random.nextInt(1 << 24);
+      long prefix = Ipv4.prefix(address, random.nextInt(33));
+      if (random.nextInt(3) == 0) {
+        builder.remove(prefix);
+        routes.remove(prefix);
+      } else {
+        int nextHop = 1 + random.nextInt(8);
+        builder.put(prefix, nextHop);
+        routes.put(prefix, nextHop);
+      }
+
+      if (change % 1000 == 999) {
+        Fib fib = builder.build();
+        assertEquals(routes.size(), fib.size());
+        for (int query = 0; query < 500; query++) {
+          int destination = (random.nextInt(4) << 24) | random.nextInt(1 << 24);
+          assertEquals(
+              longestMatch(routes, destination), fib.lookup(destination), Ipv4.format(destination));
+        }
+      }
+    }
+  }
+
+  @Test
+  void sizeCountsPrefixesNotChanges() {
+    Fib.Builder builder = new Fib.Builder();
+    Set<Long> prefixes = new HashSet<>();
+    for (int i = 0; i < 50; i++) {
+      long prefix = Ipv4.prefix(i << 24, 8);
+      builder.put(prefix, A);
+      builder.put(prefix, B);
+      prefixes.add(prefix);
+    }
+    builder.remove(Ipv4.parsePrefix("192.168.0.0/16"));
+
+    assertEquals(prefixes.size(), builder.build().size());
+  }
+
+  private static int longestMatch(Map<Long, Integer> routes, int destination) {
+    int best = DistanceVector.NO_ROUTE;
+    int bestLength = -1;
+    for (Map.Entry<Long, Integer> route : routes.entrySet()) {
+      int length = Ipv4.prefixLength(route.getKey());
+      if (length > bestLength
+          && (destination & Ipv4.mask(length)) == Ipv4.prefixAddress(route.getKey())) {
+        best = route.getValue();
+        bestLength = length;
+      }
+    }
+    return best;
+  }
+
+  @Test
+  void snapshotsKeepTheirGroupsWhenTheSlotIsReused() {
+    Fib.Builder builder = new Fib.Builder();
+    builder.put(Ipv4.parsePrefix("10.0.0.0/8"), new int[] {A, B});
+    Fib before = builder.build();
+
+    // Releasing the group and creating another may reuse its slot in the builder
+    builder.put(Ipv4.parsePrefix("10.0.0.0/8"), A);
+    builder.put(Ipv4.parsePrefix("11.0.0.0/8"), new int[] {C, A});
+    Fib after = builder.build();
+
+    assertEquals(B, before.lookup(Ipv4.parse("10.0.0.1"), 1));
+    assertEquals(A, after.lookup(Ipv4.parse("10.0.0.1"), 1));
+    assertEquals(A, after.lookup(Ipv4.parse("11.0.0.1"), 1));
+  }
+}
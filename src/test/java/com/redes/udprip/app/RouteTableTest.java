@@ -0,0 +1,144 @@
+package com.redes.udprip.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redes.udprip.model.Ipv4;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class RouteTableTest {
+  private static long host(String address) {
+    return Ipv4.parsePrefix(address);
+  }
+
+  @Test
+  void putOverwritesTheRouteOfAPrefix() {
+    RouteTable table = new RouteTable();
+    long prefix = Ipv4.parsePrefix("10.0.0.0/8");
+    table.put(prefix, 3, 1, 1, 100);
+    int slot = table.put(prefix, 5, 2, 2, 200);
+
+    assertEquals(1, table.size());
+    assertEquals(slot, table.find(prefix));
+    assertEquals(5, table.getDistance(slot));
+    assertEquals(2, table.getNextHop(slot));
+    assertEquals(2, table.getLearnedFrom(slot));
+    assertEquals(200, table.getLastUpdated(slot));
+  }
+
+  @Test
+  void prefixesOfDifferentLengthsAreDistinct() {
+    RouteTable table = new RouteTable();
+    table.put(Ipv4.parsePrefix("10.0.0.0/8"), 1, 1, 1, 0);
+    table.put(Ipv4.parsePrefix("10.0.0.0/16"), 2, 2, 2, 0);
+
+    assertEquals(2, table.size());
+    assertEquals(1, table.getDistance(table.find(Ipv4.parsePrefix("10.0.0.0/8"))));
+    assertEquals(2, table.getDistance(table.find(Ipv4.parsePrefix("10.0.0.0/16"))));
+    assertEquals(-1, table.find(Ipv4.parsePrefix("10.0.0.0/24")));
+  }
+
+  @Test
+  void removeKeepsEveryOtherRouteReachable() {
+    RouteTable table = new RouteTable();
+    Random random = new Random(1);
+    Set<Long> present = new HashSet<>();
+    for (int i = 0; i < 2000; i++) {
+      long prefix = Ipv4.prefix(random.nextInt(), 8 + random.nextInt(25));
+      table.put(prefix, i & 0xF, i, i, i);
+      present.add(prefix);
+    }
+
+    // Removing from the middle of probe sequences shifts later entries back into the hole
+    int removed = 0;
+    for (Long prefix : new HashSet<>(present)) {
+      if (removed++ % 3 == 0) {
+        table.removeAt(table.find(prefix));
+        present.remove(prefix);
+        assertEquals(-1, table.find(prefix));
+      }
+    }
+
+    assertEquals(present.size(), table.size());
+    for (long prefix : present) {
+      int slot = table.find(prefix);
+      assertTrue(slot >= 0, Ipv4.formatPrefix(prefix));
+      assertEquals(prefix, table.getPrefix(slot));
+    }
+  }
+
+  @Test
+  void removeMovesTheWholeRoute() {
+    RouteTable table = new RouteTable();
+    for (int i = 0; i < 12; i++) {
+      int slot = table.put(host("10.0.0." + i), i, i + 100, i + 200, i + 300);
+      table.setVersion(slot, i + 400);
+    }
+    table.removeAt(table.find(host("10.0.0.0")));
+
+    for (int i = 1; i < 12; i++) {
+      int slot = table.find(host("10.0.0." + i));
+      assertEquals(i, table.getDistance(slot));
+      assertEquals(i + 100, table.getNextHop(slot));
+      assertEquals(i + 200, table.getLearnedFrom(slot));
+      assertEquals(i + 300, table.getLastUpdated(slot));
+      assertEquals(i + 400, table.getVersion(slot));
+    }
+  }
+
+  @Test
+  void scanningWhileRemovingVisitsEveryRoute() {
+    RouteTable table = new RouteTable();
+    for (int i = 0; i < 500; i++) {
+      table.put(Ipv4.prefix(i << 8, 24), 1, 1, 1, 0);
+    }
+
+    int visited = 0;
+    for (int slot = 0; slot < table.capacity(); slot++) {
+      while (table.isUsed(slot)) {
+        table.removeAt(slot);
+        visited++;
+      }
+    }
+
+    assertEquals(500, visited);
+    assertEquals(0, table.size());
+    for (int slot = 0; slot < table.capacity(); slot++) {
+      assertFalse(table.isUsed(slot));
+    }
+  }
+
+  @Test
+  void growsPastItsInitialCapacity() {
+    RouteTable table = new RouteTable(4);
+    for (int i = 0; i < 1000; i++) {
+      table.put(Ipv4.prefix(i, 32), i, 0, 0, 0);
+    }
+
+    assertEquals(1000, table.size());
+    assertTrue(table.capacity() >= 2000);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i, table.getDistance(table.find(Ipv4.prefix(i, 32))));
+    }
+  }
+
+  @Test
+  void aTableEmptiedByRemovalsCanBeRefilled() {
+    RouteTable table = new RouteTable(4);
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 100; i++) {
+        table.put(host("10.0.0." + i), round, i, i, round);
+      }
+      for (int i = 0; i < 100; i++) {
+        table.removeAt(table.find(host("10.0.0." + i)));
+      }
+
+      assertEquals(0, table.size());
+      assertEquals(-1, table.find(host("10.0.0.1")));
+    }
+  }
+}
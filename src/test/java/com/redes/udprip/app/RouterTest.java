@@ -0,0 +1,115 @@
+package com.redes.udprip.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import com.redes.udprip.codec.JsonMessageCodec;
+import com.redes.udprip.infra.Transport;
+import com.redes.udprip.metrics.DropReason;
+import com.redes.udprip.model.HelloMessage;
+import com.redes.udprip.model.Ipv4;
+import com.redes.udprip.model.Message;
+import com.redes.udprip.model.TraceMessage;
+import com.redes.udprip.model.UpdateMessage;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class RouterTest {
+  private static final String LOCAL = "127.0.1.1";
+  private static final String UPSTREAM = "127.0.1.2";
+  private static final String DOWNSTREAM = "127.0.1.3";
+  private static final String DESTINATION = "127.0.1.9";
+
+  private final JsonMessageCodec codec = new JsonMessageCodec();
+  private final List<byte[]> sentDownstream = new ArrayList<>();
+  private final Router router;
+
+  RouterTest() throws IOException {
+    Transport transport =
+        new Transport() {
+          @Override
+          public void sendBytes(String destinationIp, byte[] data, int offset, int length) {
+            if (destinationIp.equals(DOWNSTREAM)) {
+              byte[] copy = new byte[length];
+              System.arraycopy(data, offset, copy, 0, length);
+              sentDownstream.add(copy);
+            }
+          }
+
+          @Override
+          public void close() {}
+        };
+    router =
+        new Router(
+            LOCAL, 1, transport, new RouterOptions(), Clock.SYSTEM, Runnable::run, new Random(1));
+    router.addNeighbor(UPSTREAM, 1);
+    router.addNeighbor(DOWNSTREAM, 1);
+    receive(
+        DOWNSTREAM,
+        new HelloMessage(
+            DOWNSTREAM,
+            LOCAL,
+            List.of(HelloMessage.ENCODING_JSON),
+            List.of(HelloMessage.FEATURE_TTL)));
+    receive(DOWNSTREAM, new UpdateMessage(DOWNSTREAM, LOCAL, Map.of(DESTINATION, 1)));
+    sentDownstream.clear();
+  }
+
+  private void receive(String sender, Message message) throws IOException {
+    byte[] data = codec.encode(message);
+    router.handleMessage(data, 0, data.length, Ipv4.parse(sender));
+  }
+
+  private void receive(String sender, String json) {
+    byte[] data = json.getBytes(StandardCharsets.UTF_8);
+    router.handleMessage(data, 0, data.length, Ipv4.parse(sender));
+  }
+
+  @Test
+  void aTraceWithoutARouterListIsRelayedWithTheHopAppended() throws IOException {
+    receive(
+        UPSTREAM,
+        "{\"type\":\"trace\",\"source\":\"127.0.1.2\",\"destination\":\"127.0.1.9\",\"ttl\":5}");
+
+    assertEquals(1, sentDownstream.size());
+    byte[] relayed = sentDownstream.get(0);
+    TraceMessage trace =
+        assertInstanceOf(TraceMessage.class, codec.decode(relayed, 0, relayed.length));
+    assertEquals(List.of(LOCAL), trace.getRouters());
+    assertEquals(4, trace.getTtl());
+  }
+
+  @Test
+  void aTraceWithoutARouterListStillExpires() {
+    receive(
+        UPSTREAM,
+        "{\"type\":\"trace\",\"source\":\"127.0.1.2\",\"destination\":\"127.0.1.9\",\"ttl\":1}");
+
+    assertEquals(List.of(), sentDownstream);
+    assertEquals(1, router.getMetrics().getDropCount(DropReason.EXPIRED));
+  }
+
+  @Test
+  void dataWithoutADestinationIsMalformed() {
+    receive(UPSTREAM, "{\"type\":\"data\",\"source\":\"127.0.1.2\",\"payload\":\"x\"}");
+
+    assertEquals(List.of(), sentDownstream);
+    assertEquals(1, router.getMetrics().getDropCount(DropReason.PARSE_ERROR));
+  }
+
+  @Test
+  void aHopLimitAbove255IsMalformed() {
+    receive(
+        UPSTREAM,
+        "{\"type\":\"data\",\"source\":\"127.0.1.2\",\"destination\":\"127.0.1.9\","
+            + "\"ttl\":1000,\"payload\":\"x\"}");
+
+    assertEquals(List.of(), sentDownstream);
+    assertEquals(1, router.getMetrics().getDropCount(DropReason.PARSE_ERROR));
+  }
+}
@@ -0,0 +1,109 @@
+package com.redes.udprip.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redes.udprip.sim.VirtualClock;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTest {
+  private final VirtualClock clock = new VirtualClock();
+  private final TimerWheel timers = new TimerWheel(clock, 10, 8);
+  private final List<String> fired = new ArrayList<>();
+
+  @Test
+  void timersNeverFireEarly() {
+    timers.schedule(25, () -> fired.add("a"));
+
+    clock.advanceTo(20);
+    assertEquals(0, timers.advance());
+    clock.advanceTo(29);
+    assertEquals(0, timers.advance());
+    clock.advanceTo(30);
+    assertEquals(1, timers.advance());
+    assertEquals(List.of("a"), fired);
+    assertEquals(0, timers.size());
+  }
+
+  @Test
+  void timersBeyondOneRevolutionWaitForTheirTick() {
+    // The wheel covers 80 ms, so this timer shares a bucket with one due a revolution earlier
+    timers.schedule(100, () -> fired.add("late"));
+    timers.schedule(20, () -> fired.add("early"));
+
+    clock.advanceTo(20);
+    timers.advance();
+    assertEquals(List.of("early"), fired);
+    assertEquals(1, timers.size());
+
+    clock.advanceTo(100);
+    timers.advance();
+    assertEquals(List.of("early", "late"), fired);
+  }
+
+  @Test
+  void cancelledTimersDoNotFire() {
+    TimerWheel.Timeout first = timers.schedule(10, () -> fired.add("first"));
+    TimerWheel.Timeout second = timers.schedule(10, () -> fired.add("second"));
+    timers.schedule(10, () -> fired.add("third"));
+    second.cancel();
+    second.cancel();
+
+    assertFalse(second.isPending());
+    assertTrue(first.isPending());
+    assertEquals(2, timers.size());
+
+    clock.advanceTo(10);
+    timers.advance();
+    assertEquals(2, fired.size());
+    assertFalse(fired.contains("second"));
+    assertFalse(first.isPending());
+  }
+
+  @Test
+  void tasksMayScheduleFurtherTimers() {
+    timers.schedule(10, () -> timers.schedule(10, () -> fired.add("again")));
+
+    clock.advanceTo(10);
+    timers.advance();
+    assertEquals(1, timers.size());
+    clock.advanceTo(20);
+    timers.advance();
+    assertEquals(List.of("again"), fired);
+  }
+
+  @Test
+  void aFailingTaskDoesNotStopTheOthers() {
+    timers.schedule(
+        10,
+        () -> {
+          throw new IllegalStateException("boom");
+        });
+    timers.schedule(10, () -> fired.add("ok"));
+
+    clock.advanceTo(10);
+    assertEquals(2, timers.advance());
+    assertEquals(List.of("ok"), fired);
+  }
+
+  @Test
+  void rejectsAWheelSizeThatIsNotAPowerOfTwo() {
+    assertThrows(IllegalArgumentException.class, () -> new TimerWheel(clock, 10, 6));
+    assertThrows(IllegalArgumentException.class, () -> new TimerWheel(clock, 0, 8));
+  }
+
+  @Test
+  void timersWithoutADelayFireOnTheNextTick() {
+    timers.schedule(0, () -> fired.add("zero"));
+    timers.schedule(-5, () -> fired.add("negative"));
+
+    assertEquals(0, timers.advance());
+    clock.advanceTo(10);
+    assertEquals(2, timers.advance());
+    assertEquals(2, fired.size());
+  }
+}
@@ -0,0 +1,86 @@
+package com.redes.udprip.app;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redes.udprip.sim.VirtualClock;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TopologyManagerTest {
+  private static final String NEIGHBOR = "127.0.1.2";
+  // Four missed updates at a one-second period
+  private static final long DEAD_INTERVAL = 4000;
+
+  private final VirtualClock clock = new VirtualClock();
+  private final TimerWheel timers = new TimerWheel(clock);
+  private final List<String> dead = new ArrayList<>();
+  private final TopologyManager topology =
+      new TopologyManager("127.0.1.1", 1, clock, timers, dead::add);
+
+  private void advanceTo(long millis) {
+    clock.advanceTo(millis);
+    timers.advance();
+  }
+
+  @Test
+  void neighborIsDeclaredDeadOnceAfterTheDeadInterval() {
+    topology.addNeighbor(NEIGHBOR, 1);
+
+    advanceTo(DEAD_INTERVAL - 100);
+    assertTrue(topology.isAlive(NEIGHBOR));
+    advanceTo(DEAD_INTERVAL);
+    assertFalse(topology.isAlive(NEIGHBOR));
+    advanceTo(DEAD_INTERVAL * 3);
+    assertEquals(List.of(NEIGHBOR), dead);
+  }
+
+  @Test
+  void updatesPostponeTheDeadline() {
+    topology.addNeighbor(NEIGHBOR, 1);
+
+    advanceTo(3000);
+    topology.recordNeighborUpdate(NEIGHBOR);
+    advanceTo(DEAD_INTERVAL + 2000);
+    assertTrue(topology.isAlive(NEIGHBOR));
+    advanceTo(3000 + DEAD_INTERVAL);
+    assertEquals(List.of(NEIGHBOR), dead);
+  }
+
+  @Test
+  void anUpdateBringsADeadNeighborBack() {
+    topology.addNeighbor(NEIGHBOR, 1);
+    advanceTo(DEAD_INTERVAL);
+
+    topology.recordNeighborUpdate(NEIGHBOR);
+    assertTrue(topology.isAlive(NEIGHBOR));
+    advanceTo(DEAD_INTERVAL * 2);
+    assertEquals(List.of(NEIGHBOR, NEIGHBOR), dead);
+  }
+
+  @Test
+  void removedNeighborsAreNeitherDeclaredDeadNorRevived() {
+    topology.addNeighbor(NEIGHBOR, 1);
+    topology.removeNeighbor(NEIGHBOR);
+
+    topology.recordNeighborUpdate(NEIGHBOR);
+    advanceTo(DEAD_INTERVAL * 2);
+    assertFalse(topology.isAlive(NEIGHBOR));
+    assertEquals(List.of(), dead);
+  }
+
+  @Test
+  void aReAddedNeighborKeepsOnlyItsNewTimer() {
+    topology.addNeighbor(NEIGHBOR, 1);
+    advanceTo(2000);
+    topology.removeNeighbor(NEIGHBOR);
+    topology.addNeighbor(NEIGHBOR, 1);
+
+    advanceTo(DEAD_INTERVAL);
+    assertTrue(topology.isAlive(NEIGHBOR));
+    advanceTo(2000 + DEAD_INTERVAL);
+    assertEquals(List.of(NEIGHBOR), dead);
+  }
+}
@@ -0,0 +1,224 @@
+package com.redes.udprip.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redes.udprip.model.DataMessage;
+import com.redes.udprip.model.HelloMessage;
+import com.redes.udprip.model.Message;
+import com.redes.udprip.model.TraceMessage;
+import com.redes.udprip.model.UpdateMessage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class BinaryMessageCodecTest {
+  private final BinaryMessageCodec codec = new BinaryMessageCodec();
+
+  private <T> T roundTrip(Message message, Class<T> type) throws IOException {
+    byte[] encoded = codec.encode(message);
+    assertTrue(BinaryMessageCodec.isBinary(encoded, 0, encoded.length));
+    return assertInstanceOf(type, codec.decode(encoded, 0, encoded.length));
+  }
+
+  @Test
+  void updateDistancesRoundTripAcrossVarintLengths() throws IOException {
+    Map<String, Integer> distances = new HashMap<>();
+    int[] values = {0, 1, 127, 128, 16383, 16384, 2097151, 2097152, Integer.MAX_VALUE};
+    for (int i = 0; i < values.length; i++) {
+      distances.put("10.0.0." + i, values[i]);
+    }
+
+    UpdateMessage decoded =
+        roundTrip(new UpdateMessage("127.0.1.1", "127.0.1.2", distances), UpdateMessage.class);
+
+    assertEquals("127.0.1.1", decoded.getSource());
+    assertEquals("127.0.1.2", decoded.getDestination());
+    assertEquals(distances, decoded.getDistances());
+  }
+
+  @Test
+  void prefixesRoundTripWithTheirLengths() throws IOException {
+    Map<String, Integer> distances =
+        Map.of(
+            "0.0.0.0/0", 1,
+            "10.0.0.0/8", 2,
+            "10.128.0.0/9", 3,
+            "10.1.2.128/25", 4,
+            "10.1.2.3", 5);
+
+    UpdateMessage decoded =
+        roundTrip(new UpdateMessage("127.0.1.1", "127.0.1.2", distances), UpdateMessage.class);
+
+    assertEquals(distances, decoded.getDistances());
+  }
+
+  @Test
+  void hostRoutesAreSentWithoutPrefixLengths() throws IOException {
+    byte[] hosts = codec.encode(new UpdateMessage("1.1.1.1", "2.2.2.2", Map.of("10.0.0.1", 1)));
+    byte[] prefixes =
+        codec.encode(new UpdateMessage("1.1.1.1", "2.2.2.2", Map.of("10.0.0.0/8", 1)));
+
+    assertEquals(hosts.length + 1, prefixes.length);
+  }
+
+  @Test
+  void rejectsAPrefixLengthAbove32() throws IOException {
+    byte[] encoded = codec.encode(new UpdateMessage("1.1.1.1", "2.2.2.2", Map.of("10.0.0.0/8", 1)));
+    // Header, one-byte route count, then the 4-byte destination and its prefix length
+    int lengthOffset = 10 + 1 + 4;
+    assertEquals(8, encoded[lengthOffset]);
+
+    for (int length : new int[] {33, 0x80, 0xFF}) {
+      encoded[lengthOffset] = (byte) length;
+      IOException e =
+          assertThrows(IOException.class, () -> codec.decode(encoded, 0, encoded.length));
+      assertTrue(e.getMessage().contains(Integer.toString(length)), e.getMessage());
+    }
+  }
+
+  @Test
+  void rejectsAnOverlongVarint() {
+    byte[] encoded = {2, 0, 1, 1, 1, 1, 2, 2, 2, 2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+    assertThrows(IOException.class, () -> codec.decode(encoded, 0, encoded.length));
+
+    byte[] tooLong = {
+      2,
+      0,
+      1,
+      1,
+      1,
+      1,
+      2,
+      2,
+      2,
+      2,
+      (byte) 0x80,
+      (byte) 0x80,
+      (byte) 0x80,
+      (byte) 0x80,
+      (byte) 0x80,
+      0
+    };
+    assertThrows(IOException.class, () -> codec.decode(tooLong, 0, tooLong.length));
+  }
+
+  @Test
+  void truncatedMessagesFailWithEof() throws IOException {
+    byte[] encoded =
+        codec.encode(new UpdateMessage("1.1.1.1", "2.2.2.2", Map.of("10.0.0.0/8", 300)));
+
+    for (int length = 0; length < encoded.length; length++) {
+      int truncated = length;
+      assertThrows(EOFException.class, () -> codec.decode(encoded, 0, truncated));
+    }
+  }
+
+  @Test
+  void dataPayloadAndHopLimitRoundTrip() throws IOException {
+    DataMessage message = new DataMessage("127.0.1.1", "127.0.1.5", "x".repeat(200) + " é");
+    message.setTtl(7);
+
+    DataMessage decoded = roundTrip(message, DataMessage.class);
+
+    assertEquals(message.getPayload(), decoded.getPayload());
+    assertEquals(7, decoded.getTtl());
+    assertNull(roundTrip(new DataMessage("1.1.1.1", "2.2.2.2", ""), DataMessage.class).getTtl());
+  }
+
+  @Test
+  void traceRoutersRoundTrip() throws IOException {
+    TraceMessage message = new TraceMessage("127.0.1.1", "127.0.1.5");
+    message.addRouter("127.0.1.2");
+    message.addRouter("127.0.1.3");
+
+    TraceMessage decoded = roundTrip(message, TraceMessage.class);
+
+    assertEquals(List.of("127.0.1.1", "127.0.1.2", "127.0.1.3"), decoded.getRouters());
+  }
+
+  @Test
+  void helloRoundTrip() throws IOException {
+    HelloMessage message =
+        new HelloMessage(
+            "127.0.1.1",
+            "127.0.1.2",
+            List.of(HelloMessage.ENCODING_JSON, HelloMessage.ENCODING_BINARY),
+            List.of(HelloMessage.FEATURE_TTL));
+
+    HelloMessage decoded = roundTrip(message, HelloMessage.class);
+
+    assertTrue(decoded.acceptsEncoding(HelloMessage.ENCODING_BINARY));
+    assertTrue(decoded.acceptsEncoding(HelloMessage.ENCODING_JSON));
+    assertTrue(decoded.supportsFeature(HelloMessage.FEATURE_TTL));
+  }
+
+  @Test
+  void relayAppendsAHopAndLowersTheHopLimit() throws IOException {
+    TraceMessage message = new TraceMessage("127.0.1.1", "127.0.1.5");
+    message.setTtl(10);
+    byte[] encoded = codec.encode(message);
+    // Relay from the middle of a larger buffer
+    byte[] buffer = new byte[encoded.length + 6];
+    System.arraycopy(encoded, 0, buffer, 3, encoded.length);
+
+    MessageHeader header = codec.peek(buffer, 3, encoded.length);
+    assertEquals("trace", header.getType());
+    assertEquals(10, header.getTtl());
+    byte[] relayed = codec.relay(buffer, 3, encoded.length, header, "127.0.1.2", 9);
+
+    TraceMessage decoded =
+        assertInstanceOf(TraceMessage.class, codec.decode(relayed, 0, relayed.length));
+    assertEquals(List.of("127.0.1.1", "127.0.1.2"), decoded.getRouters());
+    assertEquals(9, decoded.getTtl());
+  }
+
+  @Test
+  void largeUpdatesAreSplitIntoDecodableParts() throws IOException {
+    Map<String, Integer> distances = new HashMap<>();
+    for (int i = 0; i < 1000; i++) {
+      distances.put("10." + (i >> 8) + "." + (i & 0xFF) + ".0/24", i);
+    }
+
+    List<byte[]> parts =
+        codec.encodeUpdate(new UpdateMessage("1.1.1.1", "2.2.2.2", distances), 512);
+
+    Map<String, Integer> decoded = new HashMap<>();
+    for (byte[] part : parts) {
+      assertTrue(part.length <= 512, Integer.toString(part.length));
+      decoded.putAll(((UpdateMessage) codec.decode(part, 0, part.length)).getDistances());
+    }
+    assertTrue(parts.size() > 1);
+    assertEquals(distances, decoded);
+  }
+
+  @Test
+  void jsonIsNotMistakenForBinary() {
+    byte[] json = "{\"type\":\"data\"}".getBytes(StandardCharsets.UTF_8);
+    assertFalse(BinaryMessageCodec.isBinary(json, 0, json.length));
+    assertFalse(BinaryMessageCodec.isBinary(json, 0, 0));
+  }
+
+  @Test
+  void peekReadsTheHeaderWithoutThePayload() throws IOException {
+    DataMessage message = new DataMessage("127.0.1.1", "127.0.1.5", "payload");
+    message.setTtl(12);
+    byte[] encoded = codec.encode(message);
+
+    // The header is complete well before the payload ends
+    MessageHeader header = codec.peek(encoded, 0, encoded.length - 3);
+
+    assertEquals("data", header.getType());
+    assertEquals("127.0.1.1", header.getSource());
+    assertEquals("127.0.1.5", header.getDestination());
+    assertEquals(12, header.getTtl());
+  }
+}
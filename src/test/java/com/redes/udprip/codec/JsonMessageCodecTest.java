@@ -0,0 +1,162 @@
+package com.redes.udprip.codec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redes.udprip.model.DataMessage;
+import com.redes.udprip.model.Message;
+import com.redes.udprip.model.TraceMessage;
+import com.redes.udprip.model.UpdateMessage;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class JsonMessageCodecTest {
+  private final JsonMessageCodec codec = new JsonMessageCodec();
+
+  private static byte[] json(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  void updatePrefixesRoundTrip() throws IOException {
+    Map<String, Integer> distances = Map.of("10.0.0.0/8", 2, "10.1.2.3", 0, "0.0.0.0/0", 255);
+    byte[] encoded = codec.encode(new UpdateMessage("127.0.1.1", "127.0.1.2", distances));
+
+    UpdateMessage decoded =
+        assertInstanceOf(UpdateMessage.class, codec.decode(encoded, 0, encoded.length));
+
+    assertEquals("127.0.1.1", decoded.getSource());
+    assertEquals(distances, decoded.getDistances());
+  }
+
+  @Test
+  void peekReadsTheHeaderWithoutThePayload() throws IOException {
+    byte[] data =
+        json(
+            "{\"type\":\"data\",\"source\":\"127.0.1.1\",\"destination\":\"127.0.1.5\","
+                + "\"payload\":\"not parsed");
+
+    MessageHeader header = codec.peek(data, 0, data.length);
+
+    assertEquals("data", header.getType());
+    assertEquals("127.0.1.1", header.getSource());
+    assertEquals("127.0.1.5", header.getDestination());
+    assertEquals(-1, header.getTtl());
+  }
+
+  @Test
+  void relayAppendsAHopAndRewritesTheHopLimitInPlace() throws IOException {
+    TraceMessage message = new TraceMessage("127.0.1.1", "127.0.1.5");
+    message.setTtl(10);
+    byte[] encoded = codec.encode(message);
+
+    MessageHeader header = codec.peek(encoded, 0, encoded.length);
+    assertEquals(10, header.getTtl());
+    byte[] relayed = codec.relay(encoded, 0, encoded.length, header, "127.0.1.2", 9);
+
+    TraceMessage decoded =
+        assertInstanceOf(TraceMessage.class, codec.decode(relayed, 0, relayed.length));
+    assertEquals(List.of("127.0.1.1", "127.0.1.2"), decoded.getRouters());
+    assertEquals(9, decoded.getTtl());
+  }
+
+  @Test
+  void relayKeepsADataPayloadFromTheMiddleOfABuffer() throws IOException {
+    DataMessage message = new DataMessage("127.0.1.1", "127.0.1.5", "hi, \"there\"");
+    message.setTtl(100);
+    byte[] encoded = codec.encode(message);
+    byte[] buffer = new byte[encoded.length + 6];
+    System.arraycopy(encoded, 0, buffer, 3, encoded.length);
+
+    MessageHeader header = codec.peek(buffer, 3, encoded.length);
+    byte[] relayed = codec.relay(buffer, 3, encoded.length, header, null, 7);
+
+    // The shorter hop limit is padded, so the message keeps its length
+    assertEquals(encoded.length, relayed.length);
+    DataMessage decoded =
+        assertInstanceOf(DataMessage.class, codec.decode(relayed, 0, relayed.length));
+    assertEquals(message.getPayload(), decoded.getPayload());
+    assertEquals(7, decoded.getTtl());
+  }
+
+  @Test
+  void relayRejectsAHopLimitThatDoesNotFit() throws IOException {
+    DataMessage message = new DataMessage("127.0.1.1", "127.0.1.5", "hi");
+    message.setTtl(5);
+    byte[] encoded = codec.encode(message);
+    MessageHeader header = codec.peek(encoded, 0, encoded.length);
+
+    assertThrows(
+        IOException.class, () -> codec.relay(encoded, 0, encoded.length, header, null, 50));
+  }
+
+  @Test
+  void rejectsAHopLimitAbove255() throws IOException {
+    byte[] tooHigh =
+        json(
+            "{\"type\":\"data\",\"source\":\"127.0.1.1\",\"destination\":\"127.0.1.5\","
+                + "\"ttl\":1000,\"payload\":\"x\"}");
+    byte[] highest = json(new String(tooHigh, StandardCharsets.UTF_8).replace("1000", "255"));
+
+    // Not a truncation, so it is counted as malformed
+    IOException peeked =
+        assertThrows(IOException.class, () -> codec.peek(tooHigh, 0, tooHigh.length));
+    IOException decoded =
+        assertThrows(IOException.class, () -> codec.decode(tooHigh, 0, tooHigh.length));
+    assertFalse(peeked instanceof EOFException);
+    assertFalse(decoded instanceof EOFException);
+    assertEquals(255, codec.peek(highest, 0, highest.length).getTtl());
+    assertEquals(255, ((DataMessage) codec.decode(highest, 0, highest.length)).getTtl());
+  }
+
+  @Test
+  void truncatedMessagesFailWithEof() {
+    byte[] data = json("{\"type\":\"update\",\"source\":\"127.0.1.1\",\"distances\":{");
+
+    assertThrows(EOFException.class, () -> codec.decode(data, 0, data.length));
+    assertThrows(EOFException.class, () -> codec.peek(data, 0, 10));
+  }
+
+  @Test
+  void largeUpdatesAreSplitIntoDecodableParts() throws IOException {
+    Map<String, Integer> distances = new HashMap<>();
+    for (int i = 0; i < 500; i++) {
+      distances.put("10." + (i >> 8) + "." + (i & 0xFF) + ".0/24", i);
+    }
+
+    List<byte[]> parts =
+        codec.encodeUpdate(new UpdateMessage("1.1.1.1", "2.2.2.2", distances), 1024);
+
+    Map<String, Integer> decoded = new HashMap<>();
+    for (byte[] part : parts) {
+      assertTrue(part.length <= 1024, Integer.toString(part.length));
+      decoded.putAll(((UpdateMessage) codec.decode(part, 0, part.length)).getDistances());
+    }
+    assertTrue(parts.size() > 1);
+    assertEquals(distances, decoded);
+  }
+
+  @Test
+  void messagesCutAnywhereFailWithEof() throws IOException {
+    // Cuts inside the nested distances or routers used to surface as mapping errors
+    TraceMessage trace = new TraceMessage("127.0.1.1", "127.0.1.5");
+    trace.addRouter("127.0.1.2");
+    for (Message message :
+        List.of(new UpdateMessage("127.0.1.1", "127.0.1.2", Map.of("10.0.0.0/8", 2)), trace)) {
+      byte[] encoded = codec.encode(message);
+      for (int length = 1; length < encoded.length - 1; length++) {
+        int truncated = length;
+        assertThrows(
+            EOFException.class, () -> codec.decode(encoded, 0, truncated), "length " + length);
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package com.redes.udprip.infra;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.redes.udprip.app.Clock;
+import com.redes.udprip.app.Router;
+import com.redes.udprip.app.RouterOptions;
+import com.redes.udprip.codec.JsonMessageCodec;
+import com.redes.udprip.metrics.DropReason;
+import com.redes.udprip.model.DataMessage;
+import com.redes.udprip.model.HelloMessage;
+import com.redes.udprip.model.Ipv4;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class InboundSchedulerTest {
+  private static final String NEIGHBOR_A = "127.0.1.2";
+  private static final String NEIGHBOR_B = "127.0.1.3";
+
+  private final RouterOptions options = new RouterOptions();
+  private final Router router;
+  private final InboundScheduler scheduler;
+
+  InboundSchedulerTest() {
+    // Two messages per sender, never refilled within the test
+    options.setDataRate(0.001);
+    options.setDataBurst(2);
+    router = newRouter("127.0.1.1");
+    // Handler threads are not started, so submitted datagrams only queue up
+    scheduler = new InboundScheduler(router, options);
+  }
+
+  private Router newRouter(String address) {
+    Transport transport =
+        new Transport() {
+          @Override
+          public void sendBytes(String destinationIp, byte[] data, int offset, int length) {}
+
+          @Override
+          public void close() {}
+        };
+    Router created =
+        new Router(address, 1, transport, options, Clock.SYSTEM, Runnable::run, new Random(1));
+    created.addNeighbor(NEIGHBOR_A, 1);
+    created.addNeighbor(NEIGHBOR_B, 1);
+    return created;
+  }
+
+  private static byte[] data(String source) throws IOException {
+    return new JsonMessageCodec().encode(new DataMessage(source, "127.0.1.9", "payload"));
+  }
+
+  private void submitData(String source, String sender, int count) throws IOException {
+    byte[] data = data(source);
+    for (int i = 0; i < count; i++) {
+      scheduler.submit(data, 0, data.length, Ipv4.parse(sender));
+    }
+  }
+
+  @Test
+  void eachNeighborHasItsOwnBucket() throws IOException {
+    submitData(NEIGHBOR_A, NEIGHBOR_A, 3);
+    submitData(NEIGHBOR_B, NEIGHBOR_B, 2);
+
+    assertEquals(1, scheduler.getRateLimitedData());
+  }
+
+  @Test
+  void bucketsFollowTheSenderNotTheHeaderSource() throws IOException {
+    // Relayed data carries the original source, and a sender may claim any source it likes
+    for (int i = 0; i < 10; i++) {
+      submitData("10.0.0." + i, NEIGHBOR_A, 1);
+    }
+
+    assertEquals(8, scheduler.getRateLimitedData());
+  }
+
+  @Test
+  void sendersThatAreNotNeighborsShareOneBucket() throws IOException {
+    for (int i = 0; i < 10; i++) {
+      String sender = "192.168.0." + i;
+      submitData(sender, sender, 1);
+    }
+    submitData(NEIGHBOR_A, NEIGHBOR_A, 2);
+
+    assertEquals(8, scheduler.getRateLimitedData());
+  }
+
+  @Test
+  void aRemovedNeighborFallsBackToTheSharedBucket() throws IOException {
+    submitData(NEIGHBOR_A, NEIGHBOR_A, 1);
+    router.removeNeighbor(NEIGHBOR_A);
+    submitData("192.168.0.1", "192.168.0.1", 2);
+    submitData(NEIGHBOR_A, NEIGHBOR_A, 1);
+
+    assertEquals(1, scheduler.getRateLimitedData());
+  }
+
+  @Test
+  void relayedTrafficCountsAgainstTheNeighborThatDeliveredIt() throws IOException {
+    submitData("10.0.0.1", NEIGHBOR_A, 2);
+
+    assertEquals(2L, router.getMetrics().getNeighborPacketsIn().get(NEIGHBOR_A));
+    assertEquals(0L, router.getMetrics().getNeighborPacketsIn().get(NEIGHBOR_B));
+  }
+
+  @Test
+  void attachedRoutersShareTheHandlersButNotTheirLimits() throws IOException {
+    InboundScheduler shared = new InboundScheduler(options);
+    Router other = newRouter("127.0.1.4");
+    DatagramHandler first = shared.attach(router);
+    DatagramHandler second = shared.attach(other);
+    byte[] data = data(NEIGHBOR_A);
+    int sender = Ipv4.parse(NEIGHBOR_A);
+
+    for (int i = 0; i < 3; i++) {
+      first.handle(data, 0, data.length, sender);
+      second.handle(data, 0, data.length, sender);
+    }
+
+    assertEquals(2, shared.getRateLimitedData());
+    assertEquals(1, other.getMetrics().getDropCount(DropReason.RATE_LIMITED));
+    assertThrows(IllegalStateException.class, () -> shared.submit(data, 0, data.length, sender));
+  }
+
+  @Test
+  void neighborsAreSpreadOverTheHandlersBySenderAddress() throws IOException {
+    options.setHandlerThreads(2);
+    options.setIngressCapacity(1);
+    InboundScheduler spread = new InboundScheduler(router, options);
+    byte[] hello =
+        new JsonMessageCodec()
+            .encode(
+                new HelloMessage(
+                    NEIGHBOR_A, "127.0.1.1", List.of(HelloMessage.ENCODING_JSON), List.of()));
+
+    // Each handler queues one control message; a second from the same neighbor is dropped
+    spread.submit(hello, 0, hello.length, Ipv4.parse(NEIGHBOR_A));
+    spread.submit(hello, 0, hello.length, Ipv4.parse(NEIGHBOR_A));
+    spread.submit(hello, 0, hello.length, Ipv4.parse(NEIGHBOR_B));
+
+    assertEquals(1, spread.getDroppedControl());
+  }
+}
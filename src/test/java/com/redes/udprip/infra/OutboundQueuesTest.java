@@ -0,0 +1,88 @@
+package com.redes.udprip.infra;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redes.udprip.model.Ipv4;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import org.junit.jupiter.api.Test;
+
+class OutboundQueuesTest {
+  private static final String NEIGHBOR_IP = "127.0.1.2";
+  private static final int NEIGHBOR = Ipv4.parse(NEIGHBOR_IP);
+
+  private final List<String> sent = new ArrayList<>();
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final Transport transport =
+      new Transport() {
+        @Override
+        public void sendBytes(String destinationIp, byte[] data, int offset, int length) {
+          sent.add(destinationIp + " " + new String(data, offset, length, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void close() {}
+      };
+  private final OutboundQueues queues =
+      new OutboundQueues(
+          transport,
+          (neighborIp, fullRefresh, sendEmpty) -> List.of(bytes(fullRefresh ? "full" : "delta")),
+          2,
+          tasks::add);
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private void runTasks() {
+    for (Runnable task = tasks.poll(); task != null; task = tasks.poll()) {
+      task.run();
+    }
+  }
+
+  @Test
+  void controlGoesFirstThenTheUpdateThenData() {
+    queues.add(NEIGHBOR_IP);
+    queues.sendData(NEIGHBOR, bytes("data"));
+    queues.requestUpdate(NEIGHBOR_IP, false, false);
+    queues.requestUpdate(NEIGHBOR_IP, true, false);
+    queues.sendControl(NEIGHBOR, bytes("hello"));
+    runTasks();
+
+    assertEquals(
+        List.of(NEIGHBOR_IP + " hello", NEIGHBOR_IP + " full", NEIGHBOR_IP + " data"), sent);
+  }
+
+  @Test
+  void dataIsTailDroppedButControlIsNot() {
+    queues.add(NEIGHBOR_IP);
+
+    assertTrue(queues.sendData(NEIGHBOR, bytes("1")));
+    assertTrue(queues.sendData(NEIGHBOR, bytes("2")));
+    assertFalse(queues.sendData(NEIGHBOR, bytes("3")));
+    assertTrue(queues.sendControl(NEIGHBOR, bytes("hello")));
+    runTasks();
+
+    assertEquals(1, queues.getDroppedData());
+    assertEquals(List.of(NEIGHBOR_IP + " hello", NEIGHBOR_IP + " 1", NEIGHBOR_IP + " 2"), sent);
+  }
+
+  @Test
+  void trafficToARemovedNeighborIsDroppedWithoutRecreatingItsQueue() {
+    queues.add(NEIGHBOR_IP);
+    queues.sendData(NEIGHBOR, bytes("before"));
+    queues.remove(NEIGHBOR_IP);
+
+    assertFalse(queues.sendData(NEIGHBOR, bytes("after")));
+    assertFalse(queues.sendControl(NEIGHBOR, bytes("hello")));
+    queues.requestUpdate(NEIGHBOR_IP, true, true);
+    runTasks();
+
+    assertEquals(List.of(), sent);
+  }
+}
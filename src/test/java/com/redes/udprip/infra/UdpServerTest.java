@@ -0,0 +1,89 @@
+package com.redes.udprip.infra;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.redes.udprip.app.Router;
+import com.redes.udprip.app.RouterOptions;
+import com.redes.udprip.codec.JsonMessageCodec;
+import com.redes.udprip.model.DataMessage;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/** Runs a router's server on real loopback sockets, with neighbors sending from their addresses. */
+class UdpServerTest {
+  private static final String LOCAL = "127.0.1.1";
+  private static final String NEIGHBOR_A = "127.0.1.2";
+  private static final String NEIGHBOR_B = "127.0.1.3";
+
+  private final int port;
+  private final Router router;
+  private final UdpServer server;
+  private final UdpClient fromA;
+  private final UdpClient fromB;
+
+  UdpServerTest() throws IOException {
+    try (DatagramSocket probe = new DatagramSocket(new InetSocketAddress(LOCAL, 0))) {
+      port = probe.getLocalPort();
+    }
+    RouterOptions options = new RouterOptions();
+    // Two messages per neighbor, never refilled within the test
+    options.setDataRate(0.001);
+    options.setDataBurst(2);
+    router = new Router(LOCAL, 1, new UdpClient(port, InetAddress.getByName(LOCAL)), options);
+    router.addNeighbor(NEIGHBOR_A, 1);
+    router.addNeighbor(NEIGHBOR_B, 1);
+    server = new UdpServer(InetAddress.getByName(LOCAL), port, router);
+    server.start();
+    fromA = new UdpClient(port, InetAddress.getByName(NEIGHBOR_A));
+    fromB = new UdpClient(port, InetAddress.getByName(NEIGHBOR_B));
+  }
+
+  @AfterEach
+  void tearDown() {
+    server.stop();
+    fromA.close();
+    fromB.close();
+  }
+
+  private static void send(UdpClient client, String source, int count) throws IOException {
+    byte[] data = new JsonMessageCodec().encode(new DataMessage(source, "127.0.1.9", "payload"));
+    for (int i = 0; i < count; i++) {
+      client.sendBytes(LOCAL, data, 0, data.length);
+    }
+  }
+
+  private static void awaitCount(long expected, LongSupplier count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (count.getAsLong() < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, count.getAsLong());
+  }
+
+  @Test
+  void aFloodingNeighborIsLimitedWithoutStarvingTheOthers()
+      throws IOException, InterruptedException {
+    send(fromA, NEIGHBOR_A, 5);
+    awaitCount(3, server.getScheduler()::getRateLimitedData);
+    send(fromB, NEIGHBOR_B, 2);
+    awaitCount(2, () -> router.getMetrics().getPacketsIn().get("data") - 5);
+
+    assertEquals(3, server.getScheduler().getRateLimitedData());
+  }
+
+  @Test
+  void inboundTrafficIsCountedPerNeighbor() throws IOException, InterruptedException {
+    // Relayed data keeps its original source, so only the socket address tells the neighbors apart
+    send(fromA, "10.0.0.1", 2);
+    send(fromB, "10.0.0.1", 1);
+    awaitCount(3, () -> router.getMetrics().getPacketsIn().get("data"));
+
+    assertEquals(2L, router.getMetrics().getNeighborPacketsIn().get(NEIGHBOR_A));
+    assertEquals(1L, router.getMetrics().getNeighborPacketsIn().get(NEIGHBOR_B));
+  }
+}
@@ -0,0 +1,76 @@
+package com.redes.udprip.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class Ipv4Test {
+  @Test
+  void addressesRoundTrip() {
+    for (String address : new String[] {"0.0.0.0", "127.0.1.1", "10.255.0.9", "255.255.255.255"}) {
+      assertEquals(address, Ipv4.format(Ipv4.parse(address)));
+    }
+    assertEquals(0x7F000101, Ipv4.parse("127.0.1.1"));
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "",
+        "1.2.3",
+        "1.2.3.4.5",
+        "256.0.0.1",
+        "1..2.3",
+        "1.2.3.",
+        "a.b.c.d",
+        "0001.2.3.4"
+      })
+  void rejectsMalformedAddresses(String address) {
+    assertThrows(IllegalArgumentException.class, () -> Ipv4.parse(address));
+  }
+
+  @Test
+  void prefixesRoundTrip() {
+    for (String prefix : new String[] {"0.0.0.0/0", "10.0.0.0/8", "10.128.0.0/9", "10.1.2.3"}) {
+      assertEquals(prefix, Ipv4.formatPrefix(Ipv4.parsePrefix(prefix)));
+    }
+    // Host routes are formatted as plain addresses
+    assertEquals("10.1.2.3", Ipv4.formatPrefix(Ipv4.parsePrefix("10.1.2.3/32")));
+  }
+
+  @Test
+  void prefixClearsHostBits() {
+    long prefix = Ipv4.parsePrefix("10.1.2.3/16");
+
+    assertEquals("10.1.0.0/16", Ipv4.formatPrefix(prefix));
+    assertEquals(16, Ipv4.prefixLength(prefix));
+    assertEquals(Ipv4.parse("10.1.0.0"), Ipv4.prefixAddress(prefix));
+    assertEquals(Ipv4.parsePrefix("10.1.0.0/16"), prefix);
+  }
+
+  @Test
+  void masks() {
+    assertEquals(0, Ipv4.mask(0));
+    assertEquals(0xFF000000, Ipv4.mask(8));
+    assertEquals(0xFFFF8000, Ipv4.mask(17));
+    assertEquals(-1, Ipv4.mask(32));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"10.0.0.0/33", "10.0.0.0/-1", "10.0.0.0/", "10.0.0.0/x"})
+  void rejectsMalformedPrefixes(String prefix) {
+    assertThrows(IllegalArgumentException.class, () -> Ipv4.parsePrefix(prefix));
+  }
+
+  @Test
+  void defaultAndHostPrefixes() {
+    // A /0 keeps no address bits, and a /32 is the same host route as the bare address
+    assertEquals(Ipv4.parsePrefix("0.0.0.0/0"), Ipv4.parsePrefix("10.1.2.3/0"));
+    assertEquals(0, Ipv4.prefixAddress(Ipv4.parsePrefix("10.1.2.3/0")));
+    assertEquals(Ipv4.parsePrefix("10.1.2.3"), Ipv4.prefix(Ipv4.parse("10.1.2.3"), 32));
+    assertEquals(32, Ipv4.prefixLength(Ipv4.parsePrefix("10.1.2.3")));
+  }
+}
@@ -0,0 +1,57 @@
+package com.redes.udprip.sim;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redes.udprip.app.PoisonMode;
+import com.redes.udprip.app.RouterOptions;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SimulatorTest {
+  private static final Path COUNT_TO_INFINITY = Path.of("count-to-infinity.sim");
+
+  private static Simulator.PhaseReport failure(
+      Topology topology, PoisonMode poisonMode, long seed) {
+    RouterOptions options = new RouterOptions();
+    options.setPoisonMode(poisonMode);
+    Simulator simulator = new Simulator(topology, 1, 1, options, seed);
+
+    List<Simulator.PhaseReport> reports = simulator.run(90_000);
+    assertTrue(reports.get(0).converged());
+    return reports.get(1);
+  }
+
+  private static Simulator.PhaseReport failure(PoisonMode poisonMode) throws IOException {
+    return failure(Topology.parse(COUNT_TO_INFINITY), poisonMode, 1);
+  }
+
+  @Test
+  void poisoningWithdrawsALostStubRoute() throws IOException {
+    for (PoisonMode poisonMode : new PoisonMode[] {PoisonMode.ROUTES, PoisonMode.REVERSE}) {
+      Simulator.PhaseReport failure = failure(poisonMode);
+      assertTrue(failure.converged(), poisonMode.name());
+      assertTrue(failure.convergenceSeconds() < 10, failure.toString());
+    }
+  }
+
+  @Test
+  void withoutPoisoningTheLostRouteCountsToInfinity() throws IOException {
+    assertFalse(failure(PoisonMode.NONE).converged());
+  }
+
+  @Test
+  void poisoningWithdrawsRoutesLostInAMeshPartition() {
+    for (PoisonMode poisonMode : new PoisonMode[] {PoisonMode.ROUTES, PoisonMode.REVERSE}) {
+      // Cuts 10.0.0.19 off: the other routers' alternate routes to it all lead back into the mesh
+      Topology topology = Topology.random(20, 3, 5);
+      topology.addEvent(30_000, "10.0.0.8", "10.0.0.19", false);
+
+      Simulator.PhaseReport failure = failure(topology, poisonMode, 5);
+      assertTrue(failure.converged(), poisonMode.name());
+      assertTrue(failure.convergenceSeconds() < 10, failure.toString());
+    }
+  }
+}